@@ -0,0 +1,102 @@
+package io.authomator.api.domain.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.MongoClient;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Latency of loading a user in 1/50/500 contexts, with the contexts resolved one query per DBRef
+ * (default, the Spring Data resolver) or in one $in query (batching, BatchingDbRefResolver).
+ *
+ * Needs a MongoDB, localhost:27017 unless -Dmongo.host/-Dmongo.port are given (jvmArgs of the fork:
+ * -jvmArgsAppend -Dmongo.port=27018). The numbers depend mostly on the round trip to the database.
+ *
+ *   java -jar target/benchmarks.jar UserLoadingBenchmark -p contexts=1,50
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserLoadingBenchmark {
+
+	private static final String DATABASE = "authomator-benchmarks";
+
+	private static final String EMAIL = "benchmark@authomator.io";
+
+	@Param({"default", "batching"})
+	public String resolver;
+
+	@Param({"1", "50", "500"})
+	public int contexts;
+
+	private MongoClient client;
+
+	private MongoTemplate mongoTemplate;
+
+	@Setup
+	public void setup() throws Exception {
+		client = new MongoClient(System.getProperty("mongo.host", "localhost"), Integer.getInteger("mongo.port", 27017));
+		SimpleMongoDbFactory factory = new SimpleMongoDbFactory(client, DATABASE);
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.afterPropertiesSet();
+		MappingMongoConverter converter = "batching".equals(resolver)
+				? new BatchingMappingMongoConverter(new BatchingDbRefResolver(factory), mappingContext)
+				: new MappingMongoConverter(new DefaultDbRefResolver(factory), mappingContext);
+		converter.afterPropertiesSet();
+		mongoTemplate = new MongoTemplate(factory, converter);
+
+		mongoTemplate.remove(new Query(), User.class);
+		mongoTemplate.remove(new Query(), Context.class);
+		User user = new User();
+		user.setEmail(EMAIL);
+		user.setPasswordHash("{bcrypt}$2a$10$benchmark");
+		mongoTemplate.insert(user);
+		for (int i = 0; i < contexts; i++) {
+			Context context = new Context();
+			context.setName(i == 0 ? EMAIL : "context" + i);
+			context.setOwner(user);
+			mongoTemplate.insert(context);
+			user.getContexts().add(context);
+		}
+		mongoTemplate.save(user);
+	}
+
+	@TearDown
+	public void tearDown() {
+		mongoTemplate.remove(new Query(), User.class);
+		mongoTemplate.remove(new Query(), Context.class);
+		client.close();
+	}
+
+	@Benchmark
+	public User findByEmail() {
+		return mongoTemplate.findOne(query(where("email").is(EMAIL)), User.class);
+	}
+}
@@ -0,0 +1,111 @@
+package io.authomator.api.jwt;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Compares rendering the token claims through a jose4j JwtClaims map against the
+ * template based ClaimsSerializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaimsSerializerBenchmark {
+
+	@Param({"1", "10", "100"})
+	private int contexts;
+
+	private ClaimsSerializer serializer;
+
+	private User user;
+
+	private Context context;
+
+	@Setup
+	public void setup() {
+		serializer = new ClaimsSerializer(Fixtures.ISSUER, Arrays.asList(Fixtures.AUDIENCE), "#refresh", "#forgot", "#confirm-email", JwtService::newJwtId);
+		user = Fixtures.user(contexts);
+		context = Fixtures.context();
+	}
+
+	private JwtClaims jose4jUserClaims() {
+		JwtClaims claims = new JwtClaims();
+		claims.setIssuer(Fixtures.ISSUER);
+		claims.setAudience(Arrays.asList(Fixtures.AUDIENCE));
+		claims.setExpirationTimeMinutesInTheFuture(60);
+		claims.setIssuedAtToNow();
+		claims.setNotBeforeMinutesInThePast(1);
+		claims.setJwtId(JwtService.newJwtId());
+		claims.setSubject(user.getId());
+		claims.setStringListClaim("roles", user.getRoles());
+		claims.setStringClaim("ctx", context.getId());
+		return claims;
+	}
+
+	@Benchmark
+	public String accessJose4j() {
+		JwtClaims claims = jose4jUserClaims();
+		claims.setClaim("ev", user.getEmailVerified());
+		return claims.toJson();
+	}
+
+	@Benchmark
+	public String accessSerializer() {
+		return serializer.accessClaims(user, context, NumericDate.now().getValue(), 60);
+	}
+
+	@Benchmark
+	public String identityJose4j() {
+		JwtClaims claims = jose4jUserClaims();
+		claims.setClaim("email", user.getEmail());
+		claims.setClaim("emailVerified", user.getEmailVerified());
+		claims.setClaim("contexts", user.getContexts().stream().map(c -> c.getId()).collect(Collectors.toList()));
+		return claims.toJson();
+	}
+
+	@Benchmark
+	public String identitySerializer() {
+		return serializer.identityClaims(user, context, NumericDate.now().getValue(), 60);
+	}
+
+	@Benchmark
+	public String refreshJose4j() {
+		JwtClaims claims = new JwtClaims();
+		claims.setIssuer(Fixtures.ISSUER);
+		claims.setAudience(Fixtures.ISSUER + "#refresh");
+		claims.setExpirationTimeMinutesInTheFuture(120);
+		claims.setIssuedAtToNow();
+		claims.setNotBeforeMinutesInThePast(1);
+		claims.setJwtId(JwtService.newJwtId());
+		claims.setSubject(user.getId());
+		claims.setStringClaim("ctx", context.getId());
+		claims.setClaim("ver", user.getTokenVersion());
+		return claims.toJson();
+	}
+
+	@Benchmark
+	public String refreshSerializer() {
+		return serializer.refreshClaims(user, context, NumericDate.now().getValue(), 120);
+	}
+}
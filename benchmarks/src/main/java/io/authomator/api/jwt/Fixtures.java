@@ -0,0 +1,94 @@
+package io.authomator.api.jwt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Shared test data for the token benchmarks
+ */
+final class Fixtures {
+
+	static final String SECRET = "lkjdmqlkjfdsmlkjfdsqmlkjfdqsmlkfjdqsmflkdsjflqkjfdlkfjqdsmlkfjdqsmlkfjdsqmflkjdsq";
+
+	static final String INTERNAL_SECRET = "flmkjfdsmlkjdsflkjfdslkjfsdlmkjfdslkjdfsqlkmkljqdflmkjdsqmflkjsdqfmlkjsqdfldsqkjf";
+
+	static final String ISSUER = "issuer";
+
+	static final String[] AUDIENCE = new String[]{"audience", "audience2"};
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Create a JwtService for the algorithm, RSA/ECDSA algorithms get a freshly generated key pair
+	 *
+	 * @param alg - AlgorithmIdentifiers field name, eg: HMAC_SHA512, RSA_USING_SHA256
+	 * @return JwtService
+	 */
+	static JwtService jwtService(final String alg) {
+		if (!alg.startsWith("RSA_") && !alg.startsWith("ECDSA_")) {
+			return new JwtService(SECRET, INTERNAL_SECRET, alg, 60, 120, 60, ISSUER, AUDIENCE);
+		}
+		try {
+			final KeyPair keyPair = keyPair(alg);
+			final File privateKey = File.createTempFile("signing-key", ".pem");
+			final File publicKey = File.createTempFile("verification-key", ".pem");
+			privateKey.deleteOnExit();
+			publicKey.deleteOnExit();
+			Files.write(privateKey.toPath(), PemKeys.toPem("PRIVATE KEY", keyPair.getPrivate().getEncoded()).getBytes(StandardCharsets.US_ASCII));
+			Files.write(publicKey.toPath(), PemKeys.toPem("PUBLIC KEY", keyPair.getPublic().getEncoded()).getBytes(StandardCharsets.US_ASCII));
+			return new JwtService(SECRET, INTERNAL_SECRET, alg, 60, 120, 60, ISSUER, AUDIENCE,
+					privateKey.getAbsolutePath(), publicKey.getAbsolutePath());
+		} catch (IOException | GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static KeyPair keyPair(final String alg) throws GeneralSecurityException {
+		if (alg.startsWith("RSA_")) {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+			generator.initialize(2048);
+			return generator.generateKeyPair();
+		}
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec(alg.contains("P256") ? "secp256r1" : alg.contains("P384") ? "secp384r1" : "secp521r1"));
+		return generator.generateKeyPair();
+	}
+
+	/**
+	 * Create a user that is a member of the given number of contexts
+	 *
+	 * @param contexts
+	 * @return User
+	 */
+	static User user(final int contexts) {
+		User user = new User();
+		user.setId("5575e89dd9ebb6c28fa5b358");
+		user.setEmail("testuser@mydomain.tld");
+		user.setRoles("USER");
+		user.setRoles("ADMIN");
+		for (int i = 0; i < contexts; i++) {
+			Context ctx = new Context();
+			ctx.setId(String.format("5575e89dd9ebb6c28fa5%04x", i));
+			ctx.setName(i == 0 ? user.getEmail() : "context-" + i);
+			user.getContexts().add(ctx);
+		}
+		return user;
+	}
+
+	static Context context() {
+		Context ctx = new Context();
+		ctx.setId("5575e89dd9ebb6c28fa50000");
+		ctx.setName("testuser@mydomain.tld");
+		return ctx;
+	}
+}
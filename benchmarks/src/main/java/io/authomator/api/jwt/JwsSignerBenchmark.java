@@ -0,0 +1,66 @@
+package io.authomator.api.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares signing a claims payload with a new JsonWebSignature/HmacKey per token (the
+ * previous JwtService behaviour) against the JwsSigner engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwsSignerBenchmark {
+
+	private String payload;
+
+	private JwsSigner signer;
+
+	@Setup
+	public void setup() throws JoseException {
+		JwtClaims claims = new JwtClaims();
+		claims.setIssuer(Fixtures.ISSUER);
+		claims.setAudience(Fixtures.AUDIENCE);
+		claims.setExpirationTimeMinutesInTheFuture(60);
+		claims.setIssuedAtToNow();
+		claims.setNotBeforeMinutesInThePast(1);
+		claims.setSubject("5575e89dd9ebb6c28fa5b358");
+		claims.setStringListClaim("roles", "USER", "ADMIN");
+		claims.setStringClaim("ctx", "5575e89dd9ebb6c28fa50000");
+		payload = claims.toJson();
+		signer = new JwsSigner(AlgorithmIdentifiers.HMAC_SHA512, "0", Fixtures.SECRET.getBytes());
+	}
+
+	@Benchmark
+	public String jose4jPerToken() throws JoseException {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(payload);
+		jws.setKey(new HmacKey(Fixtures.SECRET.getBytes()));
+		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA512);
+		jws.setKeyIdHeaderValue("0");
+		return jws.getCompactSerialization();
+	}
+
+	@Benchmark
+	public String signingEngine() throws JoseException {
+		return signer.sign(payload);
+	}
+}
@@ -0,0 +1,93 @@
+package io.authomator.api.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.jwa.AlgorithmConstraints;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.authomator.api.dto.TokenReply;
+
+/**
+ * Compares validating tokens with the prebuilt JwtConsumers in JwtService against
+ * building a JwtConsumer (and HmacKey) for every call, which is what JwtService used to do.
+ *
+ * Run with the gc profiler to see the allocation difference:
+ *
+ *   java -jar target/benchmarks.jar JwtConsumerBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtConsumerBenchmark {
+
+	private JwtService jwtService;
+
+	private String accessToken;
+
+	private String refreshToken;
+
+	@Setup
+	public void setup() throws JoseException {
+		jwtService = Fixtures.jwtService("HMAC_SHA512");
+		TokenReply tokens = jwtService.createTokensForUser(Fixtures.user(1), Fixtures.context());
+		accessToken = tokens.getAccessToken();
+		refreshToken = tokens.getRefreshToken();
+	}
+
+	@Benchmark
+	public JwtClaims accessTokenCachedConsumer() throws InvalidJwtException {
+		return jwtService.validateAccessToken(accessToken);
+	}
+
+	@Benchmark
+	public JwtClaims accessTokenConsumerPerCall() throws InvalidJwtException {
+		return new JwtConsumerBuilder()
+			.setRequireExpirationTime()
+			.setAllowedClockSkewInSeconds(30)
+			.setRequireSubject()
+			.setExpectedIssuer(Fixtures.ISSUER)
+			.setSkipDefaultAudienceValidation()
+			.setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE)
+			.setVerificationKey(new HmacKey(Fixtures.SECRET.getBytes()))
+			.build()
+			.process(accessToken)
+			.getJwtClaims();
+	}
+
+	@Benchmark
+	public JwtClaims refreshTokenCachedConsumer() throws InvalidJwtException {
+		return jwtService.validateRefreshToken(refreshToken);
+	}
+
+	@Benchmark
+	public JwtClaims refreshTokenConsumerPerCall() throws InvalidJwtException {
+		return new JwtConsumerBuilder()
+			.setRequireExpirationTime()
+			.setAllowedClockSkewInSeconds(30)
+			.setRequireSubject()
+			.setExpectedIssuer(Fixtures.ISSUER)
+			.setExpectedAudience(Fixtures.ISSUER + "#refresh")
+			.setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE)
+			.setVerificationKey(new HmacKey(Fixtures.INTERNAL_SECRET.getBytes()))
+			.build()
+			.process(refreshToken)
+			.getJwtClaims();
+	}
+}
@@ -0,0 +1,125 @@
+package io.authomator.api.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.lang.JoseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.dto.TokenReply;
+
+/**
+ * Cost per token of the public JwtService token path, for every algorithm JwtService can sign with.
+ *
+ * Covers minting (createTokensForUser, and identity tokens for users in 1/10/100 contexts) and every
+ * validate method. Internal tokens (refresh, forgot password, confirm email) are signed with the
+ * configured alg when it is a HMAC algorithm and with HS512 otherwise, so their numbers only move
+ * with the HMAC algorithms.
+ *
+ * Reports throughput and the latency distribution, add the gc profiler for the allocation rate:
+ *
+ *   java -jar target/benchmarks.jar JwtServiceBenchmark -prof gc
+ *   java -jar target/benchmarks.jar JwtServiceBenchmark -p alg=HMAC_SHA256,HMAC_SHA512
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+	@Param({
+		"HMAC_SHA256", "HMAC_SHA384", "HMAC_SHA512",
+		"RSA_USING_SHA256", "RSA_USING_SHA384", "RSA_USING_SHA512",
+		"ECDSA_USING_P256_CURVE_AND_SHA256", "ECDSA_USING_P384_CURVE_AND_SHA384", "ECDSA_USING_P521_CURVE_AND_SHA512"
+	})
+	public String alg;
+
+	private JwtService jwtService;
+
+	private User user;
+
+	private Context context;
+
+	private String accessToken;
+
+	private String refreshToken;
+
+	private String forgotPasswordToken;
+
+	private String confirmEmailToken;
+
+	/**
+	 * Identity token claims grow with the contexts of the user, only the identity benchmark uses this state
+	 */
+	@State(Scope.Benchmark)
+	public static class Contexts {
+
+		@Param({"1", "10", "100"})
+		public int contexts;
+
+		private User user;
+
+		@Setup
+		public void setup() {
+			user = Fixtures.user(contexts);
+		}
+	}
+
+	@Setup
+	public void setup() throws JoseException {
+		jwtService = Fixtures.jwtService(alg);
+		user = Fixtures.user(1);
+		context = Fixtures.context();
+
+		TokenReply tokens = jwtService.createTokensForUser(user, context);
+		accessToken = tokens.getAccessToken();
+		refreshToken = tokens.getRefreshToken();
+		forgotPasswordToken = jwtService.getForgotPasswordToken(user);
+		confirmEmailToken = jwtService.getConfirmEmailToken(user);
+	}
+
+	@Benchmark
+	public TokenReply createTokensForUser() throws JoseException {
+		return jwtService.createTokensForUser(user, context);
+	}
+
+	@Benchmark
+	public String getIdentityToken(Contexts contexts) throws JoseException {
+		return jwtService.getIdentityToken(contexts.user, context);
+	}
+
+	@Benchmark
+	public JwtClaims validateAccessToken() throws InvalidJwtException {
+		return jwtService.validateAccessToken(accessToken);
+	}
+
+	@Benchmark
+	public JwtClaims validateRefreshToken() throws InvalidJwtException {
+		return jwtService.validateRefreshToken(refreshToken);
+	}
+
+	@Benchmark
+	public JwtClaims validateForgotToken() throws InvalidJwtException {
+		return jwtService.validateForgotToken(forgotPasswordToken);
+	}
+
+	@Benchmark
+	public JwtClaims validateConfirmEmailToken() throws InvalidJwtException {
+		return jwtService.validateConfirmEmailToken(confirmEmailToken);
+	}
+}
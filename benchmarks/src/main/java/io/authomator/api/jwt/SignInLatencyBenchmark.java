@@ -0,0 +1,77 @@
+package io.authomator.api.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.lang.JoseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.dto.TokenReply;
+
+/**
+ * Latency distribution (p50/p99 in the SampleTime output) of minting the sign-in tokens with
+ * createTokensForUser, sequentially (mintingThreads=0) and on a TokenMintingExecutor.
+ *
+ * Vary the concurrent callers with -t and the cores with taskset, eg:
+ * taskset -c 0-3 java -jar target/benchmarks.jar SignInLatencyBenchmark -t 4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignInLatencyBenchmark {
+
+	@Param({"HMAC_SHA512", "RSA_USING_SHA256", "ECDSA_USING_P256_CURVE_AND_SHA256"})
+	public String alg;
+
+	/**
+	 * Size of the minting pool, 0 mints on the calling thread
+	 */
+	@Param({"0", "2", "4"})
+	public int mintingThreads;
+
+	private JwtService jwtService;
+
+	private TokenMintingExecutor executor;
+
+	private User user;
+
+	private Context context;
+
+	@Setup
+	public void setup() {
+		jwtService = Fixtures.jwtService(alg);
+		if (mintingThreads > 0) {
+			executor = new TokenMintingExecutor(mintingThreads);
+			jwtService.setMintingExecutor(executor);
+		}
+		user = Fixtures.user(10);
+		context = Fixtures.context();
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public TokenReply createTokensForUser() throws JoseException {
+		return jwtService.createTokensForUser(user, context);
+	}
+}
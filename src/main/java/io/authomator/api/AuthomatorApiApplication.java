@@ -5,11 +5,13 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
 @EnableAutoConfiguration
 @ComponentScan({"io.authomator.api"})
 @EnableMongoRepositories("io.authomator.api.domain.repository")
+@EnableScheduling
 public class AuthomatorApiApplication {
 
     public static void main(String[] args) {
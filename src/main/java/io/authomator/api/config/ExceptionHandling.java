@@ -2,10 +2,13 @@ package io.authomator.api.config;
 
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.BindingResult;
@@ -18,6 +21,8 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import io.authomator.api.dto.GenericError;
 import io.authomator.api.dto.ValidationError;
+import io.authomator.api.exception.PasswordHashingBusyException;
+import io.authomator.api.exception.TooManyRequestsException;
 
 
 
@@ -77,6 +82,22 @@ public class ExceptionHandling {
 		return new GenericError(new RuntimeException("Invalid http request"), "HttpMessageNotReadable");
 	}
 	
+	@ExceptionHandler(PasswordHashingBusyException.class)
+	@ResponseStatus(value=HttpStatus.SERVICE_UNAVAILABLE)
+	@ResponseBody
+	public GenericError handlePasswordHashingBusyException(PasswordHashingBusyException ex, HttpServletResponse response){
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()));
+		return new GenericError(ex, "ServiceUnavailable");
+	}
+	
+	@ExceptionHandler(TooManyRequestsException.class)
+	@ResponseStatus(value=HttpStatus.TOO_MANY_REQUESTS)
+	@ResponseBody
+	public GenericError handleTooManyRequestsException(TooManyRequestsException ex, HttpServletResponse response){
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()));
+		return new GenericError(ex, "TooManyRequests");
+	}
+	
 	@ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ResponseBody
@@ -0,0 +1,37 @@
+package io.authomator.api.config;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.convert.CustomConversions;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import io.authomator.api.domain.repository.BatchingDbRefResolver;
+import io.authomator.api.domain.repository.BatchingMappingMongoConverter;
+
+/**
+ * Replaces the MappingMongoConverter of the auto configuration, so the DBRef lists of a document
+ * (the contexts of a user) are resolved with one query instead of one per reference
+ */
+@Configuration
+public class MongoConfig {
+
+	@Bean
+	public BatchingDbRefResolver dbRefResolver(MongoDbFactory factory) {
+		return new BatchingDbRefResolver(factory);
+	}
+
+	@Bean
+	public MappingMongoConverter mappingMongoConverter(BatchingDbRefResolver dbRefResolver, MongoMappingContext context, BeanFactory beanFactory) {
+		MappingMongoConverter mappingConverter = new BatchingMappingMongoConverter(dbRefResolver, context);
+		try {
+			mappingConverter.setCustomConversions(beanFactory.getBean(CustomConversions.class));
+		} catch (NoSuchBeanDefinitionException ex) {
+			// Same as the auto configuration: no custom conversions
+		}
+		return mappingConverter;
+	}
+}
@@ -29,7 +29,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter{
 			.antMatchers(HttpMethod.POST, "/reset-password").permitAll()
 			.antMatchers(HttpMethod.PUT,  "/password").permitAll()
 			.antMatchers(HttpMethod.POST, "/send-confirm-email").permitAll()
-			.antMatchers(HttpMethod.POST, "/confirm-email").permitAll()			
+			.antMatchers(HttpMethod.POST, "/confirm-email").permitAll()
+			.antMatchers(HttpMethod.GET,  "/.well-known/jwks.json").permitAll()
+			.antMatchers(HttpMethod.POST, "/revoke").permitAll()
+			.antMatchers(HttpMethod.POST, "/introspect").permitAll()
+			.antMatchers(HttpMethod.POST, "/introspect/batch").permitAll()
 			.anyRequest().denyAll();
 	}
 	
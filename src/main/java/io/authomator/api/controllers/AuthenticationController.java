@@ -1,5 +1,6 @@
 package io.authomator.api.controllers;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.apache.log4j.Level;
@@ -24,10 +25,13 @@ import io.authomator.api.dto.TokenReply;
 import io.authomator.api.dto.ValidationError;
 import io.authomator.api.exception.InvalidCredentialsException;
 import io.authomator.api.exception.MissingDefaultContextException;
+import io.authomator.api.exception.PasswordHashingBusyException;
 import io.authomator.api.exception.RegistrationNotEnabledException;
+import io.authomator.api.exception.TooManyRequestsException;
 import io.authomator.api.exception.UserAlreadyExistsException;
 import io.authomator.api.exception.UserNotFoundException;
 import io.authomator.api.jwt.JwtService;
+import io.authomator.api.throttle.SignInThrottle;
 
 @RestController
 public class AuthenticationController {
@@ -41,6 +45,9 @@ public class AuthenticationController {
 	@Autowired
 	JwtService jwtService;
 	
+	@Autowired
+	SignInThrottle signInThrottle;
+	
 	private static final Logger logger = Logger.getLogger(AuthenticationController.class);
 	
 	/*
@@ -49,17 +56,18 @@ public class AuthenticationController {
 	 */
 	
 	@RequestMapping(value="/sign-in", method=RequestMethod.POST)
-	public TokenReply login(@Valid @RequestBody LoginRequest loginRequest) throws JoseException, UserNotFoundException, InvalidCredentialsException, MissingDefaultContextException {		
+	public TokenReply login(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) throws JoseException, UserNotFoundException, InvalidCredentialsException, MissingDefaultContextException, PasswordHashingBusyException, TooManyRequestsException {		
+		signInThrottle.acquire(loginRequest.getEmail(), request.getRemoteAddr());
 		User user = userService.signIn(loginRequest.getEmail(), loginRequest.getPassword());
 		Context ctx = contextService.getDefaultContext(user);
-		return jwtService.createTokensForUser(user, ctx);
+		return jwtService.createTokensForUser(user, ctx, loginRequest.getTokens());
 	}
 	
 	@RequestMapping(value="/register", method=RequestMethod.POST)
-	public TokenReply signup(@Valid @RequestBody LoginRequest loginRequest) throws JoseException, UserAlreadyExistsException, RegistrationNotEnabledException, MissingDefaultContextException {		
+	public TokenReply signup(@Valid @RequestBody LoginRequest loginRequest) throws JoseException, UserAlreadyExistsException, RegistrationNotEnabledException, MissingDefaultContextException, PasswordHashingBusyException {		
 		User user = userService.register(loginRequest.getEmail(), loginRequest.getPassword());
 		Context ctx = contextService.getDefaultContext(user);
-		return jwtService.createTokensForUser(user, ctx);
+		return jwtService.createTokensForUser(user, ctx, loginRequest.getTokens());
 	}
 	
 	
@@ -6,7 +6,6 @@ import javax.validation.Valid;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.consumer.InvalidJwtException;
@@ -58,8 +57,8 @@ public class EmailConfirmationController {
 
 		JwtClaims claims = jwtService.validateAccessToken(req.getAccessToken());
 		User user = userService.getUserForEmailConfirmation(claims.getSubject());
-		JsonWebSignature confirmToken = jwtService.getConfirmEmailToken(user);
-		mailService.sendConfirmEmailMail(user.getEmail(), req.getUrl(), confirmToken.getCompactSerialization());
+		String confirmToken = jwtService.getConfirmEmailToken(user);
+		mailService.sendConfirmEmailMail(user.getEmail(), req.getUrl(), confirmToken);
 	}
 
 	@RequestMapping("/confirm-email")
@@ -0,0 +1,91 @@
+package io.authomator.api.controllers;
+
+import javax.validation.Valid;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.authomator.api.dto.BatchIntrospectionReply;
+import io.authomator.api.dto.BatchIntrospectionRequest;
+import io.authomator.api.dto.IntrospectionReply;
+import io.authomator.api.dto.IntrospectionRequest;
+import io.authomator.api.dto.ValidationError;
+import io.authomator.api.exception.BatchSizeExceededException;
+import io.authomator.api.jwt.TokenIntrospector;
+
+@RestController
+public class IntrospectionController {
+
+	private static final Logger logger = Logger.getLogger(IntrospectionController.class);
+
+	@Autowired
+	TokenIntrospector tokenIntrospector;
+
+	/**
+	 * Maximum number of tokens in a batch
+	 */
+	@Value("${io.authomator.api.introspect.batch.max:100}")
+	private int maxBatchSize;
+
+	/**
+	 * Introspect an access token (RFC 7662), for services that can not verify tokens themselves
+	 *
+	 * @param req
+	 * @return IntrospectionReply
+	 */
+	@RequestMapping(value="/introspect", method=RequestMethod.POST, consumes=MediaType.APPLICATION_JSON_VALUE)
+	public IntrospectionReply introspect(@Valid @RequestBody IntrospectionRequest req) {
+		return tokenIntrospector.introspect(req.getToken());
+	}
+
+	/**
+	 * Introspect an access token posted as a form parameter, the way RFC 7662 clients do
+	 *
+	 * @param token
+	 * @return IntrospectionReply
+	 */
+	@RequestMapping(value="/introspect", method=RequestMethod.POST, consumes=MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+	public IntrospectionReply introspectForm(@RequestParam("token") String token) {
+		return tokenIntrospector.introspect(token);
+	}
+
+	/**
+	 * Introspect a batch of access tokens in one request, validated in parallel
+	 *
+	 * @param req
+	 * @return BatchIntrospectionReply
+	 * @throws BatchSizeExceededException
+	 */
+	@RequestMapping(value="/introspect/batch", method=RequestMethod.POST)
+	public BatchIntrospectionReply introspectBatch(@Valid @RequestBody BatchIntrospectionRequest req) throws BatchSizeExceededException {
+		if (req.getTokens().size() > maxBatchSize) {
+			throw new BatchSizeExceededException(req.getTokens().size(), maxBatchSize);
+		}
+		return new BatchIntrospectionReply(tokenIntrospector.introspect(req.getTokens()));
+	}
+
+	/*
+	 * Exception handling
+	 * ------------------------------------------------------------------------------------------
+	 */
+
+	@ExceptionHandler(BatchSizeExceededException.class)
+	@ResponseStatus(value=HttpStatus.UNPROCESSABLE_ENTITY)
+	public ValidationError handleBatchSizeExceededException(BatchSizeExceededException ex){
+		logger.log(Level.WARN, ex.getMessage());
+		ValidationError validationError = new ValidationError();
+		validationError.addFieldError("tokens", String.format("size must be between 1 and %d", ex.getMax()), "Size");
+		return validationError;
+	}
+}
@@ -0,0 +1,76 @@
+package io.authomator.api.controllers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.authomator.api.jwt.Jwks;
+import io.authomator.api.jwt.JwtService;
+
+@RestController
+public class JwksController {
+
+	@Autowired
+	JwtService jwtService;
+
+	/**
+	 * Seconds resource servers (and proxies in between) may cache the key set
+	 */
+	@Value("${io.authomator.api.jwks.maxage:3600}")
+	private long maxAge;
+
+	@RequestMapping(value="/.well-known/jwks.json", method=RequestMethod.GET)
+	public ResponseEntity<String> jwks(@RequestHeader(value="If-None-Match", required=false) String ifNoneMatch) {
+
+		Jwks jwks = jwtService.getJwks();
+		CacheControl cacheControl = CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic();
+
+		if (matches(ifNoneMatch, jwks.getEtag())) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+					.eTag(jwks.getEtag())
+					.cacheControl(cacheControl)
+					.body(null);
+		}
+
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON_UTF8)
+				.eTag(jwks.getEtag())
+				.cacheControl(cacheControl)
+				.body(jwks.getJson());
+	}
+
+	/**
+	 * Determine if an If-None-Match header matches an entity tag, with the weak comparison of RFC 7232:
+	 * the header can be * or a comma separated list of entity tags, weak (W/) tags match their strong tag
+	 *
+	 * @param ifNoneMatch - header value or null
+	 * @param etag - quoted entity tag
+	 * @return boolean
+	 */
+	static boolean matches(final String ifNoneMatch, final String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		final String opaque = weak(etag);
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if ("*".equals(candidate) || weak(candidate).equals(opaque)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String weak(final String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+}
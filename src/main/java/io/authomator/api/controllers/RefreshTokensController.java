@@ -26,6 +26,7 @@ import io.authomator.api.dto.TokenReply;
 import io.authomator.api.dto.ValidationError;
 import io.authomator.api.exception.ContextNotFoundException;
 import io.authomator.api.exception.InvalidContextException;
+import io.authomator.api.exception.InvalidTokenVersionException;
 import io.authomator.api.exception.UserNotFoundException;
 import io.authomator.api.jwt.JwtService;
 
@@ -45,13 +46,14 @@ public class RefreshTokensController {
 
 	@RequestMapping(value="/refresh-tokens", method=RequestMethod.POST)
 	public TokenReply refresh(@Valid @RequestBody RefreshTokensRequest req) throws InvalidJwtException, MalformedClaimException, 
-																		UserNotFoundException, JoseException, InvalidContextException, ContextNotFoundException {
+																		UserNotFoundException, JoseException, InvalidContextException, ContextNotFoundException, 
+																		InvalidTokenVersionException {
 		
-		JwtClaims refreshClaims = jwtService.validateRefreshToken(req.getRefreshToken());				
+		JwtClaims refreshClaims = jwtService.validateRefreshToken(req.getRefreshToken());
 		Context ctx = contextService.findOne(refreshClaims.getStringClaimValue("ctx"));
-		User user = userService.refresh(refreshClaims.getSubject(), ctx.getId());
+		User user = userService.refresh(refreshClaims.getSubject(), ctx.getId(), jwtService.getTokenVersion(refreshClaims));
 		
-		return jwtService.createTokensForUser(user, ctx);
+		return jwtService.createTokensForUser(user, ctx, req.getTokens());
 	}
 	
 	/*
@@ -86,6 +88,13 @@ public class RefreshTokensController {
 		return createInvalidRefreshTokenValidationError();
 	}
 	
+	@ExceptionHandler(InvalidTokenVersionException.class)
+	@ResponseStatus(value=HttpStatus.UNPROCESSABLE_ENTITY)
+	public ValidationError handleInvalidTokenVersionException(InvalidTokenVersionException ex){
+		logger.log(Level.ERROR, String.format("Refresh token is invalid: %s", ex.getMessage()));
+		return createInvalidRefreshTokenValidationError();
+	}
+	
 	@ExceptionHandler(ContextNotFoundException.class)
 	@ResponseStatus(value=HttpStatus.UNPROCESSABLE_ENTITY)
 	public ValidationError handleContextNotFoundException(ContextNotFoundException ex){
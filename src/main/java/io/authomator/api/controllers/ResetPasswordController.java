@@ -6,7 +6,6 @@ import javax.validation.Valid;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.consumer.InvalidJwtException;
@@ -32,6 +31,7 @@ import io.authomator.api.dto.ValidationError;
 import io.authomator.api.exception.EmailTransportException;
 import io.authomator.api.exception.MissingDefaultContextException;
 import io.authomator.api.exception.NonSecureUrlException;
+import io.authomator.api.exception.PasswordHashingBusyException;
 import io.authomator.api.exception.UnauthorizedDomainException;
 import io.authomator.api.exception.UserNotFoundException;
 import io.authomator.api.jwt.JwtService;
@@ -67,19 +67,20 @@ public class ResetPasswordController {
 																		EmailTransportException, JoseException {
 		
 		User user = userService.forgotPassword(req.getEmail());
-		JsonWebSignature jwt = jwtService.getForgotPasswordToken(user);
-		mailService.sendForgotPasswordMail(user.getEmail(), req.getUrl(), jwt.getCompactSerialization());
+		String jwt = jwtService.getForgotPasswordToken(user);
+		mailService.sendForgotPasswordMail(user.getEmail(), req.getUrl(), jwt);
 	}
 	
 
 	@RequestMapping(value="/reset-password", method=RequestMethod.POST)
 	public TokenReply forgotPassword(			
 			@Valid @RequestBody() final ResetPasswordRequest req) throws InvalidJwtException, MalformedClaimException, 
-																			UserNotFoundException, JoseException, MissingDefaultContextException {
+																			UserNotFoundException, JoseException, MissingDefaultContextException, 
+																	PasswordHashingBusyException {
 		JwtClaims claims = jwtService.validateForgotToken(req.getResetToken());
 		User user = userService.resetPassword(claims.getSubject(), req.getNewPassword());
 		Context defaultCtx = contextService.getDefaultContext(user);
-		return jwtService.createTokensForUser(user, defaultCtx);
+		return jwtService.createTokensForUser(user, defaultCtx, req.getTokens());
 	}
 	
 	
@@ -0,0 +1,68 @@
+package io.authomator.api.controllers;
+
+import javax.validation.Valid;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.authomator.api.dto.RevokeTokenRequest;
+import io.authomator.api.dto.ValidationError;
+import io.authomator.api.jwt.JwtService;
+import io.authomator.api.jwt.RevocationService;
+
+@RestController
+public class RevocationController {
+
+	private static final Logger logger = Logger.getLogger(RevocationController.class);
+
+	@Autowired
+	JwtService jwtService;
+
+	@Autowired
+	RevocationService revocationService;
+
+	/**
+	 * Revoke an access or refresh token, whoever holds a valid token can revoke it
+	 *
+	 * @param req
+	 * @throws InvalidJwtException
+	 * @throws MalformedClaimException
+	 */
+	@RequestMapping(value="/revoke", method=RequestMethod.POST)
+	@ResponseStatus(value=HttpStatus.NO_CONTENT)
+	public void revoke(@Valid @RequestBody RevokeTokenRequest req) throws InvalidJwtException, MalformedClaimException {
+
+		JwtClaims claims;
+		try {
+			claims = jwtService.validateRefreshToken(req.getToken());
+		} catch (InvalidJwtException e) {
+			claims = jwtService.validateAccessToken(req.getToken());
+		}
+		revocationService.revoke(claims);
+	}
+
+	/*
+	 * Exception handling
+	 * ------------------------------------------------------------------------------------------
+	 */
+
+	@ExceptionHandler(InvalidJwtException.class)
+	@ResponseStatus(value=HttpStatus.UNPROCESSABLE_ENTITY)
+	public ValidationError handleInvalidJwtException(InvalidJwtException ex){
+		logger.log(Level.ERROR, String.format("Token to revoke is invalid: %s", ex.getMessage()));
+		ValidationError validationError = new ValidationError();
+		validationError.addFieldError("token", "Invalid jwt token", "InvalidToken");
+		return validationError;
+	}
+}
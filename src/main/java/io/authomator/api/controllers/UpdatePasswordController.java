@@ -27,6 +27,7 @@ import io.authomator.api.dto.ValidationError;
 import io.authomator.api.exception.ContextNotFoundException;
 import io.authomator.api.exception.InvalidContextException;
 import io.authomator.api.exception.InvalidCredentialsException;
+import io.authomator.api.exception.PasswordHashingBusyException;
 import io.authomator.api.exception.UserNotFoundException;
 import io.authomator.api.jwt.JwtService;
 
@@ -52,12 +53,13 @@ public class UpdatePasswordController {
 	@RequestMapping(value="/password", method=RequestMethod.PUT)
 	public TokenReply changePassword(@Valid @RequestBody UpdatePasswordRequest req) throws InvalidJwtException, MalformedClaimException, 
 																							UserNotFoundException, InvalidCredentialsException, 
-																							JoseException, ContextNotFoundException, InvalidContextException {
+																							JoseException, ContextNotFoundException, InvalidContextException, 
+																							PasswordHashingBusyException {
 		
 		JwtClaims claims = jwtService.validateAccessToken(req.getAccessToken());
 		Context ctx = contextService.findOne(claims.getStringClaimValue("ctx"));
 		User user = userService.updatePassword(claims.getSubject(), ctx.getId(), req.getOldPassword(), req.getNewPassword());
-		return jwtService.createTokensForUser(user, ctx);
+		return jwtService.createTokensForUser(user, ctx, req.getTokens());
 	}
 	
 		
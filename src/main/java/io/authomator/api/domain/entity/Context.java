@@ -1,8 +1,5 @@
 package io.authomator.api.domain.entity;
 
-import java.util.HashMap;
-import java.util.Set;
-
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.TypeAlias;
 import org.springframework.data.mongodb.core.mapping.DBRef;
@@ -17,10 +14,8 @@ public class Context {
 	
 	private String name;
 	
-	@DBRef
-	private User owner;
-		
-	private HashMap<String, Set<String>> userRoles = new HashMap<>();
+	@DBRef(lazy = true)
+	private User owner;					// Resolved when used, loading a user does not load the owners of its contexts
 
 	public String getId() {
 		return id;
@@ -46,12 +41,4 @@ public class Context {
 		this.owner = owner;
 	}
 
-	public HashMap<String, Set<String>> getUserRoles() {
-		return userRoles;
-	}
-
-	public void setUserRoles(HashMap<String, Set<String>> userRoles) {
-		this.userRoles = userRoles;
-	}
-	
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package io.authomator.api.domain.entity;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Membership of a user in a context, with the roles of the user in that context.
+ *
+ * One small document per (user, context) instead of a map of every member inside the context
+ * document, so large contexts do not grow towards the document size limit. The unique index on
+ * (userId, contextId) answers membership checks from the index alone.
+ */
+@Document(collection="memberships")
+@TypeAlias(value="membership")
+@CompoundIndex(name="user_context", def="{'userId': 1, 'contextId': 1}", unique=true)
+public class Membership {
+
+	@Id
+	private String id;
+
+	private String userId;
+
+	private String contextId;
+
+	private Set<String> roles = new HashSet<>();	// Roles of the user in the context
+
+	public Membership() {
+	}
+
+	public Membership(final String userId, final String contextId) {
+		this.userId = userId;
+		this.contextId = contextId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public String getContextId() {
+		return contextId;
+	}
+
+	public void setContextId(String contextId) {
+		this.contextId = contextId;
+	}
+
+	public Set<String> getRoles() {
+		return roles;
+	}
+
+	public void setRoles(Set<String> roles) {
+		this.roles = roles;
+	}
+
+}
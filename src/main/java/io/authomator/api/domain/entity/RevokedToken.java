@@ -0,0 +1,61 @@
+package io.authomator.api.domain.entity;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A revoked token, kept until the token expires
+ *
+ * The id is the jti claim of the token. MongoDB removes the document once expiresAt has passed
+ * (TTL index), revokedAt lets every node pick up the revocations made since its last sync.
+ */
+@Document(collection="revokedTokens")
+@TypeAlias(value="revokedToken")
+public class RevokedToken {
+
+	@Id
+	private String id;
+
+	@Indexed(expireAfterSeconds=0)
+	private Date expiresAt;
+
+	@Indexed
+	private Date revokedAt;
+
+	public RevokedToken() {
+	}
+
+	public RevokedToken(String id, Date expiresAt, Date revokedAt) {
+		this.id = id;
+		this.expiresAt = expiresAt;
+		this.revokedAt = revokedAt;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Date getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(Date expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+	public Date getRevokedAt() {
+		return revokedAt;
+	}
+
+	public void setRevokedAt(Date revokedAt) {
+		this.revokedAt = revokedAt;
+	}
+}
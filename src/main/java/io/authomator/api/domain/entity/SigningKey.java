@@ -0,0 +1,116 @@
+package io.authomator.api.domain.entity;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A rotated token signing key
+ *
+ * The id is the kid header of the tokens signed with the key, and is derived from the type and
+ * the rotation period so that every node generating the key for a period races for the same id.
+ */
+@Document(collection="signingKeys")
+@TypeAlias(value="signingKey")
+public class SigningKey {
+
+	public static final String TYPE_USER = "user";
+	public static final String TYPE_INTERNAL = "internal";
+
+	@Id
+	private String id;
+
+	/**
+	 * [TYPE_USER|TYPE_INTERNAL]
+	 */
+	private String type;
+
+	/**
+	 * JWS algorithm header value
+	 */
+	private String alg;
+
+	/**
+	 * Rotation period the key is active in
+	 */
+	private long period;
+
+	/**
+	 * HMAC secret (HMAC algorithms), encrypted or Base64
+	 */
+	private String secret;
+
+	/**
+	 * PKCS#8 private key, encrypted or Base64, and Base64 X.509 public key (RSA/ECDSA algorithms)
+	 */
+	private String privateKey;
+	private String publicKey;
+
+	private Date createdAt;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getAlg() {
+		return alg;
+	}
+
+	public void setAlg(String alg) {
+		this.alg = alg;
+	}
+
+	public long getPeriod() {
+		return period;
+	}
+
+	public void setPeriod(long period) {
+		this.period = period;
+	}
+
+	public String getSecret() {
+		return secret;
+	}
+
+	public void setSecret(String secret) {
+		this.secret = secret;
+	}
+
+	public String getPrivateKey() {
+		return privateKey;
+	}
+
+	public void setPrivateKey(String privateKey) {
+		this.privateKey = privateKey;
+	}
+
+	public String getPublicKey() {
+		return publicKey;
+	}
+
+	public void setPublicKey(String publicKey) {
+		this.publicKey = publicKey;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+}
@@ -32,6 +32,33 @@ public class User {
 	@DBRef
 	private Set<Context> contexts = new LinkedHashSet<>();
 	
+	private String defaultContextId;	// Context the user signs in to, one of the contexts
+	
+	/**
+	 * Monotonically increasing stamp, embedded in refresh tokens (ver claim). It is bumped on
+	 * every change that invalidates issued tokens: password, roles, removed contexts.
+	 */
+	private long tokenVersion;
+	
+	public User() {
+	}
+	
+	/**
+	 * Copy of a user, sharing its roles and contexts
+	 * 
+	 * @param user
+	 */
+	private User(final User user) {
+		this.id = user.id;
+		this.email = user.email;
+		this.emailVerified = user.emailVerified;
+		this.password = user.password;
+		this.roles = user.roles;
+		this.contexts = user.contexts;
+		this.defaultContextId = user.defaultContextId;
+		this.tokenVersion = user.tokenVersion;
+	}
+	
 	public String getId() {
 		return id;
 	}
@@ -61,7 +88,51 @@ public class User {
 	}
 
 	public void setPassword(String password) {
-		this.password = BCrypt.hashpw(password, BCrypt.gensalt(10));
+		setPasswordHash("{bcrypt}" + BCrypt.hashpw(password, BCrypt.gensalt(10)));
+	}
+
+	/**
+	 * Set an already hashed password, eg: hashed on the PasswordHashingExecutor
+	 * 
+	 * @param passwordHash
+	 */
+	public void setPasswordHash(String passwordHash) {
+		this.password = passwordHash;
+		tokenVersion++;
+	}
+
+	/**
+	 * Copy of the user with another password, as written by a targeted update: the user itself
+	 * may be cached and is left unchanged
+	 * 
+	 * @param passwordHash
+	 * @return User
+	 */
+	public User withPasswordHash(String passwordHash) {
+		User user = new User(this);
+		user.setPasswordHash(passwordHash);
+		return user;
+	}
+	
+	/**
+	 * Copy of the user with a verified email, as written by a targeted update
+	 * 
+	 * @return User
+	 */
+	public User withEmailVerified() {
+		User user = new User(this);
+		user.setEmailVerified(true);
+		return user;
+	}
+
+	/**
+	 * Replace the hash of the password by a hash of the same password with another algorithm or
+	 * cost, issued tokens stay valid
+	 * 
+	 * @param passwordHash
+	 */
+	public void upgradePasswordHash(String passwordHash) {
+		this.password = passwordHash;
 	}
 
 	public List<String> getRoles() {
@@ -73,6 +144,7 @@ public class User {
 
 	public void setRoles(List<String> roles) {
 		this.roles = roles;
+		tokenVersion++;
 	}
 	
 	public void setRoles(String role) {
@@ -82,6 +154,7 @@ public class User {
 		if (!roles.contains(roles)) {
 			roles.add(role);
 		}
+		tokenVersion++;
 	}
 
 	public Set<Context> getContexts() {
@@ -90,5 +163,35 @@ public class User {
 
 	public void setContexts(Set<Context> contexts) {
 		this.contexts = contexts;
+	}
+
+	public String getDefaultContextId() {
+		return defaultContextId;
+	}
+
+	public void setDefaultContextId(String defaultContextId) {
+		this.defaultContextId = defaultContextId;
+	}
+	
+	/**
+	 * Remove the user from a context, refresh tokens for that context stop working
+	 * 
+	 * @param context
+	 * @return boolean true if the user was a member of the context
+	 */
+	public boolean removeContext(Context context) {
+		boolean removed = contexts.remove(context);
+		if (removed) {
+			tokenVersion++;
+		}
+		return removed;
+	}
+
+	public long getTokenVersion() {
+		return tokenVersion;
+	}
+
+	public void setTokenVersion(long tokenVersion) {
+		this.tokenVersion = tokenVersion;
 	}		
 }
@@ -0,0 +1,133 @@
+package io.authomator.api.domain.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DBRef;
+
+/**
+ * Resolves the lists of DBRefs of a document with one $in query per referenced collection, instead of
+ * one query per reference.
+ *
+ * Before a document is converted (BatchingMappingMongoConverter) the references in its list fields are
+ * fetched in bulk and kept for the converting thread, the fetches of the conversion are then answered
+ * from them. References that were not prefetched, and lazy references, are fetched one by one.
+ */
+public class BatchingDbRefResolver extends DefaultDbRefResolver {
+
+	/**
+	 * Prefetched documents of the document being converted, per collection and id, null for missing
+	 * documents
+	 */
+	private final ThreadLocal<Map<String, Map<Object, DBObject>>> prefetched = new ThreadLocal<>();
+
+	private final MongoDbFactory mongoDbFactory;
+
+	private final LongAdder batchQueries = new LongAdder();
+	private final LongAdder singleQueries = new LongAdder();
+
+	public BatchingDbRefResolver(final MongoDbFactory mongoDbFactory) {
+		super(mongoDbFactory);
+		this.mongoDbFactory = mongoDbFactory;
+	}
+
+	/**
+	 * Fetch the references in the list fields of a document
+	 *
+	 * @param document - raw document, about to be converted
+	 * @return the previously prefetched documents, to restore after the conversion
+	 */
+	Map<String, Map<Object, DBObject>> prefetch(final DBObject document) {
+		final Map<String, Map<Object, DBObject>> previous = prefetched.get();
+
+		final Map<String, List<Object>> ids = new LinkedHashMap<>();
+		for (String key : document.keySet()) {
+			final Object value = document.get(key);
+			if (value instanceof List) {
+				for (Object element : (List<?>) value) {
+					if (element instanceof DBRef) {
+						final DBRef ref = (DBRef) element;
+						ids.computeIfAbsent(ref.getCollectionName(), c -> new ArrayList<>()).add(ref.getId());
+					}
+				}
+			}
+		}
+		if (ids.isEmpty()) {
+			prefetched.set(null);
+			return previous;
+		}
+
+		final Map<String, Map<Object, DBObject>> documents = new HashMap<>();
+		for (Map.Entry<String, List<Object>> collection : ids.entrySet()) {
+			final Map<Object, DBObject> byId = new HashMap<>();
+			for (Object id : collection.getValue()) {
+				byId.put(id, null);
+			}
+			final DBObject query = new BasicDBObject("_id", new BasicDBObject("$in", collection.getValue()));
+			try (DBCursor cursor = mongoDbFactory.getDb().getCollection(collection.getKey()).find(query)) {
+				while (cursor.hasNext()) {
+					final DBObject found = cursor.next();
+					byId.put(found.get("_id"), found);
+				}
+			}
+			batchQueries.increment();
+			documents.put(collection.getKey(), byId);
+		}
+		prefetched.set(documents);
+		return previous;
+	}
+
+	/**
+	 * Restore the prefetched documents of an enclosing conversion, or clear them
+	 *
+	 * @param previous
+	 */
+	void restore(final Map<String, Map<Object, DBObject>> previous) {
+		if (previous == null) {
+			prefetched.remove();
+		} else {
+			prefetched.set(previous);
+		}
+	}
+
+	@Override
+	public DBObject fetch(final DBRef dbRef) {
+		final Map<String, Map<Object, DBObject>> documents = prefetched.get();
+		if (documents != null) {
+			final Map<Object, DBObject> byId = documents.get(dbRef.getCollectionName());
+			if (byId != null && byId.containsKey(dbRef.getId())) {
+				return byId.get(dbRef.getId());
+			}
+		}
+		singleQueries.increment();
+		return super.fetch(dbRef);
+	}
+
+	/**
+	 * Number of $in queries
+	 *
+	 * @return long
+	 */
+	public long getBatchQueries() {
+		return batchQueries.sum();
+	}
+
+	/**
+	 * Number of references fetched one by one
+	 *
+	 * @return long
+	 */
+	public long getSingleQueries() {
+		return singleQueries.sum();
+	}
+}
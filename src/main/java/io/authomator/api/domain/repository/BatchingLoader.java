@@ -0,0 +1,187 @@
+package io.authomator.api.domain.repository;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+
+/**
+ * Loads entities by id, batching the lookups of concurrent requests into one {_id: {$in: [...]}}
+ * query.
+ *
+ * The first lookup of a batch leads it: it waits for the lookups of other requests until the window
+ * ends or the batch is full, then queries the batch and hands every waiting lookup its entity. It
+ * only waits while other batches are being queried, a lookup on an idle node is not delayed.
+ * There is no dispatcher thread, the batches are queried on the request threads.
+ *
+ * The lookups of the same id in a batch share the loaded instance: the entities returned by load
+ * must not be mutated, copy them before changing them.
+ *
+ * The lookups and the queries are exposed over JMX by the subclasses.
+ *
+ * @param <V> - entity
+ */
+public abstract class BatchingLoader<V> {
+
+	private final class Batch {
+		private final Set<String> ids = new LinkedHashSet<>();
+		private final CompletableFuture<Map<String, V>> result = new CompletableFuture<>();
+	}
+
+	private final MongoRepository<V, String> repository;
+
+	private final Function<V, String> idOf;
+
+	/**
+	 * Longest wait of a batch for more lookups, in nanoseconds, 0 disables the batching
+	 */
+	private final long window;
+
+	/**
+	 * Maximum number of ids in a batch
+	 */
+	private final int maxBatchSize;
+
+	private final Object lock = new Object();
+
+	/**
+	 * Batch taking lookups, guarded by lock
+	 */
+	private Batch open;
+
+	/**
+	 * Batches being queried
+	 */
+	private final AtomicInteger querying = new AtomicInteger();
+
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param repository
+	 * @param idOf - id of an entity
+	 * @param window - in microseconds
+	 * @param maxBatchSize
+	 */
+	protected BatchingLoader(final MongoRepository<V, String> repository, final Function<V, String> idOf, final long window, final int maxBatchSize) {
+		this.repository = repository;
+		this.idOf = idOf;
+		this.window = TimeUnit.MICROSECONDS.toNanos(window);
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+	}
+
+	/**
+	 * Load an entity, in a batch with the concurrent lookups
+	 *
+	 * @param id
+	 * @return V, shared with the other lookups of the id in the batch, or null for unknown ids
+	 */
+	public V load(final String id) {
+		if (id == null) {
+			return null;
+		}
+		final Batch batch;
+		final boolean leader;
+		synchronized (lock) {
+			leader = open == null;
+			if (leader) {
+				open = new Batch();
+			}
+			batch = open;
+			batch.ids.add(id);
+			if (batch.ids.size() >= maxBatchSize) {
+				open = null;
+				lock.notifyAll();
+			}
+		}
+		loads.increment();
+
+		if (leader) {
+			await(batch);
+			query(batch);
+		}
+		try {
+			return batch.result.join().get(id);
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Let the lookups of other requests join the batch, then close it
+	 *
+	 * @param batch - led by the calling thread
+	 */
+	private void await(final Batch batch) {
+		synchronized (lock) {
+			if (window > 0 && querying.get() > 0) {
+				final long deadline = System.nanoTime() + window;
+				long remaining;
+				try {
+					while (open == batch && (remaining = deadline - System.nanoTime()) > 0) {
+						TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (open == batch) {
+				open = null;
+			}
+		}
+	}
+
+	/**
+	 * Query a closed batch and complete its lookups
+	 *
+	 * @param batch
+	 */
+	private void query(final Batch batch) {
+		querying.incrementAndGet();
+		try {
+			final Map<String, V> found = new HashMap<>();
+			for (V entity : repository.findAll(batch.ids)) {
+				found.put(idOf.apply(entity), entity);
+			}
+			batches.increment();
+			batch.result.complete(found);
+		} catch (Throwable e) {
+			batch.result.completeExceptionally(e);
+		} finally {
+			querying.decrementAndGet();
+		}
+	}
+
+	@ManagedAttribute(description = "Entities looked up")
+	public long getLoads() {
+		return loads.sum();
+	}
+
+	@ManagedAttribute(description = "Queries run for the lookups")
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	@ManagedAttribute(description = "Mean number of lookups answered by a query")
+	public double getMeanBatchSize() {
+		final long count = batches.sum();
+		return count == 0 ? 0 : loads.sum() / (double) count;
+	}
+}
@@ -0,0 +1,35 @@
+package io.authomator.api.domain.repository;
+
+import java.util.Map;
+
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.mongodb.DBObject;
+
+/**
+ * MappingMongoConverter that has the references of every document it reads fetched in bulk by a
+ * BatchingDbRefResolver, before converting it
+ */
+public class BatchingMappingMongoConverter extends MappingMongoConverter {
+
+	private final BatchingDbRefResolver dbRefResolver;
+
+	public BatchingMappingMongoConverter(final BatchingDbRefResolver dbRefResolver, final MongoMappingContext mappingContext) {
+		super(dbRefResolver, mappingContext);
+		this.dbRefResolver = dbRefResolver;
+	}
+
+	@Override
+	public <S> S read(final Class<S> clazz, final DBObject dbo) {
+		if (dbo == null) {
+			return super.read(clazz, dbo);
+		}
+		final Map<String, Map<Object, DBObject>> previous = dbRefResolver.prefetch(dbo);
+		try {
+			return super.read(clazz, dbo);
+		} finally {
+			dbRefResolver.restore(previous);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package io.authomator.api.domain.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.domain.entity.Context;
+
+/**
+ * Batching loader of the contexts looked up by id, in front of ContextRepository.findOne
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=ContextLoader")
+public class ContextLoader extends BatchingLoader<Context> {
+
+	/**
+	 * Constructor
+	 *
+	 * @param contextRepository
+	 * @param window - in microseconds
+	 * @param maxBatchSize
+	 */
+	@Autowired
+	public ContextLoader(ContextRepository contextRepository,
+			@Value("${io.authomator.api.loader.window:1000}") long window,
+			@Value("${io.authomator.api.loader.batch:100}") int maxBatchSize) {
+		super(contextRepository, Context::getId, window, maxBatchSize);
+	}
+}
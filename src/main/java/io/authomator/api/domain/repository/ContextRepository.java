@@ -1,10 +1,10 @@
 package io.authomator.api.domain.repository;
 
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.mongodb.repository.MongoRepository;
 
 import io.authomator.api.domain.entity.Context;
 
-public interface ContextRepository extends PagingAndSortingRepository<Context, String> {
+public interface ContextRepository extends MongoRepository<Context, String> {
 
 	public Context findByName(final String name);
 }
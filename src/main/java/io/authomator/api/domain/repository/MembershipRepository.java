@@ -0,0 +1,10 @@
+package io.authomator.api.domain.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import io.authomator.api.domain.entity.Membership;
+
+public interface MembershipRepository extends MongoRepository<Membership, String> {
+
+	public Membership findByUserIdAndContextId(final String userId, final String contextId);
+}
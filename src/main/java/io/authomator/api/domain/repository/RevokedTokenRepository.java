@@ -0,0 +1,15 @@
+package io.authomator.api.domain.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.repository.PagingAndSortingRepository;
+
+import io.authomator.api.domain.entity.RevokedToken;
+
+public interface RevokedTokenRepository extends PagingAndSortingRepository<RevokedToken, String> {
+
+	public List<RevokedToken> findByExpiresAtAfter(final Date date);
+
+	public List<RevokedToken> findByRevokedAtAfter(final Date date);
+}
@@ -0,0 +1,16 @@
+package io.authomator.api.domain.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import io.authomator.api.domain.entity.SigningKey;
+
+/**
+ * MongoRepository rather than PagingAndSortingRepository: keys are created with insert() so that
+ * two nodes rotating at the same time can never overwrite each other's key.
+ */
+public interface SigningKeyRepository extends MongoRepository<SigningKey, String> {
+
+	public List<SigningKey> findByType(final String type);
+}
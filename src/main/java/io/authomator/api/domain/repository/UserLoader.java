@@ -0,0 +1,30 @@
+package io.authomator.api.domain.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Batching loader of the users looked up by id, in front of UserRepository.findOne
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=UserLoader")
+public class UserLoader extends BatchingLoader<User> {
+
+	/**
+	 * Constructor
+	 *
+	 * @param userRepository
+	 * @param window - in microseconds
+	 * @param maxBatchSize
+	 */
+	@Autowired
+	public UserLoader(UserRepository userRepository,
+			@Value("${io.authomator.api.loader.window:1000}") long window,
+			@Value("${io.authomator.api.loader.batch:100}") int maxBatchSize) {
+		super(userRepository, User::getId, window, maxBatchSize);
+	}
+}
@@ -1,9 +1,9 @@
 package io.authomator.api.domain.repository;
 
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.mongodb.repository.MongoRepository;
 
 import io.authomator.api.domain.entity.User;
 
-public interface UserRepository extends PagingAndSortingRepository<User, String>{
+public interface UserRepository extends MongoRepository<User, String>{
 	public User findByEmail(String email);
 }
@@ -0,0 +1,33 @@
+package io.authomator.api.domain.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.domain.entity.Context;
+
+/**
+ * Near cache of the contexts looked up by id (ContextService.findOne), for the refresh and update
+ * password requests.
+ *
+ * ContextServiceImpl evicts a context on every write, removed contexts on every node through the
+ * InvalidationBus. Changes the bus misses are picked up when the entry expires.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=ContextCache")
+public class ContextCache extends NearCache<Context> {
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize
+	 * @param ttl - in seconds
+	 */
+	@Autowired
+	public ContextCache(
+			@Value("${io.authomator.api.cache.contexts.size:10000}") int maxSize,
+			@Value("${io.authomator.api.cache.contexts.ttl:60}") long ttl) {
+		super(maxSize, ttl);
+	}
+}
@@ -9,11 +9,23 @@ public interface ContextService {
 
 	Context createContext(User owner, String name);
 
+	Context newContext(User owner, String name);
+
+	Context insertContext(Context context);
+
 	Context createDefaultContext(User owner);
 	
 	Context getDefaultContext(User owner) throws MissingDefaultContextException;
 
 	boolean hasContext(User user, String contextId);
 
+	void removeMembership(String userId, String contextId);
+
+	int retainMemberships(User user);
+
+	Context findContext(User user, String contextId);
+
+	Context findContextByName(User user, String name);
+
 	Context findOne(String contextId) throws ContextNotFoundException;
 }
@@ -1,15 +1,24 @@
 package io.authomator.api.domain.service;
 
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+
 import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.Membership;
 import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.ContextLoader;
 import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.MembershipRepository;
 import io.authomator.api.exception.ContextNotFoundException;
 import io.authomator.api.exception.MissingDefaultContextException;
 
@@ -18,55 +27,235 @@ public class ContextServiceImpl implements ContextService {
 	
 	public static Logger LOGGER = Logger.getLogger(ContextServiceImpl.class);
 	
+	/**
+	 * Only the fields of the user_context index, so a membership check is answered from the index
+	 */
+	private static final BasicDBObject MEMBERSHIP_FIELDS = new BasicDBObject("_id", 0).append("userId", 1).append("contextId", 1);
+	
 	private final ContextRepository contextRepository;
 	
+	private final ContextLoader contextLoader;
+	
+	private final MembershipRepository membershipRepository;
+	
+	private final MembershipCache membershipCache;
+	
+	private final ContextCache contextCache;
+	
+	private final InvalidationBus invalidationBus;
+	
+	private final MongoTemplate mongoTemplate;
+	
 	@Autowired
-	public ContextServiceImpl(final ContextRepository contextRepository){
+	public ContextServiceImpl(final ContextRepository contextRepository, final ContextLoader contextLoader, final MembershipRepository membershipRepository,
+			final MembershipCache membershipCache, final ContextCache contextCache, final InvalidationBus invalidationBus, final MongoTemplate mongoTemplate){
 		this.contextRepository = contextRepository;
+		this.contextLoader = contextLoader;
+		this.membershipRepository = membershipRepository;
+		this.membershipCache = membershipCache;
+		this.contextCache = contextCache;
+		this.invalidationBus = invalidationBus;
+		this.mongoTemplate = mongoTemplate;
 	}
 	
 	
 	@Override
 	public Context createContext(final User owner, final String name){
+		Context context = contextRepository.save(newContext(owner, name));
+		contextCache.evict(context.getId());
+		membershipRepository.insert(new Membership(owner.getId(), context.getId()));
+		return context;
+	}
+	
+	/**
+	 * Create a context with its id, without saving it, so users can reference it before it is inserted
+	 * 
+	 * @param owner - with an id
+	 * @param name
+	 * @return Context
+	 */
+	@Override
+	public Context newContext(final User owner, final String name){
 		Context context = new Context();
+		context.setId(new ObjectId().toHexString());
 		context.setName(name);
 		context.setOwner(owner);
-		context.getUserRoles().put(owner.getId(), new HashSet<String>());
-		return contextRepository.save(context);
+		return context;
+	}
+	
+	/**
+	 * Insert a new context and the membership of its owner, without the lookup of a save
+	 * 
+	 * @param context - with its owner
+	 * @return Context
+	 */
+	@Override
+	public Context insertContext(final Context context){
+		Context inserted = contextRepository.insert(context);
+		try {
+			membershipRepository.insert(new Membership(context.getOwner().getId(), context.getId()));
+		} catch (RuntimeException e) {
+			contextRepository.delete(context.getId());
+			invalidationBus.invalidateContext(context.getId());
+			throw e;
+		}
+		return inserted;
 	}
 
 
+	/**
+	 * Create a context named after the owner and make it the default context of the owner, the
+	 * caller saves the owner
+	 * 
+	 * @param owner
+	 * @return Context
+	 */
 	@Override
 	public Context createDefaultContext(User owner) {
-		return createContext(owner, owner.getEmail());
+		Context context = createContext(owner, owner.getEmail());
+		owner.setDefaultContextId(context.getId());
+		return context;
 	}
 
-	
+	/**
+	 * Get a context by its id, through the ContextCache and the ContextLoader
+	 * 
+	 * @param contextId
+	 * @return Context
+	 * @throws ContextNotFoundException
+	 */
 	@Override
 	public Context findOne(final String contextId) throws ContextNotFoundException{
-		Context ctx = contextRepository.findOne(contextId);
+		Context ctx = contextCache.get(contextId, contextLoader::load);
 		if (ctx == null){
 			throw new ContextNotFoundException(contextId);
 		}
 		return ctx;
 	}
 
+	/**
+	 * Get the default context of a user, the one of its defaultContextId. Users that predate the
+	 * defaultContextId (see DefaultContextMigration) have the context named after their email.
+	 * 
+	 * @param owner
+	 * @return Context
+	 * @throws MissingDefaultContextException when the user is not a member of its default context
+	 */
 	@Override
 	public Context getDefaultContext(User owner) throws MissingDefaultContextException {
-		
-		Optional<Context> ctx = owner.getContexts().stream()
-			.filter(c -> c.getName().equals(owner.getEmail()))
-			.findFirst();
-		if (! ctx.isPresent() ) {
+		Context ctx = owner.getDefaultContextId() != null
+				? findContext(owner, owner.getDefaultContextId())
+				: findContextByName(owner, owner.getEmail());
+		if (ctx == null) {
 			throw new MissingDefaultContextException();
 		}
-		return ctx.get();
+		return ctx;
+	}
+	
+	/**
+	 * Find a context by its name among the (already loaded) contexts of the user
+	 * 
+	 * @param user
+	 * @param name
+	 * @return Context or null
+	 */
+	@Override
+	public Context findContextByName(User user, final String name){
+		return user.getContexts().stream()
+			.filter(c -> c != null && c.getName().equals(name))
+			.findFirst()
+			.orElse(null);
+	}
+	
+	/**
+	 * Find a context among the (already loaded) contexts of the user
+	 * 
+	 * @param user
+	 * @param contextId
+	 * @return Context or null if the user is not a member of the context
+	 */
+	@Override
+	public Context findContext(User user, final String contextId){
+		return user.getContexts().stream()
+			.filter(c -> c != null && c.getId().equals(contextId))
+			.findFirst()
+			.orElse(null);
 	}
 	
+	/**
+	 * Determine if the user is a member of the context, from the MembershipCache or else from the
+	 * user_context index of the memberships collection. Users whose memberships predate the collection
+	 * (see MembershipMigration) are checked against their (already loaded) contexts.
+	 * 
+	 * @param user
+	 * @param contextId
+	 * @return boolean
+	 */
 	@Override
 	public boolean hasContext(User user, final String contextId){
+		if (contextId == null) {
+			return false;
+		}
+		if (membershipCache.isMember(user.getId(), contextId, this::isMember)) {
+			return true;
+		}
 		return user.getContexts().stream()
-			.anyMatch(c -> c.getId().equals(contextId));
+			.anyMatch(c -> c != null && c.getId().equals(contextId));
+	}
+	
+	/**
+	 * Remove a user from a context: delete its membership and evict it on every node. The caller
+	 * removes the context from the user, see MembershipListener
+	 * 
+	 * @param userId
+	 * @param contextId
+	 */
+	@Override
+	public void removeMembership(final String userId, final String contextId){
+		memberships().remove(new BasicDBObject("userId", userId).append("contextId", contextId));
+		invalidationBus.invalidateMembership(userId, contextId);
+	}
+	
+	/**
+	 * Remove a saved user from the contexts it no longer has, see MembershipListener
+	 * 
+	 * @param user - as saved
+	 * @return int number of memberships removed
+	 */
+	@Override
+	public int retainMemberships(final User user){
+		final Set<String> contextIds = user.getContexts().stream()
+			.filter(c -> c != null && c.getId() != null)
+			.map(Context::getId)
+			.collect(Collectors.toSet());
+		int removed = 0;
+		// Covered by the user_context index
+		try (DBCursor memberships = memberships().find(new BasicDBObject("userId", user.getId()), MEMBERSHIP_FIELDS)) {
+			while (memberships.hasNext()) {
+				final Object contextId = memberships.next().get("contextId");
+				if (contextId instanceof String && !contextIds.contains(contextId)) {
+					removeMembership(user.getId(), (String) contextId);
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+	
+	private DBCollection memberships(){
+		return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Membership.class));
+	}
+	
+	/**
+	 * Lookup a membership in the memberships collection, covered by the user_context index
+	 * 
+	 * @param userId
+	 * @param contextId
+	 * @return boolean
+	 */
+	private boolean isMember(final String userId, final String contextId){
+		return memberships()
+			.findOne(new BasicDBObject("userId", userId).append("contextId", contextId), MEMBERSHIP_FIELDS) != null;
 	}
 	
 }
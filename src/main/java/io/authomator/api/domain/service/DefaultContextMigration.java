@@ -0,0 +1,98 @@
+package io.authomator.api.domain.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Sets the defaultContextId of the users that predate it: their default context is the context named
+ * after their email.
+ *
+ * Runs once the application is ready. Until a user is migrated getDefaultContext falls back to the
+ * context name, so the migration can run while requests are served, and on several nodes at once:
+ * a user is only updated while it has no defaultContextId.
+ */
+@Component
+public class DefaultContextMigration implements ApplicationListener<ApplicationReadyEvent> {
+
+	private static final Logger logger = Logger.getLogger(DefaultContextMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	private final ContextService contextService;
+
+	private final boolean enabled;
+
+	/**
+	 * Constructor
+	 *
+	 * @param mongoTemplate
+	 * @param contextService
+	 * @param enabled
+	 */
+	@Autowired
+	public DefaultContextMigration(MongoTemplate mongoTemplate, ContextService contextService,
+			@Value("${io.authomator.api.migration.defaultcontext:true}") boolean enabled) {
+		this.mongoTemplate = mongoTemplate;
+		this.contextService = contextService;
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void onApplicationEvent(final ApplicationReadyEvent event) {
+		if (!enabled) {
+			return;
+		}
+		try {
+			migrate();
+		} catch (Exception e) {
+			// The fallback keeps the unmigrated users working, the next start retries
+			logger.log(Level.ERROR, String.format("Default context migration failed: %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Set the defaultContextId of every user without one
+	 *
+	 * @return int number of migrated users
+	 */
+	public int migrate() {
+		final Query unmigrated = query(where("defaultContextId").exists(false));
+		int migrated = 0;
+		int missing = 0;
+		try (CloseableIterator<User> users = mongoTemplate.stream(unmigrated, User.class)) {
+			while (users.hasNext()) {
+				final User user = users.next();
+				final Context context = contextService.findContextByName(user, user.getEmail());
+				if (context == null) {
+					missing++;
+					continue;
+				}
+				if (mongoTemplate.updateFirst(
+						query(where("_id").is(user.getId()).and("defaultContextId").exists(false)),
+						Update.update("defaultContextId", context.getId()),
+						User.class).getN() > 0) {
+					migrated++;
+				}
+			}
+		}
+		if (migrated > 0 || missing > 0) {
+			logger.log(Level.INFO, String.format("Set the default context of %d users, %d users have no context named after their email", migrated, missing));
+		}
+		return migrated;
+	}
+}
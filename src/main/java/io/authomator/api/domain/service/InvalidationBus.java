@@ -0,0 +1,431 @@
+package io.authomator.api.domain.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Evicts the users, contexts and memberships written on one node from the caches of every node, and adds the
+ * email addresses registered on one node to the KnownEmailFilter of every node.
+ *
+ * A node that writes a user or a context evicts its own entries and inserts an invalidation event
+ * into the capped invalidations collection. Every node tails that collection with a tailable,
+ * await data cursor, and evicts the entries named by the events of the other nodes as they are
+ * inserted. Where the cursor is not kept open (the collection is not capped yet, or the server does
+ * not support tailable cursors) the collection is polled instead. A collection that is not capped does
+ * not drop its oldest events: every node deletes the events older than the retention then.
+ *
+ * Events are read in insertion ($natural) order, never by the time in their ids: the clocks of the
+ * publishing nodes do not matter. A reopened cursor, or the next poll, resumes right after the last
+ * event read. When that event is gone from the capped collection, the events in between may be lost
+ * and the caches are cleared. Events, received events and the delivery lag are exposed over JMX.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=InvalidationBus")
+public class InvalidationBus {
+
+	private static final Logger logger = Logger.getLogger(InvalidationBus.class);
+
+	static final String COLLECTION = "invalidations";
+
+	private static final String USER = "user";
+
+	private static final String CONTEXT = "context";
+
+	private static final String MEMBERSHIP = "membership";
+
+	private static final String EMAIL = "email";
+
+	/**
+	 * Milliseconds between two deletions of the expired events of a collection that is not capped
+	 */
+	private static final long PRUNE_INTERVAL = 60 * 1000L;
+
+	private final MongoTemplate mongoTemplate;
+
+	private final UserCache userCache;
+
+	private final ContextCache contextCache;
+
+	private final MembershipCache membershipCache;
+
+	private final KnownEmailFilter knownEmailFilter;
+
+	private final boolean enabled;
+
+	/**
+	 * Size of the capped collection in bytes
+	 */
+	private final long size;
+
+	/**
+	 * Milliseconds between polls when the cursor is not kept open
+	 */
+	private final long poll;
+
+	/**
+	 * Milliseconds an event is kept when the collection is not capped
+	 */
+	private final long retention;
+
+	/**
+	 * Tells the events of this node apart
+	 */
+	private final String node = new ObjectId().toHexString();
+
+	/**
+	 * Id of the last event read, null when resuming at a position without checking it (startup, lost
+	 * events). Only used by the listener thread
+	 */
+	private Object last;
+
+	/**
+	 * Number of events before the next one to read, in $natural order, -1 until the first count. Only
+	 * used by the listener thread, a hint: capped collections drop their oldest events
+	 */
+	private long position = -1;
+
+	/**
+	 * Time of the last deletion of the expired events. Only used by the listener thread
+	 */
+	private long pruned;
+
+	private volatile boolean running;
+
+	private volatile boolean tailing;
+
+	private volatile long lagMillis;
+
+	private Thread listener;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder received = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param mongoTemplate
+	 * @param userCache
+	 * @param contextCache
+	 * @param membershipCache
+	 * @param knownEmailFilter
+	 * @param enabled
+	 * @param size - of the capped collection in bytes
+	 * @param poll - in milliseconds
+	 * @param retention - of the events when the collection is not capped, in seconds
+	 */
+	@Autowired
+	public InvalidationBus(MongoTemplate mongoTemplate, UserCache userCache, ContextCache contextCache, MembershipCache membershipCache,
+			KnownEmailFilter knownEmailFilter,
+			@Value("${io.authomator.api.invalidation.enabled:true}") boolean enabled,
+			@Value("${io.authomator.api.invalidation.size:1048576}") long size,
+			@Value("${io.authomator.api.invalidation.poll:100}") long poll,
+			@Value("${io.authomator.api.invalidation.retention:600}") long retention) {
+		this.mongoTemplate = mongoTemplate;
+		this.userCache = userCache;
+		this.contextCache = contextCache;
+		this.membershipCache = membershipCache;
+		this.knownEmailFilter = knownEmailFilter;
+		this.enabled = enabled;
+		this.size = size;
+		this.poll = poll;
+		this.retention = retention * 1000L;
+	}
+
+	/**
+	 * Evict a written user from the caches of every node
+	 *
+	 * @param userId
+	 */
+	public void invalidateUser(final String userId) {
+		userCache.evict(userId);
+		publish(USER, userId);
+	}
+
+	/**
+	 * Evict a written context from the caches of every node
+	 *
+	 * @param contextId
+	 */
+	public void invalidateContext(final String contextId) {
+		contextCache.evict(contextId);
+		publish(CONTEXT, contextId);
+	}
+
+	/**
+	 * Evict a removed membership from the caches of every node
+	 *
+	 * @param userId
+	 * @param contextId
+	 */
+	public void invalidateMembership(final String userId, final String contextId) {
+		membershipCache.evict(userId, contextId);
+		publish(MEMBERSHIP, userId + ':' + contextId);
+	}
+
+	/**
+	 * Add a registered email address to the KnownEmailFilter of every node, so the other nodes do
+	 * not answer it as unknown until their next sync
+	 *
+	 * @param email
+	 */
+	public void registerEmail(final String email) {
+		knownEmailFilter.add(email);
+		publish(EMAIL, email);
+	}
+
+	private DBCollection collection() {
+		return mongoTemplate.getCollection(COLLECTION);
+	}
+
+	private void publish(final String type, final String key) {
+		if (!enabled) {
+			return;
+		}
+		try {
+			collection().insert(new BasicDBObject("node", node)
+					.append("type", type)
+					.append("key", key)
+					.append("at", System.currentTimeMillis()));
+			published.increment();
+		} catch (RuntimeException e) {
+			// The other nodes see the change when their entries expire
+			logger.log(Level.WARN, String.format("Could not publish the invalidation of %s %s: %s", type, key, e.getMessage()));
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			if (!mongoTemplate.collectionExists(COLLECTION)) {
+				mongoTemplate.getDb().createCollection(COLLECTION, new BasicDBObject("capped", true).append("size", size));
+			}
+		} catch (MongoException e) {
+			// Created by another node meanwhile, or the server does not do capped collections: polled
+			logger.log(Level.INFO, String.format("Could not create the capped %s collection: %s", COLLECTION, e.getMessage()));
+		}
+		running = true;
+		listener = new Thread(this::listen, "invalidation-bus");
+		listener.setDaemon(true);
+		listener.start();
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		if (listener != null) {
+			listener.interrupt();
+			listener.join(TimeUnit.SECONDS.toMillis(2));
+		}
+	}
+
+	/**
+	 * Tail the invalidations collection until stopped, reopening the cursor whenever it dies
+	 */
+	private void listen() {
+		boolean rescan = false;
+		while (running) {
+			final boolean capped = isCapped();
+			try {
+				if (position < 0) {
+					// The caches are empty on startup, only the events published from now on matter
+					position = collection().count();
+				}
+				rescan = read(capped, rescan);
+				if (!capped && System.currentTimeMillis() - pruned >= PRUNE_INTERVAL) {
+					pruned = System.currentTimeMillis();
+					prune(pruned);
+				}
+			} catch (RuntimeException e) {
+				if (running) {
+					logger.log(Level.WARN, String.format("Tailing the %s collection failed: %s", COLLECTION, e.getMessage()));
+				}
+			}
+			if (!rescan) {
+				pause(System.currentTimeMillis());
+			}
+		}
+	}
+
+	/**
+	 * Read the events after the last one read, until the cursor dies (capped) or is exhausted (polled)
+	 *
+	 * @param capped - tail the collection
+	 * @param rescan - look for the last event read from the first event on
+	 * @return boolean, true to look for the last event read from the first event on
+	 */
+	private boolean read(final boolean capped, final boolean rescan) {
+		// Lands on the last event read if no event was dropped since, or on the next one to read
+		final long skip = rescan ? 0 : Math.max(0, last == null ? position : position - 1);
+		long read = skip;
+		boolean found = last == null;
+		try (DBCursor cursor = open(skip, capped)) {
+			tailing = capped;
+			while (running) {
+				final long started = System.currentTimeMillis();
+				final DBObject event = capped ? cursor.tryNext() : (cursor.hasNext() ? cursor.next() : null);
+				if (event != null) {
+					read++;
+					if (found) {
+						receive(event);
+						last = event.get("_id");
+						position = read;
+					} else {
+						found = event.get("_id").equals(last);
+					}
+					continue;
+				}
+				if (!found) {
+					if (skip > 0) {
+						// Older events were dropped: the last event read is further up, if still there
+						return true;
+					}
+					lost(read);
+					found = true;
+				}
+				if (!capped || cursor.getCursorId() == 0) {
+					break;
+				}
+				// Await data keeps the server waiting for events, do not spin where it does not
+				pause(started);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The last event read was dropped from the capped collection before the events after it were
+	 * read: forget every cached entry, and go on with the events from now on
+	 *
+	 * @param position - number of events in the collection
+	 */
+	private void lost(final long position) {
+		logger.log(Level.WARN, String.format("Invalidations may have been lost, %s dropped the last one read: clearing the caches", COLLECTION));
+		userCache.clear();
+		contextCache.clear();
+		membershipCache.clear();
+		this.last = null;
+		this.position = position;
+	}
+
+	/**
+	 * Delete the events published before the retention, the collection is not capped. A node that
+	 * did not read them yet clears its caches, as when a capped collection wraps around
+	 *
+	 * @param now - in milliseconds since the epoch
+	 */
+	void prune(final long now) {
+		try {
+			final int deleted = collection().remove(new BasicDBObject("at", new BasicDBObject("$lt", now - retention))).getN();
+			if (deleted > 0) {
+				logger.log(Level.DEBUG, String.format("Deleted %d expired events from the %s collection", deleted, COLLECTION));
+			}
+		} catch (RuntimeException e) {
+			// Retried on the next interval
+			logger.log(Level.WARN, String.format("Could not delete the expired events from the %s collection: %s", COLLECTION, e.getMessage()));
+		}
+	}
+
+	/**
+	 * Open a cursor on the events in $natural order, tailable on a capped collection
+	 *
+	 * @param skip - events
+	 * @param tailable
+	 * @return DBCursor
+	 */
+	private DBCursor open(final long skip, final boolean tailable) {
+		final DBCursor cursor = collection().find()
+				.sort(new BasicDBObject("$natural", 1))
+				.skip((int) Math.min(Integer.MAX_VALUE, skip));
+		if (tailable) {
+			cursor.addOption(Bytes.QUERYOPTION_TAILABLE).addOption(Bytes.QUERYOPTION_AWAITDATA);
+		}
+		return cursor;
+	}
+
+	private boolean isCapped() {
+		try {
+			return collection().isCapped();
+		} catch (MongoException e) {
+			return false;
+		}
+	}
+
+	private void pause(final long started) {
+		final long remaining = started + poll - System.currentTimeMillis();
+		if (remaining <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(remaining);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+
+	private void receive(final DBObject event) {
+		if (node.equals(event.get("node"))) {
+			return;
+		}
+		final Object key = event.get("key");
+		if (USER.equals(event.get("type"))) {
+			userCache.evict(String.valueOf(key));
+		} else if (CONTEXT.equals(event.get("type"))) {
+			contextCache.evict(String.valueOf(key));
+		} else if (MEMBERSHIP.equals(event.get("type"))) {
+			final String[] ids = String.valueOf(key).split(":", 2);
+			if (ids.length == 2) {
+				membershipCache.evict(ids[0], ids[1]);
+			}
+		} else if (EMAIL.equals(event.get("type"))) {
+			knownEmailFilter.add(String.valueOf(key));
+		}
+		if (event.get("at") instanceof Number) {
+			lagMillis = System.currentTimeMillis() - ((Number) event.get("at")).longValue();
+		}
+		received.increment();
+	}
+
+	@ManagedAttribute(description = "Invalidations published by this node")
+	public long getPublished() {
+		return published.sum();
+	}
+
+	@ManagedAttribute(description = "Invalidations of other nodes applied by this node")
+	public long getReceived() {
+		return received.sum();
+	}
+
+	@ManagedAttribute(description = "Time (ms) between the publication and the reception of the last received invalidation")
+	public long getLagMillis() {
+		return lagMillis;
+	}
+
+	@ManagedAttribute(description = "Whether the collection is tailed, rather than polled")
+	public boolean isTailing() {
+		return tailing;
+	}
+}
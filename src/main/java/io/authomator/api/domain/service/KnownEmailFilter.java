@@ -0,0 +1,286 @@
+package io.authomator.api.domain.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Bloom filter of the (trimmed, lower cased) email addresses of the users, so sign in and forgot
+ * password requests for unknown addresses are answered without a database read.
+ *
+ * The filter is loaded from the users collection on startup, or from a snapshot file followed by the
+ * users created since the snapshot. Users saved by this node are added as they are saved, the users
+ * registered on other nodes as their InvalidationBus events arrive. Every
+ * io.authomator.api.emailfilter.sync milliseconds the users created since the last sync are added as
+ * well, by their ObjectId time, for the events that were not delivered. Until the filter is loaded, or
+ * when the sync keeps failing, every address might exist.
+ *
+ * The filter only gives certain answers for absent addresses: a removed user or a changed address
+ * stays in the filter, and costs the database read it cost before.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=KnownEmailFilter")
+public class KnownEmailFilter extends AbstractMongoEventListener<User> {
+
+	private static final Logger logger = Logger.getLogger(KnownEmailFilter.class);
+
+	private static final String USERS = "users";
+
+	/**
+	 * Users created this long before the last sync are loaded again, covers clock differences
+	 * between the nodes
+	 */
+	private static final long SYNC_OVERLAP = 60 * 1000L;
+
+	private final MongoTemplate mongoTemplate;
+
+	private final boolean enabled;
+
+	private final int capacity;
+
+	private final double fpp;
+
+	/**
+	 * Milliseconds between syncs
+	 */
+	private final long sync;
+
+	/**
+	 * Snapshot file, null when disabled
+	 */
+	private final Path snapshot;
+
+	private volatile ScalableBloomFilter filter;
+
+	/**
+	 * The filter being loaded from the users collection, receives the users saved meanwhile
+	 */
+	private volatile ScalableBloomFilter loading;
+
+	/**
+	 * Time of the last successful sync, 0 before the filter was loaded
+	 */
+	private volatile long lastSync;
+
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder certainMisses = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param mongoTemplate
+	 * @param enabled
+	 * @param capacity - addresses of the first slice, the filter grows beyond it
+	 * @param fpp - false positive rate
+	 * @param sync - in milliseconds
+	 * @param snapshot - path of the snapshot file, empty to disable the snapshot
+	 */
+	@Autowired
+	public KnownEmailFilter(
+			MongoTemplate mongoTemplate,
+			@Value("${io.authomator.api.emailfilter.enabled:true}") boolean enabled,
+			@Value("${io.authomator.api.emailfilter.capacity:100000}") int capacity,
+			@Value("${io.authomator.api.emailfilter.fpp:0.01}") double fpp,
+			@Value("${io.authomator.api.emailfilter.sync:10000}") long sync,
+			@Value("${io.authomator.api.emailfilter.snapshot:}") String snapshot) {
+
+		this.mongoTemplate = mongoTemplate;
+		this.enabled = enabled;
+		this.capacity = capacity;
+		this.fpp = fpp;
+		this.sync = sync;
+		this.snapshot = snapshot == null || snapshot.trim().isEmpty() ? null : Paths.get(snapshot.trim());
+	}
+
+	static String normalize(final String email) {
+		return email.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Determine if a user might have an email address
+	 *
+	 * @param email
+	 * @return boolean, false when no user has the address
+	 */
+	public boolean mightExist(final String email) {
+		final ScalableBloomFilter current = filter;
+		if (!enabled || current == null || email == null) {
+			return true;
+		}
+		if (System.currentTimeMillis() - lastSync > 2 * sync) {
+			// The sync failed since, the filter may miss users whose events were not delivered
+			return true;
+		}
+		lookups.increment();
+		if (current.mightContain(normalize(email))) {
+			return true;
+		}
+		certainMisses.increment();
+		return false;
+	}
+
+	/**
+	 * Add the address of a user, from the events of the other nodes
+	 *
+	 * @param email
+	 */
+	public void add(final String email) {
+		final ScalableBloomFilter current = filter != null ? filter : loading;
+		if (current != null && email != null) {
+			current.add(normalize(email));
+		}
+	}
+
+	/**
+	 * Add the address of every user saved by this node
+	 */
+	@Override
+	public void onAfterSave(final AfterSaveEvent<User> event) {
+		add(event.getSource().getEmail());
+	}
+
+	/**
+	 * Load the filter on startup, before the first sign in
+	 */
+	@PostConstruct
+	public void load() {
+		if (!enabled) {
+			return;
+		}
+		if (snapshot != null && Files.isReadable(snapshot)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+				final long savedAt = in.readLong();
+				final ScalableBloomFilter loaded = ScalableBloomFilter.readFrom(in, capacity, fpp);
+				if (loaded != null) {
+					filter = loaded;
+					lastSync = savedAt;
+					logger.log(Level.INFO, String.format("Loaded %d known emails from %s", loaded.size(), snapshot));
+				}
+			} catch (IOException e) {
+				logger.log(Level.WARN, String.format("Ignoring the known emails snapshot %s: %s", snapshot, e.getMessage()));
+			}
+		}
+		scheduledSync();
+		writeSnapshot();
+	}
+
+	/**
+	 * Pick up the users created on the other nodes
+	 */
+	@Scheduled(fixedDelayString = "${io.authomator.api.emailfilter.sync:10000}")
+	public void scheduledSync() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			sync(System.currentTimeMillis());
+		} catch (Exception e) {
+			// Keep answering from the addresses loaded so far, the next run retries
+			logger.log(Level.ERROR, String.format("Known emails sync failed: %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Add the addresses of the users created since the last sync, of every user on the first run
+	 *
+	 * @param now - in milliseconds since the epoch
+	 */
+	synchronized void sync(final long now) {
+		final ScalableBloomFilter target = filter != null ? filter : new ScalableBloomFilter(capacity, fpp);
+		loading = target;
+		final DBObject query = new BasicDBObject();
+		if (filter != null) {
+			// The smallest ObjectId of that second
+			final long since = Math.max(0, lastSync - SYNC_OVERLAP) / 1000;
+			query.put("_id", new BasicDBObject("$gt", new ObjectId(String.format("%08x%016x", since, 0))));
+		}
+		int added = 0;
+		try (DBCursor users = mongoTemplate.getCollection(USERS).find(query, new BasicDBObject("email", 1))) {
+			while (users.hasNext()) {
+				final Object email = users.next().get("email");
+				if (email instanceof String && target.add(normalize((String) email))) {
+					added++;
+				}
+			}
+		}
+		if (filter == null) {
+			filter = target;
+			logger.log(Level.INFO, String.format("Loaded %d known emails", added));
+		}
+		loading = null;
+		lastSync = now;
+	}
+
+	/**
+	 * Write the filter to the snapshot file, through a temporary file
+	 */
+	@PreDestroy
+	public void writeSnapshot() {
+		final ScalableBloomFilter current = filter;
+		if (snapshot == null || current == null) {
+			return;
+		}
+		try {
+			final Path tmp = Files.createTempFile(snapshot.toAbsolutePath().getParent(), "emails", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeLong(lastSync);
+				current.writeTo(out);
+			}
+			Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.log(Level.WARN, String.format("Unable to write the known emails snapshot %s: %s", snapshot, e.getMessage()));
+		}
+	}
+
+	@ManagedAttribute(description = "Lookups answered by the filter")
+	public long getLookups() {
+		return lookups.sum();
+	}
+
+	@ManagedAttribute(description = "Lookups of unknown addresses answered without a database read")
+	public long getCertainMisses() {
+		return certainMisses.sum();
+	}
+
+	@ManagedAttribute(description = "Number of known addresses")
+	public long getSize() {
+		final ScalableBloomFilter current = filter;
+		return current == null ? 0 : current.size();
+	}
+
+	@ManagedAttribute(description = "Memory (bytes) of the filter")
+	public long getBytes() {
+		final ScalableBloomFilter current = filter;
+		return current == null ? 0 : current.getBytes();
+	}
+}
@@ -0,0 +1,71 @@
+package io.authomator.api.domain.service;
+
+import java.util.function.BiPredicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Near cache of the memberships found by ContextService.hasContext, keyed by user and context id.
+ *
+ * Only memberships that exist are cached, so a hit spares the lookup in the memberships collection.
+ * ContextService.removeMembership evicts a removed membership on every node through the
+ * InvalidationBus, a lookup racing the removal is not cached. The removals the bus misses are picked
+ * up when the entry expires.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=MembershipCache")
+public class MembershipCache extends NearCache<Boolean> {
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize
+	 * @param ttl - in seconds
+	 */
+	@Autowired
+	public MembershipCache(
+			@Value("${io.authomator.api.cache.memberships.size:10000}") int maxSize,
+			@Value("${io.authomator.api.cache.memberships.ttl:60}") long ttl) {
+		super(maxSize, ttl);
+	}
+
+	private static String key(final String userId, final String contextId) {
+		return userId + ':' + contextId;
+	}
+
+	/**
+	 * Determine if the user is a member of the context, from the cache or else from the lookup
+	 *
+	 * @param userId
+	 * @param contextId
+	 * @param lookup - reads the membership from the database
+	 * @return boolean
+	 */
+	public boolean isMember(final String userId, final String contextId, final BiPredicate<String, String> lookup) {
+		return get(key(userId, contextId), key -> lookup.test(userId, contextId) ? Boolean.TRUE : null) != null;
+	}
+
+	/**
+	 * Determine if the user was recently found to be a member of the context
+	 *
+	 * @param userId
+	 * @param contextId
+	 * @return boolean
+	 */
+	public boolean contains(final String userId, final String contextId) {
+		return get(key(userId, contextId)) != null;
+	}
+
+	/**
+	 * Forget a membership, to be called when the user leaves the context
+	 *
+	 * @param userId
+	 * @param contextId
+	 */
+	public void evict(final String userId, final String contextId) {
+		evict(key(userId, contextId));
+	}
+}
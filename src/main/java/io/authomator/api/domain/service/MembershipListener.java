@@ -0,0 +1,43 @@
+package io.authomator.api.domain.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Keeps the memberships of a user in line with its contexts when the user is saved as a whole.
+ *
+ * Saving a user without one of its contexts (User.removeContext, or a context removed from the set)
+ * removes the user from that context: the membership is deleted and evicted, and so is the user, on
+ * every node. ContextService.hasContext stops granting access at once.
+ */
+@Component
+public class MembershipListener extends AbstractMongoEventListener<User> {
+
+	private final ContextService contextService;
+
+	private final InvalidationBus invalidationBus;
+
+	/**
+	 * Constructor
+	 *
+	 * @param contextService
+	 * @param invalidationBus
+	 */
+	@Autowired
+	public MembershipListener(ContextService contextService, InvalidationBus invalidationBus) {
+		this.contextService = contextService;
+		this.invalidationBus = invalidationBus;
+	}
+
+	@Override
+	public void onAfterSave(final AfterSaveEvent<User> event) {
+		final User user = event.getSource();
+		if (user.getId() != null && contextService.retainMemberships(user) > 0) {
+			invalidationBus.invalidateUser(user.getId());
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package io.authomator.api.domain.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.Membership;
+
+/**
+ * Moves the members of the contexts that predate the memberships collection, kept in a userRoles map
+ * inside the context document, to one Membership per user and context, then removes the map.
+ *
+ * Runs once the application is ready. Until a context is migrated hasContext falls back to the
+ * contexts of the user, so the migration can run while requests are served, and on several nodes at
+ * once: memberships are upserted and only created once.
+ */
+@Component
+public class MembershipMigration implements ApplicationListener<ApplicationReadyEvent> {
+
+	private static final Logger logger = Logger.getLogger(MembershipMigration.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	private final boolean enabled;
+
+	/**
+	 * Constructor
+	 *
+	 * @param mongoTemplate
+	 * @param enabled
+	 */
+	@Autowired
+	public MembershipMigration(MongoTemplate mongoTemplate,
+			@Value("${io.authomator.api.migration.memberships:true}") boolean enabled) {
+		this.mongoTemplate = mongoTemplate;
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void onApplicationEvent(final ApplicationReadyEvent event) {
+		if (!enabled) {
+			return;
+		}
+		try {
+			migrate();
+		} catch (Exception e) {
+			// The fallback keeps the unmigrated contexts working, the next start retries
+			logger.log(Level.ERROR, String.format("Membership migration failed: %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Create the memberships of every context with a userRoles map and remove the map
+	 *
+	 * @return int number of migrated contexts
+	 */
+	@SuppressWarnings("unchecked")
+	public int migrate() {
+		final BasicDBObject unmigrated = new BasicDBObject("userRoles", new BasicDBObject("$exists", true));
+		int contexts = 0;
+		int memberships = 0;
+		try (DBCursor cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Context.class))
+				.find(unmigrated, new BasicDBObject("userRoles", 1))) {
+			while (cursor.hasNext()) {
+				final DBObject context = cursor.next();
+				final String contextId = context.get("_id").toString();
+				final Object userRoles = context.get("userRoles");
+				if (userRoles instanceof DBObject) {
+					for (String userId : ((DBObject) userRoles).keySet()) {
+						final Object memberRoles = ((DBObject) userRoles).get(userId);
+						final HashSet<String> roles = new HashSet<>();
+						if (memberRoles instanceof Collection) {
+							((Collection<Object>) memberRoles).forEach(role -> roles.add(String.valueOf(role)));
+						}
+						mongoTemplate.upsert(
+								query(where("userId").is(userId).and("contextId").is(contextId)),
+								new Update().setOnInsert("roles", roles),
+								Membership.class);
+						memberships++;
+					}
+				}
+				mongoTemplate.getCollection(mongoTemplate.getCollectionName(Context.class)).update(
+						new BasicDBObject("_id", context.get("_id")),
+						new BasicDBObject("$unset", new BasicDBObject("userRoles", "")));
+				contexts++;
+			}
+		}
+		if (contexts > 0) {
+			logger.log(Level.INFO, String.format("Moved %d members of %d contexts to the memberships collection", memberships, contexts));
+		}
+		return contexts;
+	}
+}
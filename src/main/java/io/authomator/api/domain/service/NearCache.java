@@ -0,0 +1,172 @@
+package io.authomator.api.domain.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+
+/**
+ * Bounded LRU cache of entities read from MongoDB, keyed by id, with a time to live.
+ *
+ * Cached entities are shared between requests and must not be changed: write paths read the entity
+ * from the database and evict it once written. An entity loaded while it is being evicted is not
+ * cached, so a load racing a write can not put the old copy back.
+ *
+ * The hit/miss counters are exposed over JMX by the subclasses.
+ *
+ * @param <V> - entity
+ */
+public abstract class NearCache<V> {
+
+	private static final class Entry<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private Entry(final V value, final long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Access ordered, guarded by itself
+	 */
+	private final LinkedHashMap<String, Entry<V>> entries;
+
+	/**
+	 * Maximum number of cached entities
+	 */
+	private final int maxSize;
+
+	/**
+	 * Time to live of an entry in milliseconds, 0 disables the cache
+	 */
+	private final long ttl;
+
+	/**
+	 * Bumped on every eviction, loads that started before an eviction are not cached
+	 */
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize - 0 disables the cache
+	 * @param ttl - in seconds, 0 disables the cache
+	 */
+	protected NearCache(final int maxSize, final long ttl) {
+		this.maxSize = maxSize;
+		this.ttl = ttl * 1000L;
+		this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Entry<V>> eldest) {
+				return size() > NearCache.this.maxSize;
+			}
+		};
+	}
+
+	private boolean isEnabled() {
+		return maxSize > 0 && ttl > 0;
+	}
+
+	/**
+	 * Get a cached entity
+	 *
+	 * @param id
+	 * @return V or null
+	 */
+	public V get(final String id) {
+		if (!isEnabled() || id == null) {
+			return null;
+		}
+		final long now = System.currentTimeMillis();
+		synchronized (entries) {
+			final Entry<V> entry = entries.get(id);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expiresAt <= now) {
+				entries.remove(id);
+				return null;
+			}
+			return entry.value;
+		}
+	}
+
+	/**
+	 * Get a cached entity, or load it and cache it
+	 *
+	 * @param id
+	 * @param loader - reads the entity from the database, returns null for unknown ids
+	 * @return V or null if the loader returns null
+	 */
+	public V get(final String id, final Function<String, V> loader) {
+		final V cached = get(id);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		final long stamp = evictions.get();
+		final V loaded = loader.apply(id);
+		if (loaded != null && isEnabled()) {
+			synchronized (entries) {
+				if (evictions.get() == stamp) {
+					entries.put(id, new Entry<>(loaded, System.currentTimeMillis() + ttl));
+				}
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Forget an entity, to be called whenever the entity is written
+	 *
+	 * @param id
+	 */
+	public void evict(final String id) {
+		synchronized (entries) {
+			evictions.incrementAndGet();
+			entries.remove(id);
+		}
+	}
+
+	@ManagedOperation(description = "Forget every cached entity")
+	public void clear() {
+		synchronized (entries) {
+			evictions.incrementAndGet();
+			entries.clear();
+		}
+	}
+
+	@ManagedAttribute(description = "Lookups answered from the cache")
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@ManagedAttribute(description = "Lookups that read the database")
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@ManagedAttribute(description = "Evictions of written entities and clears")
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@ManagedAttribute(description = "Number of cached entities")
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package io.authomator.api.domain.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.exception.PasswordHashingBusyException;
+import io.authomator.api.password.PasswordHashers;
+
+/**
+ * Dedicated pool for the password hashing work (PasswordHashers), off the request threads.
+ *
+ * The pool has one thread per core by default and a bounded queue. A request thread waits for its
+ * hash, but only up to threads + queue requests can be waiting at any time: when the queue is full
+ * the request is rejected at once with a PasswordHashingBusyException (503, Retry-After), so a burst
+ * of sign-ins can not take every request thread and cheap endpoints keep being served.
+ *
+ * Queue depth, rejections and hashing latency are exposed over JMX.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=PasswordHashingExecutor")
+public class PasswordHashingExecutor {
+
+	private static final Logger logger = Logger.getLogger(PasswordHashingExecutor.class);
+
+	/**
+	 * Queued hashes per pool thread when no queue size is configured
+	 */
+	private static final int QUEUE_PER_THREAD = 8;
+
+	private final ThreadPoolExecutor executor;
+
+	private final PasswordHashers passwordHashers;
+
+	/**
+	 * Seconds clients are asked to wait when the pool is saturated
+	 */
+	private final int retryAfter;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder hashingNanos = new LongAdder();
+	private final LongAdder waitingNanos = new LongAdder();
+	private final LongAccumulator maxHashingNanos = new LongAccumulator(Long::max, 0L);
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads - pool size, 0 for one thread per available processor
+	 * @param queue - queued hashes, 0 for 8 per pool thread
+	 * @param retryAfter - in seconds
+	 * @param passwordHashers
+	 */
+	@Autowired
+	public PasswordHashingExecutor(
+			@Value("${io.authomator.api.password.threads:0}") int threads,
+			@Value("${io.authomator.api.password.queue:0}") int queue,
+			@Value("${io.authomator.api.password.retryafter:1}") int retryAfter,
+			PasswordHashers passwordHashers) {
+
+		final int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		final AtomicInteger count = new AtomicInteger();
+		final ThreadFactory threadFactory = r -> {
+			Thread thread = new Thread(r, "password-hashing-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue > 0 ? queue : size * QUEUE_PER_THREAD), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+		this.retryAfter = retryAfter;
+		this.passwordHashers = passwordHashers;
+	}
+
+	/**
+	 * Hash a password with the current algorithm
+	 *
+	 * @param password - plain text
+	 * @return String {id}hash
+	 * @throws PasswordHashingBusyException when the pool is saturated
+	 */
+	public String hash(final String password) throws PasswordHashingBusyException {
+		return execute(() -> passwordHashers.hash(password));
+	}
+
+	/**
+	 * Check a password against a hash
+	 *
+	 * @param password - plain text
+	 * @param hash - {id}hash, or a bcrypt hash without prefix
+	 * @return boolean
+	 * @throws PasswordHashingBusyException when the pool is saturated
+	 */
+	public boolean matches(final String password, final String hash) throws PasswordHashingBusyException {
+		return execute(() -> passwordHashers.matches(password, hash));
+	}
+
+	/**
+	 * Determine if a hash was made with another algorithm or cost than the current ones, cheap
+	 * enough to run on the calling thread
+	 *
+	 * @param hash
+	 * @return boolean
+	 */
+	public boolean needsRehash(final String hash) {
+		return passwordHashers.needsRehash(hash);
+	}
+
+	/**
+	 * Run a task on the pool and wait for its result
+	 *
+	 * @param task
+	 * @return T
+	 * @throws PasswordHashingBusyException when the queue is full
+	 */
+	<T> T execute(final Callable<T> task) throws PasswordHashingBusyException {
+		final long submitted = System.nanoTime();
+		final Future<T> result;
+		try {
+			result = executor.submit(() -> {
+				final long started = System.nanoTime();
+				try {
+					return task.call();
+				} finally {
+					final long finished = System.nanoTime();
+					waitingNanos.add(started - submitted);
+					hashingNanos.add(finished - started);
+					maxHashingNanos.accumulate(finished - started);
+					completed.increment();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			logger.log(Level.WARN, String.format("Password hashing pool saturated, %d hashes queued", executor.getQueue().size()));
+			throw new PasswordHashingBusyException(retryAfter);
+		}
+
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.cancel(true);
+			throw new PasswordHashingBusyException(retryAfter);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+
+	@ManagedAttribute(description = "Hashes waiting for a pool thread")
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	@ManagedAttribute(description = "Pool threads hashing")
+	public int getActiveThreads() {
+		return executor.getActiveCount();
+	}
+
+	@ManagedAttribute(description = "Size of the pool")
+	public int getPoolSize() {
+		return executor.getCorePoolSize();
+	}
+
+	@ManagedAttribute(description = "Hashes and checks completed")
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	@ManagedAttribute(description = "Requests rejected because the queue was full")
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	@ManagedAttribute(description = "Mean time (ms) of a hash or check on a pool thread")
+	public double getMeanHashingMillis() {
+		final long count = completed.sum();
+		return count == 0 ? 0 : hashingNanos.sum() / (count * 1000000.0);
+	}
+
+	@ManagedAttribute(description = "Longest time (ms) of a hash or check on a pool thread")
+	public double getMaxHashingMillis() {
+		return maxHashingNanos.get() / 1000000.0;
+	}
+
+	@ManagedAttribute(description = "Mean time (ms) a hash or check waited in the queue")
+	public double getMeanQueueMillis() {
+		final long count = completed.sum();
+		return count == 0 ? 0 : waitingNanos.sum() / (count * 1000000.0);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
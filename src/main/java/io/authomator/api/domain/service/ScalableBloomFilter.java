@@ -0,0 +1,249 @@
+package io.authomator.api.domain.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings that grows with its content (scalable Bloom filter, Almeida et al.).
+ *
+ * The filter is a series of slices. Every slice is a plain Bloom filter, twice the capacity of the
+ * previous one and with half its false positive rate, so the overall false positive rate stays under
+ * twice the rate of the first slice however many strings are added. A string is in the filter when
+ * it is in any slice, new strings go to the last slice and a new slice is started when it is full.
+ *
+ * Lookups are lock free, adds are serialized. A string that was added is never reported absent.
+ */
+public final class ScalableBloomFilter {
+
+	private static final int MAGIC = 0x53424631;
+
+	private static final double LN2 = Math.log(2);
+
+	private static final class Slice {
+		private final int capacity;
+		private final int hashes;
+		private final long bitCount;
+		private final AtomicLongArray bits;
+		private int count;
+
+		private Slice(final int capacity, final double fpp) {
+			this.capacity = capacity;
+			long bitCount = (long) Math.ceil(-capacity * Math.log(fpp) / (LN2 * LN2));
+			this.bitCount = Math.max(64, (bitCount + 63) / 64 * 64);
+			this.hashes = Math.max(1, (int) Math.round((double) this.bitCount / capacity * LN2));
+			this.bits = new AtomicLongArray((int) (this.bitCount / 64));
+		}
+
+		private Slice(final int capacity, final int hashes, final int count, final long[] words) {
+			this.capacity = capacity;
+			this.hashes = hashes;
+			this.count = count;
+			this.bitCount = words.length * 64L;
+			this.bits = new AtomicLongArray(words);
+		}
+
+		private boolean mightContain(final long hash) {
+			final int h1 = (int) hash;
+			final int h2 = (int) (hash >>> 32);
+			for (int i = 1; i <= hashes; i++) {
+				final long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+				if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void add(final long hash) {
+			final int h1 = (int) hash;
+			final int h2 = (int) (hash >>> 32);
+			for (int i = 1; i <= hashes; i++) {
+				final long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+				final int index = (int) (bit >>> 6);
+				final long mask = 1L << bit;
+				long word;
+				while (((word = bits.get(index)) & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+					// Retry, another bit of the word was set concurrently
+				}
+			}
+			count++;
+		}
+	}
+
+	private final int initialCapacity;
+
+	private final double fpp;
+
+	/**
+	 * Replaced, never modified, under the lock of this filter
+	 */
+	private volatile Slice[] slices;
+
+	/**
+	 * Constructor
+	 *
+	 * @param initialCapacity - strings of the first slice
+	 * @param fpp - false positive rate of the whole filter, eg: 0.01
+	 */
+	public ScalableBloomFilter(final int initialCapacity, final double fpp) {
+		if (initialCapacity < 1 || fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("The capacity of a Bloom filter must be positive and its false positive rate between 0 and 1");
+		}
+		this.initialCapacity = initialCapacity;
+		this.fpp = fpp;
+		this.slices = new Slice[] { new Slice(initialCapacity, fpp / 2) };
+	}
+
+	/**
+	 * Determine if a string might have been added
+	 *
+	 * @param value
+	 * @return boolean, false when the string was certainly never added
+	 */
+	public boolean mightContain(final String value) {
+		final long hash = hash(value);
+		for (Slice slice : slices) {
+			if (slice.mightContain(hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add a string
+	 *
+	 * @param value
+	 * @return boolean, false when the string might have been added before
+	 */
+	public synchronized boolean add(final String value) {
+		final long hash = hash(value);
+		Slice[] current = slices;
+		for (Slice slice : current) {
+			if (slice.mightContain(hash)) {
+				return false;
+			}
+		}
+		Slice last = current[current.length - 1];
+		if (last.count >= last.capacity) {
+			final int capacity = last.capacity <= Integer.MAX_VALUE / 2 ? last.capacity * 2 : Integer.MAX_VALUE;
+			last = new Slice(capacity, fpp / Math.pow(2, current.length + 1));
+			current = Arrays.copyOf(current, current.length + 1);
+			current[current.length - 1] = last;
+			slices = current;
+		}
+		last.add(hash);
+		return true;
+	}
+
+	/**
+	 * Number of strings added, strings reported as present when added are not counted
+	 *
+	 * @return long
+	 */
+	public synchronized long size() {
+		long size = 0;
+		for (Slice slice : slices) {
+			size += slice.count;
+		}
+		return size;
+	}
+
+	/**
+	 * Number of slices
+	 *
+	 * @return int
+	 */
+	public int getSlices() {
+		return slices.length;
+	}
+
+	/**
+	 * Memory used by the bits, in bytes
+	 *
+	 * @return long
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for (Slice slice : slices) {
+			bytes += slice.bitCount / 8;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Write the filter
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public synchronized void writeTo(final DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(initialCapacity);
+		out.writeDouble(fpp);
+		out.writeInt(slices.length);
+		for (Slice slice : slices) {
+			out.writeInt(slice.capacity);
+			out.writeInt(slice.hashes);
+			out.writeInt(slice.count);
+			out.writeInt(slice.bits.length());
+			for (int i = 0; i < slice.bits.length(); i++) {
+				out.writeLong(slice.bits.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Read a filter written by writeTo
+	 *
+	 * @param in
+	 * @param initialCapacity - expected capacity of the first slice
+	 * @param fpp - expected false positive rate
+	 * @return ScalableBloomFilter or null when the filter was made with another capacity or rate
+	 * @throws IOException for a stream that does not hold a filter
+	 */
+	public static ScalableBloomFilter readFrom(final DataInputStream in, final int initialCapacity, final double fpp) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a Bloom filter");
+		}
+		if (in.readInt() != initialCapacity || in.readDouble() != fpp) {
+			return null;
+		}
+		final Slice[] slices = new Slice[in.readInt()];
+		for (int s = 0; s < slices.length; s++) {
+			final int capacity = in.readInt();
+			final int hashes = in.readInt();
+			final int count = in.readInt();
+			final long[] words = new long[in.readInt()];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = in.readLong();
+			}
+			slices[s] = new Slice(capacity, hashes, count, words);
+		}
+		final ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity, fpp);
+		filter.slices = slices;
+		return filter;
+	}
+
+	/**
+	 * 64 bit FNV-1a of the UTF-8 bytes with the murmur3 finalizer, the two halves seed the double
+	 * hashing of the bit positions
+	 */
+	static long hash(final String value) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,57 @@
+package io.authomator.api.domain.service;
+
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Near cache of the users read by refresh requests, with their (already resolved) contexts.
+ *
+ * A refresh token carrying the token version of the cached user is served without reading the user
+ * from MongoDB: nothing that would invalidate the token changed since the user was loaded.
+ * UserServiceImpl evicts a user on every write, on every node through the InvalidationBus. Changes
+ * the bus misses are picked up when the entry expires, or at once when a refresh token carries a
+ * newer token version than the cached user. Tokens with an older version are outdated whatever the
+ * database holds, and are answered from the cache as well.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=UserCache")
+public class UserCache extends NearCache<User> {
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize
+	 * @param ttl - in seconds
+	 */
+	@Autowired
+	public UserCache(
+			@Value("${io.authomator.api.cache.users.size:10000}") int maxSize,
+			@Value("${io.authomator.api.cache.users.ttl:60}") long ttl) {
+		super(maxSize, ttl);
+	}
+
+	/**
+	 * Get a cached user for a refresh token, or load it and cache it
+	 *
+	 * @param userId
+	 * @param tokenVersion - the ver claim of the refresh token
+	 * @param loader - reads the user from the database, returns null for unknown ids
+	 * @return User, with a newer token version when the token is outdated, or null
+	 */
+	public User get(final String userId, final long tokenVersion, final Function<String, User> loader) {
+		final User user = get(userId, loader);
+		// Token versions only grow: replayed old tokens must not bypass the cache
+		if (user == null || user.getTokenVersion() >= tokenVersion) {
+			return user;
+		}
+		// The token was issued after the cached user was read, by a change made on another node
+		evict(userId);
+		return get(userId, loader);
+	}
+}
@@ -4,6 +4,8 @@ import io.authomator.api.domain.entity.User;
 import io.authomator.api.exception.EmailConfirmationNotEnabledException;
 import io.authomator.api.exception.InvalidContextException;
 import io.authomator.api.exception.InvalidCredentialsException;
+import io.authomator.api.exception.InvalidTokenVersionException;
+import io.authomator.api.exception.PasswordHashingBusyException;
 import io.authomator.api.exception.RegistrationNotEnabledException;
 import io.authomator.api.exception.UserAlreadyExistsException;
 import io.authomator.api.exception.UserEmailConfirmedAlreadyException;
@@ -11,18 +13,18 @@ import io.authomator.api.exception.UserNotFoundException;
 
 public interface UserService {
 
-	User register(String email, String password) throws UserAlreadyExistsException, RegistrationNotEnabledException;
+	User register(String email, String password) throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException;
 
-	User signIn(String email, String password) throws UserNotFoundException, InvalidCredentialsException;
+	User signIn(String email, String password) throws UserNotFoundException, InvalidCredentialsException, PasswordHashingBusyException;
 
-	User refresh(String userId, String contextId) throws UserNotFoundException, InvalidContextException;
+	User refresh(String userId, String contextId, long tokenVersion) throws UserNotFoundException, InvalidContextException, InvalidTokenVersionException;
 
 	User forgotPassword(String email) throws UserNotFoundException;
 
-	User resetPassword(String id, String newPassword) throws UserNotFoundException;
+	User resetPassword(String id, String newPassword) throws UserNotFoundException, PasswordHashingBusyException;
 	
 	User updatePassword(String userId, String contextId, String currentPassword, String newPassword)
-			throws UserNotFoundException, InvalidCredentialsException, InvalidContextException;
+			throws UserNotFoundException, InvalidCredentialsException, InvalidContextException, PasswordHashingBusyException;
 	
 	User getUserForEmailConfirmation(String id)
 			throws EmailConfirmationNotEnabledException, UserNotFoundException, UserEmailConfirmedAlreadyException;
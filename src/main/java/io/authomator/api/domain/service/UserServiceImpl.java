@@ -1,16 +1,29 @@
 package io.authomator.api.domain.service;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import io.authomator.api.domain.entity.Context;
 import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.UserLoader;
 import io.authomator.api.domain.repository.UserRepository;
 import io.authomator.api.exception.EmailConfirmationNotEnabledException;
 import io.authomator.api.exception.InvalidContextException;
 import io.authomator.api.exception.InvalidCredentialsException;
+import io.authomator.api.exception.InvalidTokenVersionException;
+import io.authomator.api.exception.PasswordHashingBusyException;
 import io.authomator.api.exception.RegistrationNotEnabledException;
 import io.authomator.api.exception.UserAlreadyExistsException;
 import io.authomator.api.exception.UserEmailConfirmedAlreadyException;
@@ -19,6 +32,14 @@ import io.authomator.api.exception.UserNotFoundException;
 @Service
 public class UserServiceImpl implements UserService {
 	
+	private static final Logger logger = Logger.getLogger(UserServiceImpl.class);
+	
+	/**
+	 * Targeted updates guarded by the token version are retried this many times with a reloaded
+	 * user when the user changed in between
+	 */
+	private static final int UPDATE_ATTEMPTS = 3;
+	
 	@Value("${io.authomator.api.registration.allow:false}")
 	private boolean registrationEnabled = false;
 	
@@ -32,9 +53,27 @@ public class UserServiceImpl implements UserService {
 	@Autowired
 	private UserRepository userRepository;
 	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private UserLoader userLoader;
+	
 	@Autowired
 	private ContextService contextService;
 	
+	@Autowired
+	private UserCache userCache;
+	
+	@Autowired
+	private InvalidationBus invalidationBus;
+	
+	@Autowired
+	private PasswordHashingExecutor passwordHashingExecutor;
+	
+	@Autowired
+	private KnownEmailFilter knownEmailFilter;
+	
 	
 	/**
 	 * Register/Signup a new user, returning the user entity
@@ -43,31 +82,48 @@ public class UserServiceImpl implements UserService {
 	 * @param password
 	 * @return
 	 * @throws RegistrationNotEnabledException 
+	 * @throws PasswordHashingBusyException 
 	 * @throws RuntimeException
 	 */
 	@Override
-	public User register(final String email, final String password) throws UserAlreadyExistsException, RegistrationNotEnabledException {
+	public User register(final String email, final String password) throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException {
 		
 		if (!registrationEnabled) {
 			throw new RegistrationNotEnabledException();
 		}
 		
-		User existing = userRepository.findByEmail(email);
-		if (existing != null) {
+		// Only known addresses are looked up first, to spare the password hash of a duplicate; the
+		// unique email index rejects the duplicates the filter does not know yet
+		if (knownEmailFilter.mightExist(email) && userRepository.findByEmail(email) != null) {
 			throw new UserAlreadyExistsException(email);
 		}
 		
 		User user = new User();
+		user.setId(new ObjectId().toHexString());
 		user.setEmail(email);
-		user.setPassword(password);		
+		user.setPasswordHash(passwordHashingExecutor.hash(password));
 		for(String role: defaultRoles) {
 			user.setRoles(role);
 		}
-		userRepository.save(user);
 		
-		Context context = contextService.createContext(user, user.getEmail());
+		// The ids are assigned up front: the user is inserted with the reference to its context,
+		// then the context and the membership of the user
+		Context context = contextService.newContext(user, user.getEmail());
 		user.getContexts().add(context);
-		userRepository.save(user);
+		user.setDefaultContextId(context.getId());
+		try {
+			userRepository.insert(user);
+		} catch (DuplicateKeyException e) {
+			throw new UserAlreadyExistsException(email);
+		}
+		try {
+			contextService.insertContext(context);
+		} catch (RuntimeException e) {
+			userRepository.delete(user.getId());
+			evict(user.getId());
+			throw e;
+		}
+		invalidationBus.registerEmail(user.getEmail());
 		
 		return user;
 	}
@@ -79,40 +135,80 @@ public class UserServiceImpl implements UserService {
 	 * @param email
 	 * @param password
 	 * @return
+	 * @throws PasswordHashingBusyException 
 	 */
 	@Override
-	public User signIn(final String email, final String password) throws UserNotFoundException, InvalidCredentialsException {
+	public User signIn(final String email, final String password) throws UserNotFoundException, InvalidCredentialsException, PasswordHashingBusyException {
+		if (!knownEmailFilter.mightExist(email)) {
+			throw new UserNotFoundException(email);
+		}
 		User user = userRepository.findByEmail(email);
 		if (user == null){
 			throw new UserNotFoundException(email);
 		}
 		
-		if ( ! BCrypt.checkpw(password, user.getPassword())){
+		if ( ! passwordHashingExecutor.matches(password, user.getPassword())){
 			throw new InvalidCredentialsException(email, password);
 		};
 		
+		if (passwordHashingExecutor.needsRehash(user.getPassword())) {
+			upgradePasswordHash(user, password);
+		}
+		
 		return user;
 	}
 	
+	/**
+	 * Rehash the password of a user that signed in with an outdated algorithm or cost, the sign in
+	 * succeeds whether the upgrade does or not
+	 * 
+	 * @param user
+	 * @param password - the checked plain text password
+	 */
+	private void upgradePasswordHash(final User user, final String password) {
+		try {
+			final String outdated = user.getPassword();
+			user.upgradePasswordHash(passwordHashingExecutor.hash(password));
+			// Only replaces the hash the password was checked against
+			mongoTemplate.updateFirst(
+					query(where("_id").is(user.getId()).and("password").is(outdated)),
+					Update.update("password", user.getPassword()),
+					User.class);
+			evict(user.getId());
+		} catch (PasswordHashingBusyException e) {
+			logger.log(Level.INFO, String.format("Password hash upgrade of %s postponed, hashing pool saturated", user.getId()));
+		}
+	}
+	
 	
 	//TODO: implement testing
 	/**
 	 * Refresh a user, returning the user if it can be refreshed
 	 * 
+	 * The user is read through the UserCache and the UserLoader, refreshes of an unchanged user do not read the
+	 * database.
+	 * 
 	 * @param id
+	 * @param contextId
+	 * @param tokenVersion - the ver claim of the refresh token
 	 * @return User
 	 * @throws UserNotFoundException
 	 * @throws InvalidContextException 
+	 * @throws InvalidTokenVersionException - the user changed since the refresh token was issued
 	 */
 	@Override
-	public User refresh(final String userId, final String contextId) throws UserNotFoundException, InvalidContextException{
+	public User refresh(final String userId, final String contextId, final long tokenVersion) throws UserNotFoundException, InvalidContextException, InvalidTokenVersionException{
 		
-		User user = userRepository.findOne(userId);
+		User user = userCache.get(userId, tokenVersion, userLoader::load);
 		
 		if (user == null){
 			throw new UserNotFoundException("mongoId: " + userId);
 		}
 		
+		if (user.getTokenVersion() != tokenVersion) {
+			throw new InvalidTokenVersionException(userId, tokenVersion);
+		}
+		
 		if (!contextService.hasContext(user, contextId)) {
 			throw new InvalidContextException("User does not have access to the specified context or context not found");
 		}
@@ -130,6 +226,9 @@ public class UserServiceImpl implements UserService {
 	 */
 	@Override
 	public User forgotPassword(final String email)  throws UserNotFoundException{
+		if (!knownEmailFilter.mightExist(email)) {
+			throw new UserNotFoundException(email);
+		}
 		User user = userRepository.findByEmail(email);
 		
 		if (user == null){
@@ -143,22 +242,34 @@ public class UserServiceImpl implements UserService {
 	/**
 	 * Reset the user password if this user can reset his password due to forgotten
 	 * 
+	 * Only the password and the token version are written, guarded by the token version of the
+	 * user as read.
+	 * 
 	 * @param id
 	 * @param newPassword
 	 * @return User
 	 * @throws UserNotFoundException
+	 * @throws PasswordHashingBusyException 
 	 */
 	@Override
-	public User resetPassword(final String id, final String newPassword) throws UserNotFoundException{
+	public User resetPassword(final String id, final String newPassword) throws UserNotFoundException, PasswordHashingBusyException{
 		
-		User user = userRepository.findOne(id);
+		User user = userCache.get(id, userLoader::load);
+		String passwordHash = null;
 		
-		if (user == null){
-			throw new UserNotFoundException("mongoId: " + id);
+		for (int attempt = 1; ; attempt++) {
+			if (user == null){
+				throw new UserNotFoundException("mongoId: " + id);
+			}
+			if (passwordHash == null) {
+				passwordHash = passwordHashingExecutor.hash(newPassword);
+			}
+			if (setPasswordHash(user, passwordHash)) {
+				evict(id);
+				return user.withPasswordHash(passwordHash);
+			}
+			user = reload(id, attempt);
 		}
-		
-		user.setPassword(newPassword);
-		return userRepository.save(user);
 	}
 	
 	
@@ -166,6 +277,9 @@ public class UserServiceImpl implements UserService {
 	/**
 	 * Update password for a user by checking his current password before changing it
 	 * 
+	 * Only the password and the token version are written, guarded by the token version of the
+	 * user the current password was checked against.
+	 * 
 	 * @param userId
 	 * @param contextId
 	 * @param currentPassword
@@ -174,27 +288,37 @@ public class UserServiceImpl implements UserService {
 	 * @throws UserNotFoundException
 	 * @throws InvalidCredentialsException
 	 * @throws InvalidContextException 
+	 * @throws PasswordHashingBusyException 
 	 */
 	@Override
-	public User updatePassword(final String userId, final String contextId, final String currentPassword, final String newPassword) throws UserNotFoundException, InvalidCredentialsException, InvalidContextException{
+	public User updatePassword(final String userId, final String contextId, final String currentPassword, final String newPassword) throws UserNotFoundException, InvalidCredentialsException, InvalidContextException, PasswordHashingBusyException{
 		
-		User user = userRepository.findOne(userId);
+		User user = userCache.get(userId, userLoader::load);
+		String passwordHash = null;
 		
-		if (user == null) {
-			throw new UserNotFoundException("mongoId: " + userId);
-		}
-		
-		if (!contextService.hasContext(user, contextId)){
-			throw new InvalidContextException("User does not have access to the specified context or context not found");
+		for (int attempt = 1; ; attempt++) {
+			if (user == null) {
+				throw new UserNotFoundException("mongoId: " + userId);
+			}
+			
+			if (!contextService.hasContext(user, contextId)){
+				throw new InvalidContextException("User does not have access to the specified context or context not found");
+			}
+			
+			// Checked again when the user changed in between, the password may have changed
+			if ( ! passwordHashingExecutor.matches(currentPassword, user.getPassword())){
+				throw new InvalidCredentialsException(user.getEmail(), currentPassword);
+			};
+			
+			if (passwordHash == null) {
+				passwordHash = passwordHashingExecutor.hash(newPassword);
+			}
+			if (setPasswordHash(user, passwordHash)) {
+				evict(userId);
+				return user.withPasswordHash(passwordHash);
+			}
+			user = reload(userId, attempt);
 		}
-		
-		if ( ! BCrypt.checkpw(currentPassword, user.getPassword())){
-			throw new InvalidCredentialsException(user.getEmail(), currentPassword);
-		};
-		
-		user.setPassword(newPassword);
-		return userRepository.save(user);
-		
 	}
 	
 	
@@ -215,7 +339,7 @@ public class UserServiceImpl implements UserService {
 			throw new EmailConfirmationNotEnabledException(id);
 		}
 		
-		User user = userRepository.findOne(id);
+		User user = userCache.get(id, userLoader::load);
 		
 		if (user == null) {
 			throw new UserNotFoundException("mongoId: " + id);
@@ -240,11 +364,64 @@ public class UserServiceImpl implements UserService {
 	@Override
 	public User confirmEmail(final String id) throws UserNotFoundException, EmailConfirmationNotEnabledException, UserEmailConfirmedAlreadyException {
 		
-		User user = getUserForEmailConfirmation(id);		
-		user.setEmailVerified(true);
-		return userRepository.save(user);
+		User user = getUserForEmailConfirmation(id);
+		
+		// Guarded, the email is confirmed once even when confirmed concurrently or on a stale copy
+		if (mongoTemplate.updateFirst(
+				query(where("_id").is(id).and("emailVerified").is(false)),
+				Update.update("emailVerified", true),
+				User.class).getN() == 0) {
+			evict(id);
+			throw new UserEmailConfirmedAlreadyException(user.getEmail());
+		}
+		evict(id);
+		return user.withEmailVerified();
 	}
 	
+	/**
+	 * Write a new password hash and bump the token version, if the user did not change since it
+	 * was read
+	 * 
+	 * Users stored without a token version read as version 0, so version 0 also matches a missing
+	 * field.
+	 * 
+	 * @param user - as read
+	 * @param passwordHash
+	 * @return boolean false if the token version changed
+	 */
+	private boolean setPasswordHash(final User user, final String passwordHash) {
+		final Criteria version = user.getTokenVersion() == 0
+				? new Criteria().orOperator(where("tokenVersion").is(0L), where("tokenVersion").exists(false))
+				: where("tokenVersion").is(user.getTokenVersion());
+		return mongoTemplate.updateFirst(
+				query(where("_id").is(user.getId())).addCriteria(version),
+				new Update().set("password", passwordHash).inc("tokenVersion", 1),
+				User.class).getN() > 0;
+	}
+	
+	/**
+	 * Read a user that changed during a targeted update from the database
+	 * 
+	 * @param userId
+	 * @param attempt - of the update
+	 * @return User or null
+	 * @throws OptimisticLockingFailureException after UPDATE_ATTEMPTS attempts
+	 */
+	private User reload(final String userId, final int attempt) {
+		if (attempt >= UPDATE_ATTEMPTS) {
+			throw new OptimisticLockingFailureException(String.format("User %s kept changing during %d updates", userId, attempt));
+		}
+		userCache.evict(userId);
+		return userCache.get(userId, userLoader::load);
+	}
 	
+	/**
+	 * Forget a written user in the caches of every node
+	 * 
+	 * @param userId
+	 */
+	private void evict(final String userId) {
+		invalidationBus.invalidateUser(userId);
+	}
 	
 }
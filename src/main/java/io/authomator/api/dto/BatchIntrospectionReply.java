@@ -0,0 +1,26 @@
+package io.authomator.api.dto;
+
+import java.util.List;
+
+/**
+ * Introspection replies, in the order of the requested tokens
+ */
+public class BatchIntrospectionReply {
+
+	private List<IntrospectionReply> results;
+
+	public BatchIntrospectionReply() {
+	}
+
+	public BatchIntrospectionReply(List<IntrospectionReply> results) {
+		this.results = results;
+	}
+
+	public List<IntrospectionReply> getResults() {
+		return results;
+	}
+
+	public void setResults(List<IntrospectionReply> results) {
+		this.results = results;
+	}
+}
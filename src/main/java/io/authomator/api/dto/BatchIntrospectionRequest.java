@@ -0,0 +1,23 @@
+package io.authomator.api.dto;
+
+import java.util.List;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+public class BatchIntrospectionRequest {
+
+	/**
+	 * Access tokens to introspect
+	 */
+	@NotEmpty
+	private List<String> tokens;
+
+	public List<String> getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(List<String> tokens) {
+		this.tokens = tokens;
+	}
+
+}
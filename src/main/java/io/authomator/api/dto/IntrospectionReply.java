@@ -0,0 +1,122 @@
+package io.authomator.api.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Token introspection reply (RFC 7662), inactive tokens only carry active=false
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionReply {
+
+	private boolean active;
+
+	private String iss;
+
+	private List<String> aud;
+
+	private Long exp;
+
+	private Long iat;
+
+	private Long nbf;
+
+	private String jti;
+
+	private String sub;
+
+	private List<String> roles;
+
+	private String ctx;
+
+	private Boolean ev;
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public String getIss() {
+		return iss;
+	}
+
+	public void setIss(String iss) {
+		this.iss = iss;
+	}
+
+	public List<String> getAud() {
+		return aud;
+	}
+
+	public void setAud(List<String> aud) {
+		this.aud = aud;
+	}
+
+	public Long getExp() {
+		return exp;
+	}
+
+	public void setExp(Long exp) {
+		this.exp = exp;
+	}
+
+	public Long getIat() {
+		return iat;
+	}
+
+	public void setIat(Long iat) {
+		this.iat = iat;
+	}
+
+	public Long getNbf() {
+		return nbf;
+	}
+
+	public void setNbf(Long nbf) {
+		this.nbf = nbf;
+	}
+
+	public String getJti() {
+		return jti;
+	}
+
+	public void setJti(String jti) {
+		this.jti = jti;
+	}
+
+	public String getSub() {
+		return sub;
+	}
+
+	public void setSub(String sub) {
+		this.sub = sub;
+	}
+
+	public List<String> getRoles() {
+		return roles;
+	}
+
+	public void setRoles(List<String> roles) {
+		this.roles = roles;
+	}
+
+	public String getCtx() {
+		return ctx;
+	}
+
+	public void setCtx(String ctx) {
+		this.ctx = ctx;
+	}
+
+	public Boolean getEv() {
+		return ev;
+	}
+
+	public void setEv(Boolean ev) {
+		this.ev = ev;
+	}
+}
@@ -0,0 +1,21 @@
+package io.authomator.api.dto;
+
+import org.hibernate.validator.constraints.NotBlank;
+
+public class IntrospectionRequest {
+
+	/**
+	 * Access token to introspect
+	 */
+	@NotBlank
+	private String token;
+
+	public String getToken() {
+		return token;
+	}
+
+	public void setToken(String token) {
+		this.token = token;
+	}
+
+}
@@ -1,5 +1,7 @@
 package io.authomator.api.dto;
 
+import java.util.Set;
+
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotBlank;
@@ -14,6 +16,11 @@ public class LoginRequest {
 	@NotBlank
 	private String password;
 
+	/**
+	 * The tokens to issue, all of them when not set
+	 */
+	private Set<TokenType> tokens;
+
 	public String getEmail() {
 		return email;
 	}
@@ -29,5 +36,13 @@ public class LoginRequest {
 	public void setPassword(String password) {
 		this.password = password;
 	}
-	
+
+	public Set<TokenType> getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(Set<TokenType> tokens) {
+		this.tokens = tokens;
+	}
+
 }
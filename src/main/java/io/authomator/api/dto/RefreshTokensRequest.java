@@ -1,5 +1,7 @@
 package io.authomator.api.dto;
 
+import java.util.Set;
+
 import org.hibernate.validator.constraints.NotBlank;
 
 public class RefreshTokensRequest {
@@ -7,6 +9,11 @@ public class RefreshTokensRequest {
 	@NotBlank
 	private String refreshToken;
 
+	/**
+	 * The tokens to issue, all of them when not set
+	 */
+	private Set<TokenType> tokens;
+
 	public String getRefreshToken() {
 		return refreshToken;
 	}
@@ -15,4 +22,12 @@ public class RefreshTokensRequest {
 		this.refreshToken = refreshToken;
 	}
 
+	public Set<TokenType> getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(Set<TokenType> tokens) {
+		this.tokens = tokens;
+	}
+
 }
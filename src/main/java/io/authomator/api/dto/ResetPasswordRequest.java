@@ -1,5 +1,7 @@
 package io.authomator.api.dto;
 
+import java.util.Set;
+
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotBlank;
 
@@ -11,6 +13,11 @@ public class ResetPasswordRequest {
 	@NotBlank
 	@Length(min=6, max=32)
 	private String newPassword;
+
+	/**
+	 * The tokens to issue, all of them when not set
+	 */
+	private Set<TokenType> tokens;
 		
 
 	public String getResetToken() {
@@ -28,5 +35,13 @@ public class ResetPasswordRequest {
 	public void setNewPassword(String newPassword) {
 		this.newPassword = newPassword;
 	}
-	
+
+	public Set<TokenType> getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(Set<TokenType> tokens) {
+		this.tokens = tokens;
+	}
+
 }
@@ -0,0 +1,21 @@
+package io.authomator.api.dto;
+
+import org.hibernate.validator.constraints.NotBlank;
+
+public class RevokeTokenRequest {
+
+	/**
+	 * Access or refresh token to revoke
+	 */
+	@NotBlank
+	private String token;
+
+	public String getToken() {
+		return token;
+	}
+
+	public void setToken(String token) {
+		this.token = token;
+	}
+
+}
@@ -1,5 +1,11 @@
 package io.authomator.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The tokens that were issued, tokens the client did not ask for are left out
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TokenReply {
 
 	/**
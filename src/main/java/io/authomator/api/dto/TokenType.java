@@ -0,0 +1,18 @@
+package io.authomator.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The tokens a client can ask for, named after the TokenReply fields
+ */
+public enum TokenType {
+
+	@JsonProperty("accessToken")
+	ACCESS,
+
+	@JsonProperty("identityToken")
+	IDENTITY,
+
+	@JsonProperty("refreshToken")
+	REFRESH;
+}
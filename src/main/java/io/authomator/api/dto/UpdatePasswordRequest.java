@@ -1,5 +1,7 @@
 package io.authomator.api.dto;
 
+import java.util.Set;
+
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotBlank;
 
@@ -16,6 +18,11 @@ public class UpdatePasswordRequest {
 	@Length(min=6, max=32)
 	private String newPassword;
 
+	/**
+	 * The tokens to issue, all of them when not set
+	 */
+	private Set<TokenType> tokens;
+
 	public String getAccessToken() {
 		return accessToken;
 	}
@@ -39,5 +46,13 @@ public class UpdatePasswordRequest {
 	public void setNewPassword(String newPassword) {
 		this.newPassword = newPassword;
 	}
-	
+
+	public Set<TokenType> getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(Set<TokenType> tokens) {
+		this.tokens = tokens;
+	}
+
 }
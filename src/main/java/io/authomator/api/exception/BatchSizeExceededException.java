@@ -0,0 +1,17 @@
+package io.authomator.api.exception;
+
+public class BatchSizeExceededException extends Exception {
+
+	private static final long serialVersionUID = -7140829935627366351L;
+
+	private final int max;
+
+	public BatchSizeExceededException(final int size, final int max) {
+		super(String.format("Batch of %d exceeds the maximum of %d", size, max));
+		this.max = max;
+	}
+
+	public int getMax() {
+		return max;
+	}
+}
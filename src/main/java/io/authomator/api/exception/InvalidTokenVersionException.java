@@ -0,0 +1,10 @@
+package io.authomator.api.exception;
+
+public class InvalidTokenVersionException extends Exception {
+
+	private static final long serialVersionUID = -2604183290527519254L;
+
+	public InvalidTokenVersionException(final String userId, final long tokenVersion) {
+		super(String.format("Token version %d of user %s is no longer valid", tokenVersion, userId));
+	}
+}
@@ -0,0 +1,20 @@
+package io.authomator.api.exception;
+
+public class PasswordHashingBusyException extends Exception {
+
+	private static final long serialVersionUID = 5315297466406178802L;
+
+	/**
+	 * Seconds the client should wait before retrying
+	 */
+	private final int retryAfter;
+
+	public PasswordHashingBusyException(final int retryAfter) {
+		super("Too many password checks in progress, retry later");
+		this.retryAfter = retryAfter;
+	}
+
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+}
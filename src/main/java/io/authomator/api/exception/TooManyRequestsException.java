@@ -0,0 +1,20 @@
+package io.authomator.api.exception;
+
+public class TooManyRequestsException extends Exception {
+
+	private static final long serialVersionUID = -2270931563823316027L;
+
+	/**
+	 * Seconds the client should wait before retrying
+	 */
+	private final long retryAfter;
+
+	public TooManyRequestsException(final String message, final long retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+}
@@ -0,0 +1,264 @@
+package io.authomator.api.jwt;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+/**
+ * Allocation-light serializer for the claims of the tokens minted by JwtService.
+ *
+ * Everything that is fixed per deployment (issuer, audience list, internal audience suffixes)
+ * is rendered once into JSON fragments. Per token only the timestamps and the user specific
+ * values are appended into a reusable per-thread buffer.
+ *
+ * The output is byte-identical to JwtClaims.toJson() for the claims JwtService used to build:
+ * same claim order, same escaping rules (jose4j's json-simple) and same number rendering.
+ */
+final class ClaimsSerializer {
+
+	/**
+	 * Initial capacity of the per thread buffer, grows when identity tokens carry many contexts
+	 */
+	private static final int BUFFER_CAPACITY = 512;
+
+	/**
+	 * {"iss":"..","aud":[..],"exp":
+	 */
+	private final String userClaimsPrefix;
+
+	/**
+	 * {"iss":"..","aud":"..#refresh","exp":
+	 */
+	private final String refreshClaimsPrefix;
+	private final String forgotClaimsPrefix;
+	private final String confirmEmailClaimsPrefix;
+
+	/**
+	 * Source of the jti claim values
+	 */
+	private final Supplier<String> jwtIds;
+
+	private final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(() -> new StringBuilder(BUFFER_CAPACITY));
+
+	/**
+	 * Constructor
+	 *
+	 * @param issuer
+	 * @param audience
+	 * @param refreshSuffix
+	 * @param forgotSuffix
+	 * @param confirmEmailSuffix
+	 * @param jwtIds - generates a unique jti per token
+	 */
+	ClaimsSerializer(final String issuer, final List<String> audience, final String refreshSuffix,
+			final String forgotSuffix, final String confirmEmailSuffix, final Supplier<String> jwtIds) {
+
+		this.jwtIds = jwtIds;
+
+		StringBuilder sb = new StringBuilder("{\"iss\":");
+		string(sb, issuer);
+		sb.append(",\"aud\":");
+		if (audience.size() == 1) {
+			string(sb, audience.get(0));
+		}
+		else {
+			stringArray(sb, audience);
+		}
+		sb.append(",\"exp\":");
+		userClaimsPrefix = sb.toString();
+
+		refreshClaimsPrefix = internalPrefix(issuer, refreshSuffix);
+		forgotClaimsPrefix = internalPrefix(issuer, forgotSuffix);
+		confirmEmailClaimsPrefix = internalPrefix(issuer, confirmEmailSuffix);
+	}
+
+	private static String internalPrefix(final String issuer, final String suffix) {
+		StringBuilder sb = new StringBuilder("{\"iss\":");
+		string(sb, issuer);
+		sb.append(",\"aud\":");
+		string(sb, issuer + suffix);
+		sb.append(",\"exp\":");
+		return sb.toString();
+	}
+
+	/*
+	 * Token claims
+	 * ------------------------------------------------------------------------------------------
+	 */
+
+	/**
+	 * Claims of the access token: registered claims + jti/sub/roles/ctx/ev
+	 *
+	 * @param user
+	 * @param context
+	 * @param now - issued at, in seconds since the epoch
+	 * @param ttl - in minutes
+	 * @return String JSON
+	 */
+	String accessClaims(final User user, final Context context, final long now, final int ttl) {
+		StringBuilder sb = userClaims(user, context, now, ttl);
+		sb.append(",\"ev\":");
+		value(sb, user.getEmailVerified());
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Claims of the identity token: registered claims + jti/sub/roles/ctx/email/emailVerified/contexts
+	 *
+	 * @param user
+	 * @param context
+	 * @param now - issued at, in seconds since the epoch
+	 * @param ttl - in minutes
+	 * @return String JSON
+	 */
+	String identityClaims(final User user, final Context context, final long now, final int ttl) {
+		StringBuilder sb = userClaims(user, context, now, ttl);
+		sb.append(",\"email\":");
+		string(sb, user.getEmail());
+		sb.append(",\"emailVerified\":");
+		value(sb, user.getEmailVerified());
+		sb.append(",\"contexts\":[");
+		boolean first = true;
+		for (Context c : user.getContexts()) {
+			if (!first) {
+				sb.append(',');
+			}
+			string(sb, c.getId());
+			first = false;
+		}
+		return sb.append("]}").toString();
+	}
+
+	/**
+	 * Claims of the refresh token: registered claims + jti/sub/ctx/ver
+	 *
+	 * @param user
+	 * @param context
+	 * @param now - issued at, in seconds since the epoch
+	 * @param ttl - in minutes
+	 * @return String JSON
+	 */
+	String refreshClaims(final User user, final Context context, final long now, final int ttl) {
+		StringBuilder sb = internalClaims(refreshClaimsPrefix, user, now, ttl);
+		sb.append(",\"ctx\":");
+		string(sb, context.getId());
+		sb.append(",\"ver\":").append(user.getTokenVersion());
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Claims of the forgot password token: registered claims + jti/sub
+	 */
+	String forgotClaims(final User user, final long now, final int ttl) {
+		return internalClaims(forgotClaimsPrefix, user, now, ttl).append('}').toString();
+	}
+
+	/**
+	 * Claims of the confirm email token: registered claims + jti/sub
+	 */
+	String confirmEmailClaims(final User user, final long now, final int ttl) {
+		return internalClaims(confirmEmailClaimsPrefix, user, now, ttl).append('}').toString();
+	}
+
+	private StringBuilder userClaims(final User user, final Context context, final long now, final int ttl) {
+		StringBuilder sb = times(userClaimsPrefix, now, ttl);
+		sb.append(",\"sub\":");
+		string(sb, user.getId());
+		sb.append(",\"roles\":");
+		stringArray(sb, user.getRoles());
+		sb.append(",\"ctx\":");
+		string(sb, context.getId());
+		return sb;
+	}
+
+	private StringBuilder internalClaims(final String prefix, final User user, final long now, final int ttl) {
+		StringBuilder sb = times(prefix, now, ttl);
+		sb.append(",\"sub\":");
+		string(sb, user.getId());
+		return sb;
+	}
+
+	private StringBuilder times(final String prefix, final long now, final int ttl) {
+		StringBuilder sb = buffer.get();
+		sb.setLength(0);
+		sb.append(prefix)
+			.append(now + ttl * 60L)
+			.append(",\"iat\":").append(now)
+			.append(",\"nbf\":").append(now - 60)
+			.append(",\"jti\":");
+		string(sb, jwtIds.get());
+		return sb;
+	}
+
+	/*
+	 * JSON rendering, mirrors org.jose4j.json.internal.json_simple
+	 * ------------------------------------------------------------------------------------------
+	 */
+
+	private static void value(final StringBuilder sb, final Boolean value) {
+		sb.append(value == null ? "null" : value.toString());
+	}
+
+	private static void stringArray(final StringBuilder sb, final Collection<String> values) {
+		sb.append('[');
+		boolean first = true;
+		for (String value : values) {
+			if (!first) {
+				sb.append(',');
+			}
+			string(sb, value);
+			first = false;
+		}
+		sb.append(']');
+	}
+
+	private static void string(final StringBuilder sb, final String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\b':
+				sb.append("\\b");
+				break;
+			case '\f':
+				sb.append("\\f");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (ch <= '\u001F' || (ch >= '\u007F' && ch <= '\u009F') || (ch >= '\u2000' && ch <= '\u20FF')) {
+					String hex = Integer.toHexString(ch).toUpperCase();
+					sb.append("\\u");
+					for (int k = hex.length(); k < 4; k++) {
+						sb.append('0');
+					}
+					sb.append(hex);
+				}
+				else {
+					sb.append(ch);
+				}
+			}
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,147 @@
+package io.authomator.api.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.dto.IntrospectionReply;
+
+/**
+ * Bounded LRU cache of the introspection replies of recently validated access tokens.
+ *
+ * Entries are keyed by the SHA-256 of the full compact token, so a token only hits the entry of the
+ * exact same token, and are dropped when the token expires. A hit costs a digest and a map lookup
+ * instead of a signature check and a JSON parse. Only active tokens are cached, revocation is checked
+ * by the caller on every hit.
+ *
+ * The hit/miss counters are exposed over JMX.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=IntrospectionCache")
+public class IntrospectionCache {
+
+	private static final class Entry {
+		private final IntrospectionReply reply;
+		private final long expiresAt;
+
+		private Entry(final IntrospectionReply reply, final long expiresAt) {
+			this.reply = reply;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Access ordered, guarded by itself
+	 */
+	private final LinkedHashMap<ByteBuffer, Entry> entries;
+
+	/**
+	 * Maximum number of cached tokens, 0 disables the cache
+	 */
+	private final int maxSize;
+
+	private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize
+	 */
+	@Autowired
+	public IntrospectionCache(@Value("${io.authomator.api.introspect.cache.size:10000}") final int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, Entry> eldest) {
+				return size() > IntrospectionCache.this.maxSize;
+			}
+		};
+	}
+
+	private ByteBuffer key(final String token) {
+		return ByteBuffer.wrap(digest.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Get the cached reply of an unexpired token
+	 *
+	 * @param token - compact serialization
+	 * @param now - in milliseconds since the epoch
+	 * @return IntrospectionReply or null
+	 */
+	public IntrospectionReply get(final String token, final long now) {
+		if (maxSize <= 0) {
+			misses.increment();
+			return null;
+		}
+		final ByteBuffer key = key(token);
+		final Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && entry.expiresAt <= now) {
+				entries.remove(key);
+			}
+		}
+		if (entry == null || entry.expiresAt <= now) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.reply;
+	}
+
+	/**
+	 * Cache the reply of a validated token until the token expires
+	 *
+	 * @param token - compact serialization
+	 * @param reply - active reply, with the exp claim
+	 */
+	public void put(final String token, final IntrospectionReply reply) {
+		if (maxSize <= 0 || reply.getExp() == null) {
+			return;
+		}
+		final ByteBuffer key = key(token);
+		final Entry entry = new Entry(reply, reply.getExp() * 1000L);
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	@ManagedAttribute(description = "Introspections answered from the cache")
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@ManagedAttribute(description = "Introspections that required validating the token")
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@ManagedAttribute(description = "Number of cached tokens")
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+}
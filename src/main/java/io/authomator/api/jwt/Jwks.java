@@ -0,0 +1,87 @@
+package io.authomator.api.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jose4j.base64url.Base64Url;
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.jwk.Use;
+import org.jose4j.lang.JoseException;
+
+/**
+ * The JSON Web Key Set with the public keys resource servers use to verify access and identity tokens.
+ *
+ * The document only changes when the signing keys change, so it is rendered once together with
+ * a strong ETag (base64url(sha-256(json))) and served as is.
+ *
+ * Deployments that sign with a shared secret publish an empty key set.
+ */
+public final class Jwks {
+
+	private final String json;
+
+	private final String etag;
+
+	private Jwks(final String json) {
+		this.json = json;
+		this.etag = "\"" + sha256(json) + "\"";
+	}
+
+	/**
+	 * Empty key set, used when tokens are signed with a HMAC secret
+	 *
+	 * @return Jwks
+	 */
+	static Jwks empty() {
+		return new Jwks(new JsonWebKeySet().toJson());
+	}
+
+	/**
+	 * Key set publishing the verification keys
+	 *
+	 * @param alg - JWS algorithm header value
+	 * @param publicKeys - public key by key id, the key id matches the kid header of the tokens
+	 * @return Jwks
+	 * @throws JoseException
+	 */
+	static Jwks of(final String alg, final Map<String, PublicKey> publicKeys) throws JoseException {
+		List<JsonWebKey> keys = new ArrayList<>();
+		for (Map.Entry<String, PublicKey> entry : publicKeys.entrySet()) {
+			PublicJsonWebKey jwk = PublicJsonWebKey.Factory.newPublicJwk(entry.getValue());
+			jwk.setKeyId(entry.getKey());
+			jwk.setAlgorithm(alg);
+			jwk.setUse(Use.SIGNATURE);
+			keys.add(jwk);
+		}
+		return new Jwks(new JsonWebKeySet(keys).toJson(JsonWebKey.OutputControlLevel.PUBLIC_ONLY));
+	}
+
+	private static String sha256(final String json) {
+		try {
+			return Base64Url.encode(MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return String JSON serialization of the key set
+	 */
+	public String getJson() {
+		return json;
+	}
+
+	/**
+	 * @return String quoted entity tag of the JSON serialization
+	 */
+	public String getEtag() {
+		return etag;
+	}
+}
@@ -0,0 +1,265 @@
+package io.authomator.api.jwt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.jose4j.base64url.Base64Url;
+import org.jose4j.json.JsonUtil;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.EcdsaUsingShaAlgorithm;
+import org.jose4j.lang.JoseException;
+
+/**
+ * Signing engine that produces compact JWS serializations for one algorithm, key id and key.
+ *
+ * Everything that is constant per key is derived once: the key material, and the base64url
+ * encoded protected header. The javax.crypto.Mac (HMAC) or java.security.Signature (RSA/ECDSA)
+ * instances are initialized once per thread and reused, so signing a token only costs the
+ * payload encoding and the signature itself.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class JwsSigner {
+
+	private static final Map<String, String> HMAC_ALGORITHMS = new HashMap<>();
+	private static final Map<String, String> RSA_ALGORITHMS = new HashMap<>();
+	private static final Map<String, String> ECDSA_ALGORITHMS = new HashMap<>();
+	private static final Map<String, Integer> ECDSA_SIGNATURE_LENGTHS = new HashMap<>();
+
+	static {
+		HMAC_ALGORITHMS.put(AlgorithmIdentifiers.HMAC_SHA256, "HmacSHA256");
+		HMAC_ALGORITHMS.put(AlgorithmIdentifiers.HMAC_SHA384, "HmacSHA384");
+		HMAC_ALGORITHMS.put(AlgorithmIdentifiers.HMAC_SHA512, "HmacSHA512");
+
+		RSA_ALGORITHMS.put(AlgorithmIdentifiers.RSA_USING_SHA256, "SHA256withRSA");
+		RSA_ALGORITHMS.put(AlgorithmIdentifiers.RSA_USING_SHA384, "SHA384withRSA");
+		RSA_ALGORITHMS.put(AlgorithmIdentifiers.RSA_USING_SHA512, "SHA512withRSA");
+
+		ECDSA_ALGORITHMS.put(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256, "SHA256withECDSA");
+		ECDSA_ALGORITHMS.put(AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384, "SHA384withECDSA");
+		ECDSA_ALGORITHMS.put(AlgorithmIdentifiers.ECDSA_USING_P521_CURVE_AND_SHA512, "SHA512withECDSA");
+		ECDSA_SIGNATURE_LENGTHS.put(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256, 64);
+		ECDSA_SIGNATURE_LENGTHS.put(AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384, 96);
+		ECDSA_SIGNATURE_LENGTHS.put(AlgorithmIdentifiers.ECDSA_USING_P521_CURVE_AND_SHA512, 132);
+	}
+
+	/**
+	 * JWS algorithm header value (eg: HS512)
+	 */
+	private final String alg;
+
+	/**
+	 * Key id header value
+	 */
+	private final String kid;
+
+	/**
+	 * base64url(protected header) + "."
+	 */
+	private final String encodedHeaderPrefix;
+
+	/**
+	 * Per thread MAC, initialized with the key (HMAC algorithms)
+	 */
+	private final ThreadLocal<Mac> mac;
+
+	/**
+	 * Per thread Signature, initialized with the private key (RSA/ECDSA algorithms)
+	 */
+	private final ThreadLocal<Signature> signature;
+
+	/**
+	 * Length of the R|S concatenated ECDSA signature, 0 for other algorithms
+	 */
+	private final int ecdsaSignatureLength;
+
+	/**
+	 * Create a HMAC signer
+	 *
+	 * @param alg - JWS algorithm header value, see AlgorithmIdentifiers
+	 * @param kid - key id header value
+	 * @param secret - raw HMAC key material
+	 * @throws JoseException if the algorithm is not a HMAC algorithm or the key is too short for it
+	 */
+	public JwsSigner(final String alg, final String kid, final byte[] secret) throws JoseException {
+
+		final String javaAlg = HMAC_ALGORITHMS.get(alg);
+		if (javaAlg == null) {
+			throw new JoseException("Unsupported JWS algorithm for signing with a secret: " + alg);
+		}
+
+		final Key key = new SecretKeySpec(secret, javaAlg);
+		final Mac prototype = createMac(javaAlg, key);
+		if (secret.length < prototype.getMacLength()) {
+			throw new JoseException(String.format("A key of at least %d bits is required for %s", prototype.getMacLength() * 8, alg));
+		}
+
+		this.alg = alg;
+		this.kid = kid;
+		this.encodedHeaderPrefix = encodeHeader(alg, kid) + ".";
+		this.signature = null;
+		this.ecdsaSignatureLength = 0;
+		this.mac = ThreadLocal.withInitial(() -> {
+			try {
+				return (Mac) prototype.clone();
+			} catch (CloneNotSupportedException e) {
+				return createMacUnchecked(javaAlg, key);
+			}
+		});
+	}
+
+	/**
+	 * Create a RSA or ECDSA signer
+	 *
+	 * @param alg - JWS algorithm header value, see AlgorithmIdentifiers
+	 * @param kid - key id header value
+	 * @param privateKey - RSA or EC private key matching the algorithm
+	 * @throws JoseException if the algorithm is not supported or does not match the key
+	 */
+	public JwsSigner(final String alg, final String kid, final PrivateKey privateKey) throws JoseException {
+
+		final String javaAlg;
+		if (RSA_ALGORITHMS.containsKey(alg) && privateKey instanceof RSAPrivateKey) {
+			javaAlg = RSA_ALGORITHMS.get(alg);
+			if (((RSAPrivateKey) privateKey).getModulus().bitLength() < 2048) {
+				throw new JoseException("A RSA key of at least 2048 bits is required for " + alg);
+			}
+			this.ecdsaSignatureLength = 0;
+		}
+		else if (ECDSA_ALGORITHMS.containsKey(alg) && privateKey instanceof ECPrivateKey) {
+			javaAlg = ECDSA_ALGORITHMS.get(alg);
+			this.ecdsaSignatureLength = ECDSA_SIGNATURE_LENGTHS.get(alg);
+		}
+		else {
+			throw new JoseException(String.format("Unsupported JWS algorithm %s for a %s key", alg, privateKey.getAlgorithm()));
+		}
+
+		// Fail fast on a key that the provider does not accept
+		createSignature(javaAlg, privateKey);
+
+		this.alg = alg;
+		this.kid = kid;
+		this.encodedHeaderPrefix = encodeHeader(alg, kid) + ".";
+		this.mac = null;
+		this.signature = ThreadLocal.withInitial(() -> createSignatureUnchecked(javaAlg, privateKey));
+	}
+
+	/**
+	 * Determine if the algorithm is a HMAC algorithm this signer supports
+	 *
+	 * @param alg - JWS algorithm header value
+	 * @return boolean
+	 */
+	public static boolean isHmac(final String alg) {
+		return HMAC_ALGORITHMS.containsKey(alg);
+	}
+
+	/**
+	 * Determine if the algorithm is a RSA or ECDSA algorithm this signer supports
+	 *
+	 * @param alg - JWS algorithm header value
+	 * @return boolean
+	 */
+	public static boolean isAsymmetric(final String alg) {
+		return RSA_ALGORITHMS.containsKey(alg) || ECDSA_ALGORITHMS.containsKey(alg);
+	}
+
+	/**
+	 * Encode the protected header the same way jose4j does: {"alg":..,"kid":..}
+	 *
+	 * @param alg
+	 * @param kid
+	 * @return base64url encoded header
+	 */
+	private static String encodeHeader(final String alg, final String kid) {
+		Map<String, Object> header = new LinkedHashMap<>();
+		header.put("alg", alg);
+		if (kid != null) {
+			header.put("kid", kid);
+		}
+		return Base64Url.encodeUtf8ByteRepresentation(JsonUtil.toJson(header));
+	}
+
+	private static Mac createMac(final String javaAlg, final Key key) throws JoseException {
+		try {
+			Mac mac = Mac.getInstance(javaAlg);
+			mac.init(key);
+			return mac;
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new JoseException("Unable to initialize " + javaAlg, e);
+		}
+	}
+
+	private static Mac createMacUnchecked(final String javaAlg, final Key key) {
+		try {
+			return createMac(javaAlg, key);
+		} catch (JoseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Signature createSignature(final String javaAlg, final PrivateKey key) throws JoseException {
+		try {
+			Signature signature = Signature.getInstance(javaAlg);
+			signature.initSign(key);
+			return signature;
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new JoseException("Unable to initialize " + javaAlg, e);
+		}
+	}
+
+	private static Signature createSignatureUnchecked(final String javaAlg, final PrivateKey key) {
+		try {
+			return createSignature(javaAlg, key);
+		} catch (JoseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sign the payload, returning the JWS compact serialization
+	 *
+	 * @param payload - JSON claims
+	 * @return String header.payload.signature
+	 * @throws JoseException
+	 */
+	public String sign(final String payload) throws JoseException {
+		final String signingInput = encodedHeaderPrefix + Base64Url.encodeUtf8ByteRepresentation(payload);
+		final byte[] input = signingInput.getBytes(StandardCharsets.US_ASCII);
+		return signingInput + "." + Base64Url.encode(mac != null ? mac.get().doFinal(input) : signAsymmetric(input));
+	}
+
+	private byte[] signAsymmetric(final byte[] input) throws JoseException {
+		try {
+			final Signature sig = signature.get();
+			sig.update(input);
+			final byte[] der = sig.sign();
+			return ecdsaSignatureLength == 0 ? der : EcdsaUsingShaAlgorithm.convertDerToConcatenated(der, ecdsaSignatureLength);
+		} catch (GeneralSecurityException | IOException e) {
+			signature.remove();
+			throw new JoseException("Unable to sign the token with " + alg, e);
+		}
+	}
+
+	public String getAlg() {
+		return alg;
+	}
+
+	public String getKid() {
+		return kid;
+	}
+}
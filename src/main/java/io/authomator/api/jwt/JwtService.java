@@ -1,14 +1,25 @@
 package io.authomator.api.jwt;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
+import org.jose4j.base64url.Base64Url;
 import org.jose4j.jwa.AlgorithmConstraints;
+import org.jose4j.jwa.AlgorithmConstraints.ConstraintType;
 import org.jose4j.jws.AlgorithmIdentifiers;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.ReservedClaimNames;
 import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.jose4j.jwt.consumer.JwtConsumer;
 import org.jose4j.jwt.consumer.JwtConsumerBuilder;
@@ -17,10 +28,12 @@ import org.jose4j.lang.JoseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import io.authomator.api.domain.entity.Context;
 import io.authomator.api.domain.entity.User;
 import io.authomator.api.dto.TokenReply;
+import io.authomator.api.dto.TokenType;
 
 @Component
 public class JwtService {
@@ -29,6 +42,11 @@ public class JwtService {
 	private static final String FORGOT_TOKEN_SUFFIX = "#forgot";
 	private static final String CONFIRM_EMAIL_TOKEN_SUFFIX = "#confirm-email";
 
+	/**
+	 * Key id of the configured signing key / secret
+	 */
+	private static final String KEY_ID = "0";
+
 	/**
 	 * Secret used to sign the jwt
 	 */
@@ -69,15 +87,71 @@ public class JwtService {
 	 */
 	private int ttlForgot = 60;
 
+	/**
+	 * Keys from the configuration (secret, secretinternal / signingkey, verificationkey), kid "0"
+	 */
+	private final KeyRing configuredKeyRing;
+	private final KeyRing configuredInternalKeyRing;
+
+	/**
+	 * Current keys for the user (access/identity) and internal tokens, replaced on key rotation
+	 */
+	private volatile KeyRing keyRing;
+	private volatile KeyRing internalKeyRing;
+
+	/**
+	 * Pool to mint the tokens of createTokensForUser concurrently, null to mint them on the calling thread
+	 */
+	private TokenMintingExecutor mintingExecutor;
+
+	/**
+	 * Ids (jti) of revoked tokens, checked by every validate method
+	 */
+	private final RevocationList revocationList = new RevocationList();
+
+	/**
+	 * Renders the token claims from precomputed fragments
+	 */
+	private final ClaimsSerializer claimsSerializer;
+
+	/**
+	 * Prebuilt (immutable, thread-safe) consumers, one per token kind
+	 */
+	private final JwtConsumer accessTokenConsumer;
+	private final JwtConsumer refreshTokenConsumer;
+	private final JwtConsumer forgotTokenConsumer;
+	private final JwtConsumer confirmEmailTokenConsumer;
+
+	/**
+	 * Constructor for HMAC signed tokens
+	 * 
+	 * @param secret
+	 * @param alg
+	 * @param ttl
+	 * @param issuer
+	 * @param audience
+	 * @param refreshSecret
+	 */
+	public JwtService(String secret, String internalSecret, String alg, int ttl, int ttlRefresh, int ttlForgot,
+			String issuer, String[] audience) {
+		this(secret, internalSecret, alg, ttl, ttlRefresh, ttlForgot, issuer, audience, null, null);
+	}
+
 	/**
 	 * Constructor gets autowired with properties
 	 * 
+	 * When alg is a RSA or ECDSA algorithm, access and identity tokens are signed with the private key
+	 * at signingKey and verified with the public key at verificationKey. Internal tokens keep being
+	 * signed with the internal secret (HMAC_SHA512 unless alg is a HMAC algorithm).
+	 * 
 	 * @param secret
 	 * @param alg
 	 * @param ttl
 	 * @param issuer
 	 * @param audience
 	 * @param refreshSecret
+	 * @param signingKey - location of the PKCS#8 PEM private key
+	 * @param verificationKey - location of the X.509 PEM public key
 	 */
 	@Autowired
 	public JwtService(
@@ -88,7 +162,9 @@ public class JwtService {
 			@Value("${io.authomator.api.ttlrefresh:120}") int ttlRefresh,
 			@Value("${io.authomator.api.ttlforgot:60}") int ttlForgot,
 			@Value("${io.authomator.api.issuer}") String issuer,
-			@Value("${io.authomator.api.audience}") String[] audience ) {
+			@Value("${io.authomator.api.audience}") String[] audience,
+			@Value("${io.authomator.api.signingkey:}") String signingKey,
+			@Value("${io.authomator.api.verificationkey:}") String verificationKey) {
 
 		this.secret = secret;
 		this.ttl = ttl;
@@ -98,6 +174,67 @@ public class JwtService {
 		this.audience = Arrays.asList(audience);
 		this.internalSecret = internalSecret;
 		setAlgFromAlgorithmIdentifiers(alg);
+
+		this.claimsSerializer = new ClaimsSerializer(issuer, this.audience, 
+				REFRESH_TOKEN_SUFFIX, FORGOT_TOKEN_SUFFIX, CONFIRM_EMAIL_TOKEN_SUFFIX, JwtService::newJwtId);
+
+		final byte[] internalSecretBytes = internalSecret.getBytes();
+		final String internalAlg = JwsSigner.isHmac(this.alg) ? this.alg : AlgorithmIdentifiers.HMAC_SHA512;
+
+		try {
+			if (JwsSigner.isAsymmetric(this.alg)) {
+				if (!StringUtils.hasText(signingKey) || !StringUtils.hasText(verificationKey)) {
+					throw new RuntimeException(String.format(
+							"io.authomator.api.signingkey and io.authomator.api.verificationkey are required for %s", this.alg));
+				}
+				final String keyAlgorithm = PemKeys.keyAlgorithm(this.alg);
+				final PrivateKey privateKey = PemKeys.readPrivateKey(signingKey, keyAlgorithm);
+				final PublicKey publicKey = PemKeys.readPublicKey(verificationKey, keyAlgorithm);
+				this.configuredKeyRing = KeyRing.of(new JwsSigner(this.alg, KEY_ID, privateKey), publicKey, publicKey);
+			}
+			else {
+				final byte[] secretBytes = secret.getBytes();
+				this.configuredKeyRing = KeyRing.of(new JwsSigner(this.alg, KEY_ID, secretBytes), new HmacKey(secretBytes), null);
+			}
+			this.configuredInternalKeyRing = KeyRing.of(new JwsSigner(internalAlg, KEY_ID, internalSecretBytes), new HmacKey(internalSecretBytes), null);
+		} catch (JoseException e) {
+			throw new RuntimeException("Invalid JWT algorithm or secret specified: " + e.getMessage(), e);
+		} catch (IOException | GeneralSecurityException e) {
+			throw new RuntimeException("Unable to read the JWT signing/verification keys: " + e.getMessage(), e);
+		}
+		this.keyRing = configuredKeyRing;
+		this.internalKeyRing = configuredInternalKeyRing;
+
+		this.accessTokenConsumer = new JwtConsumerBuilder()
+			.setRequireExpirationTime()
+			.setAllowedClockSkewInSeconds(30)
+			.setRequireSubject()
+			.setExpectedIssuer(issuer)
+			.setSkipDefaultAudienceValidation()
+			.setJwsAlgorithmConstraints(new AlgorithmConstraints(ConstraintType.WHITELIST, this.alg))
+			.setVerificationKeyResolver(KeyRing.resolver(() -> keyRing, KEY_ID))
+			.build();
+		this.refreshTokenConsumer = createInternalConsumer(REFRESH_TOKEN_SUFFIX);
+		this.forgotTokenConsumer = createInternalConsumer(FORGOT_TOKEN_SUFFIX);
+		this.confirmEmailTokenConsumer = createInternalConsumer(CONFIRM_EMAIL_TOKEN_SUFFIX);
+	}
+
+	/**
+	 * Build the consumer that validates internal tokens for the given audience suffix
+	 * 
+	 * @param suffix - [REFRESH_TOKEN_SUFFIX|FORGOT_TOKEN_SUFFIX|CONFIRM_EMAIL_TOKEN_SUFFIX]
+	 * @return JwtConsumer
+	 */
+	private JwtConsumer createInternalConsumer(final String suffix) {
+		return new JwtConsumerBuilder()
+			.setRequireExpirationTime()
+			.setAllowedClockSkewInSeconds(30)
+			.setRequireSubject()
+			.setExpectedIssuer(issuer)
+			.setExpectedAudience(issuer + suffix)
+			.setJwsAlgorithmConstraints(new AlgorithmConstraints(ConstraintType.WHITELIST, getInternalAlg()))
+			.setVerificationKeyResolver(KeyRing.resolver(() -> internalKeyRing, KEY_ID))
+			.build();
 	}
 
 	// TODO: create issue at https://bitbucket.org/b_c/jose4j/
@@ -126,69 +263,129 @@ public class JwtService {
 	}
 
 	/**
-	 * Create a user claims suitable for access token (only sub/roles/context)
+	 * The algorithm user tokens are signed with
 	 * 
-	 * @param user
-	 * @return JwtClaims
+	 * @return String JWS algorithm header value
 	 */
-	private JwtClaims getUserClaims(User user, Context context) {
-		JwtClaims claims = new JwtClaims();
-		claims.setIssuer(issuer);
-		claims.setAudience(audience);
-		claims.setExpirationTimeMinutesInTheFuture(ttl);
-		claims.setIssuedAtToNow();
-		claims.setNotBeforeMinutesInThePast(1);
-		claims.setSubject(user.getId());
-		claims.setStringListClaim("roles", user.getRoles());
-		claims.setStringClaim("ctx", context.getId());
-		return claims;
+	public String getAlg() {
+		return configuredKeyRing.getSigner().getAlg();
 	}
 
 	/**
-	 * Create a claims suitable for the refresh/forgot password token
+	 * The algorithm internal tokens are signed with
 	 * 
-	 * @param user
-	 * @return JwtClaims
+	 * @return String JWS algorithm header value
+	 */
+	public String getInternalAlg() {
+		return configuredInternalKeyRing.getSigner().getAlg();
+	}
+
+	/**
+	 * The longest time a token minted now stays valid, a key must be kept this long after its last use
+	 * 
+	 * @return int minutes
+	 */
+	public int getMaxTtl() {
+		return Math.max(ttl, Math.max(ttlRefresh, ttlForgot));
+	}
+
+	/**
+	 * Install rotated keys: tokens are signed with the active key of the rings and verified with
+	 * their keys or the configured keys (kid "0")
+	 * 
+	 * @param userKeys - keys for access and identity tokens
+	 * @param internalKeys - keys for refresh, forgot password and confirm email tokens
+	 * @throws JoseException
 	 */
-	private JwtClaims getInternalClaims(User user, String suffix, int ttl) {
-		JwtClaims claims = new JwtClaims();
-		claims.setIssuer(issuer);
-		claims.setAudience(issuer + suffix);
-		claims.setExpirationTimeMinutesInTheFuture(ttl);
-		claims.setIssuedAtToNow();
-		claims.setNotBeforeMinutesInThePast(1);
-		claims.setSubject(user.getId());
+	public void installKeyRings(KeyRing userKeys, KeyRing internalKeys) throws JoseException {
+		this.keyRing = configuredKeyRing.merge(userKeys);
+		this.internalKeyRing = configuredInternalKeyRing.merge(internalKeys);
+	}
+
+	/**
+	 * Mint the tokens of createTokensForUser concurrently on the given pool
+	 * (io.authomator.api.tokens.parallel)
+	 * 
+	 * @param mintingExecutor - or null to mint on the calling thread
+	 */
+	@Autowired(required = false)
+	public void setMintingExecutor(TokenMintingExecutor mintingExecutor) {
+		this.mintingExecutor = mintingExecutor;
+	}
+
+	/**
+	 * Generate a token id (jti): 128 random bits, base64url encoded
+	 * 
+	 * The id only has to be unique, it does not protect anything, so a ThreadLocalRandom is used
+	 * instead of a (contended) SecureRandom.
+	 * 
+	 * @return String
+	 */
+	static String newJwtId() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final byte[] id = new byte[16];
+		final long high = random.nextLong();
+		final long low = random.nextLong();
+		for (int i = 0; i < 8; i++) {
+			id[i] = (byte) (high >>> (56 - i * 8));
+			id[i + 8] = (byte) (low >>> (56 - i * 8));
+		}
+		return Base64Url.encode(id);
+	}
+
+	/**
+	 * The ids of the revoked tokens, tokens with an id in this list no longer validate
+	 * 
+	 * @return RevocationList
+	 */
+	public RevocationList getRevocationList() {
+		return revocationList;
+	}
+
+	/**
+	 * Reject the token when its jti was revoked, an in-memory lookup only
+	 * 
+	 * @param claims
+	 * @return JwtClaims the same claims
+	 * @throws InvalidJwtException
+	 */
+	private JwtClaims checkNotRevoked(JwtClaims claims) throws InvalidJwtException {
+		final Object jti = claims.getClaimValue(ReservedClaimNames.JWT_ID);
+		if (jti instanceof String && revocationList.isRevoked((String) jti)) {
+			throw new InvalidJwtException("Token has been revoked: " + jti);
+		}
 		return claims;
 	}
 
+	/**
+	 * Current time as used for the iat claim
+	 * 
+	 * @return long seconds since the epoch
+	 */
+	private long now() {
+		return NumericDate.now().getValue();
+	}
+
 	/**
 	 * Sign the user claims
 	 * 
-	 * @param claims
-	 * @return JsonWebSignature
-	 */
-	private JsonWebSignature signUserClaims(JwtClaims claims) {
-		JsonWebSignature jws = new JsonWebSignature();
-		jws.setPayload(claims.toJson());
-		jws.setKey(new HmacKey(secret.getBytes()));
-		jws.setAlgorithmHeaderValue(this.alg);
-		jws.setKeyIdHeaderValue("0");
-		return jws;
+	 * @param claims - JSON
+	 * @return String compact serialization
+	 * @throws JoseException
+	 */
+	private String signUserClaims(String claims) throws JoseException {
+		return keyRing.getSigner().sign(claims);
 	}
 
 	/**
 	 * Sign the internal claims
 	 * 
-	 * @param claims
-	 * @return JsonWebSignature
-	 */
-	private JsonWebSignature signInternalClaims(JwtClaims claims) {
-		JsonWebSignature jws = new JsonWebSignature();
-		jws.setPayload(claims.toJson());
-		jws.setKey(new HmacKey(internalSecret.getBytes()));
-		jws.setAlgorithmHeaderValue(this.alg);
-		jws.setKeyIdHeaderValue("0");
-		return jws;
+	 * @param claims - JSON
+	 * @return String compact serialization
+	 * @throws JoseException
+	 */
+	private String signInternalClaims(String claims) throws JoseException {
+		return internalKeyRing.getSigner().sign(claims);
 	}
 
 	/**
@@ -200,12 +397,11 @@ public class JwtService {
 	 * - roles: List<String> roles
 	 * 
 	 * @param user
-	 * @return JsonWebSignature
+	 * @return String compact serialization
+	 * @throws JoseException
 	 */
-	public JsonWebSignature getAccessToken(User user, Context context) {
-		JwtClaims claims = getUserClaims(user, context);
-		claims.setClaim("ev", user.getEmailVerified());
-		return signUserClaims(claims);
+	public String getAccessToken(User user, Context context) throws JoseException {
+		return signUserClaims(claimsSerializer.accessClaims(user, context, now(), ttl));
 	}
 
 	/**
@@ -218,14 +414,11 @@ public class JwtService {
 	 * - email: String email
 	 * 
 	 * @param user
-	 * @return JsonWebSignature
-	 */
-	public JsonWebSignature getIdentityToken(User user, Context context) {
-		JwtClaims claims = getUserClaims(user, context);
-		claims.setClaim("email", user.getEmail());
-		claims.setClaim("emailVerified", user.getEmailVerified());
-		claims.setClaim("contexts", user.getContexts().stream().map( c -> c.getId()).collect(Collectors.toList())); //TODO: should use mapper
-		return signUserClaims(claims);
+	 * @return String compact serialization
+	 * @throws JoseException
+	 */
+	public String getIdentityToken(User user, Context context) throws JoseException {
+		return signUserClaims(claimsSerializer.identityClaims(user, context, now(), ttl));
 	}
 
 	/**
@@ -236,69 +429,139 @@ public class JwtService {
 	 * - sub: String userId
 	 * 
 	 * @param user
-	 * @return JsonWebSignature
+	 * @return String compact serialization
+	 * @throws JoseException
 	 */
-	public JsonWebSignature getRefreshToken(User user, Context context) {
-		JwtClaims claims = getInternalClaims(user, REFRESH_TOKEN_SUFFIX, ttlRefresh);
-		claims.setStringClaim("ctx", context.getId());
-		return signInternalClaims(claims);
+	public String getRefreshToken(User user, Context context) throws JoseException {
+		return signInternalClaims(claimsSerializer.refreshClaims(user, context, now(), ttlRefresh));
 	}
 
 	/**
 	 * Create the password forgotten token for the specified user
 	 * 
 	 * @param user
-	 * @return
+	 * @return String compact serialization
+	 * @throws JoseException
 	 */
-	public JsonWebSignature getForgotPasswordToken(User user) {
-		return signInternalClaims(getInternalClaims(user, FORGOT_TOKEN_SUFFIX, ttlForgot));
+	public String getForgotPasswordToken(User user) throws JoseException {
+		return signInternalClaims(claimsSerializer.forgotClaims(user, now(), ttlForgot));
 	}
 	
 	/**
 	 * Create the email confirmation token for the specified user
 	 * 
 	 * @param user
-	 * @return
+	 * @return String compact serialization
+	 * @throws JoseException
 	 */
-	public JsonWebSignature getConfirmEmailToken(User user) {
-		return signInternalClaims(getInternalClaims(user, CONFIRM_EMAIL_TOKEN_SUFFIX, ttlRefresh));
+	public String getConfirmEmailToken(User user) throws JoseException {
+		return signInternalClaims(claimsSerializer.confirmEmailClaims(user, now(), ttlRefresh));
 	}
 	
 	
 	/**
 	 * Create the tokens for a user
+	 * 
 	 * @param user
 	 * @return
 	 * @throws JoseException
 	 */
 	public TokenReply createTokensForUser(User user, Context context) throws JoseException{		
-		TokenReply reply = new TokenReply();		
-		reply.setAccessToken(getAccessToken(user, context).getCompactSerialization());
-		reply.setIdentityToken(getIdentityToken(user, context).getCompactSerialization());
-		reply.setRefreshToken(getRefreshToken(user, context).getCompactSerialization());
+		return createTokensForUser(user, context, null);
+	}
+	
+	/**
+	 * Create the requested tokens for a user, tokens that were not requested are not signed
+	 * and left out of the reply
+	 * 
+	 * When a minting pool is set and more than one token is requested, the identity and refresh
+	 * token are signed on the pool while the first token is signed on the calling thread.
+	 * 
+	 * @param user
+	 * @param context
+	 * @param tokens - the tokens to create, null or empty for all of them
+	 * @return TokenReply
+	 * @throws JoseException
+	 */
+	public TokenReply createTokensForUser(User user, Context context, Set<TokenType> tokens) throws JoseException{
+		final boolean access = tokens == null || tokens.isEmpty() || tokens.contains(TokenType.ACCESS);
+		final boolean identity = tokens == null || tokens.isEmpty() || tokens.contains(TokenType.IDENTITY);
+		final boolean refresh = tokens == null || tokens.isEmpty() || tokens.contains(TokenType.REFRESH);
+		
+		TokenReply reply = new TokenReply();
+		if (mintingExecutor == null || (access ? 1 : 0) + (identity ? 1 : 0) + (refresh ? 1 : 0) < 2) {
+			if (access) {
+				reply.setAccessToken(getAccessToken(user, context));
+			}
+			if (identity) {
+				reply.setIdentityToken(getIdentityToken(user, context));
+			}
+			if (refresh) {
+				reply.setRefreshToken(getRefreshToken(user, context));
+			}
+			return reply;
+		}
+		
+		// At least two tokens, keep one for the calling thread
+		Future<String> identityToken = identity && access ? mintingExecutor.submit(() -> getIdentityToken(user, context)) : null;
+		Future<String> refreshToken = refresh ? mintingExecutor.submit(() -> getRefreshToken(user, context)) : null;
+		
+		if (access) {
+			reply.setAccessToken(getAccessToken(user, context));
+		}
+		else {
+			reply.setIdentityToken(getIdentityToken(user, context));
+		}
+		if (identityToken != null) {
+			reply.setIdentityToken(await(identityToken));
+		}
+		if (refreshToken != null) {
+			reply.setRefreshToken(await(refreshToken));
+		}
 		return reply;
 	}
 	
+	/**
+	 * Wait for a token minted on the pool
+	 * 
+	 * @param token
+	 * @return String compact serialization
+	 * @throws JoseException
+	 */
+	private String await(Future<String> token) throws JoseException {
+		try {
+			return token.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JoseException("Interrupted while minting tokens", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof JoseException) {
+				throw (JoseException) e.getCause();
+			}
+			throw new JoseException("Unable to mint token: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+	
+	
+	/**
+	 * The JSON Web Key Set with the keys to verify access and identity tokens
+	 * 
+	 * @return Jwks
+	 */
+	public Jwks getJwks() {
+		return keyRing.getJwks();
+	}
 	
 	/**
 	 * Validate and return the claims for the specified internal token
 	 * 
 	 * @param jwt
-	 * @param suffix - [REFRESH_TOKEN_SUFFIX|FORGOT_TOKEN_SUFFIX]
+	 * @param consumer - [refreshTokenConsumer|forgotTokenConsumer|confirmEmailTokenConsumer]
 	 * @return JwtClaims
 	 * @throws InvalidJwtException
 	 */
-	private JwtClaims validateInternalToken(String jwt, String suffix) throws InvalidJwtException{
-		JwtConsumer jwtConsumer = new JwtConsumerBuilder()
-            .setRequireExpirationTime()
-            .setAllowedClockSkewInSeconds(30)
-            .setRequireSubject()
-            .setExpectedIssuer(issuer)
-            .setExpectedAudience(issuer + suffix)
-            .setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE)
-            .setVerificationKey(new HmacKey(internalSecret.getBytes()))
-            .build();		
-		return jwtConsumer.process(jwt).getJwtClaims();		
+	private JwtClaims validateInternalToken(String jwt, JwtConsumer consumer) throws InvalidJwtException{
+		return checkNotRevoked(consumer.process(jwt).getJwtClaims());
 	}
 	
 	/**
@@ -309,7 +572,7 @@ public class JwtService {
 	 * @throws InvalidJwtException
 	 */
 	public JwtClaims validateRefreshToken(String jwt) throws InvalidJwtException {
-		JwtClaims claims = validateInternalToken(jwt, REFRESH_TOKEN_SUFFIX);
+		JwtClaims claims = validateInternalToken(jwt, refreshTokenConsumer);
 		if (!claims.hasClaim("ctx")){
 			throw new InvalidJwtException("Refresh token is missing ctx claim");
 		}
@@ -317,6 +580,21 @@ public class JwtService {
 	}
 	
 	
+	/**
+	 * The user token version a refresh token was issued for
+	 * 
+	 * @param refreshClaims - validated refresh token claims
+	 * @return long the ver claim, 0 for tokens issued before token versions existed
+	 * @throws MalformedClaimException
+	 */
+	public long getTokenVersion(JwtClaims refreshClaims) throws MalformedClaimException {
+		if (!refreshClaims.hasClaim("ver")) {
+			return 0;
+		}
+		return refreshClaims.getClaimValue("ver", Long.class);
+	}
+	
+	
 	/**
 	 * Validate a forgot password token (in compact serialization format)
 	 * 
@@ -325,7 +603,7 @@ public class JwtService {
 	 * @throws InvalidJwtException
 	 */
 	public JwtClaims validateForgotToken(String jwt) throws InvalidJwtException {
-		return validateInternalToken(jwt, FORGOT_TOKEN_SUFFIX);
+		return validateInternalToken(jwt, forgotTokenConsumer);
 	}
 	
 	
@@ -337,7 +615,7 @@ public class JwtService {
 	 * @throws InvalidJwtException
 	 */
 	public JwtClaims validateConfirmEmailToken(String jwt) throws InvalidJwtException {
-		return validateInternalToken(jwt, CONFIRM_EMAIL_TOKEN_SUFFIX);
+		return validateInternalToken(jwt, confirmEmailTokenConsumer);
 	}
 	
 	/**
@@ -349,21 +627,11 @@ public class JwtService {
 	 * @throws InvalidJwtException
 	 */
 	public JwtClaims validateAccessToken(String jwt) throws InvalidJwtException {
-		JwtConsumer jwtConsumer = new JwtConsumerBuilder()
-			.setRequireExpirationTime()
-            .setAllowedClockSkewInSeconds(30)
-            .setRequireSubject()
-            .setExpectedIssuer(issuer)
-            .setSkipDefaultAudienceValidation()
-            .setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE)
-            .setVerificationKey(new HmacKey(secret.getBytes()))
-            .build();
-		
-		JwtClaims claims = jwtConsumer.process(jwt).getJwtClaims();
+		JwtClaims claims = accessTokenConsumer.process(jwt).getJwtClaims();
 		if (!claims.hasClaim("ctx")){
 			throw new InvalidJwtException("Access token is missing ctx claim");
 		}
 		
-		return claims;
+		return checkNotRevoked(claims);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package io.authomator.api.jwt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts the rotated key material stored in the signingKeys collection.
+ *
+ * The material is encrypted with AES-256-GCM under a key derived (SHA-256) from
+ * io.authomator.api.keys.encryptionkey, the kid is authenticated along so a stored key can not be
+ * swapped for another one. Encrypted values are stored as "{aes-gcm}" + Base64(iv | ciphertext).
+ * Values without the prefix are plain Base64, as stored when no encryption key is configured.
+ */
+final class KeyEncryption {
+
+	static final String PREFIX = "{aes-gcm}";
+
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+	private static final int IV_LENGTH = 12;
+
+	private static final int TAG_LENGTH = 128;
+
+	/**
+	 * Null when no encryption key is configured
+	 */
+	private final SecretKeySpec key;
+
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Constructor
+	 *
+	 * @param encryptionKey - empty or null stores the key material unencrypted
+	 */
+	KeyEncryption(final String encryptionKey) {
+		if (encryptionKey == null || encryptionKey.isEmpty()) {
+			this.key = null;
+			return;
+		}
+		try {
+			this.key = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(encryptionKey.getBytes(StandardCharsets.UTF_8)), "AES");
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	boolean isEnabled() {
+		return key != null;
+	}
+
+	/**
+	 * Encode key material for storage
+	 *
+	 * @param material
+	 * @param kid - of the key
+	 * @return String encrypted, or plain Base64 when no encryption key is configured
+	 * @throws GeneralSecurityException
+	 */
+	String encrypt(final byte[] material, final String kid) throws GeneralSecurityException {
+		if (key == null) {
+			return Base64.getEncoder().encodeToString(material);
+		}
+		final byte[] iv = new byte[IV_LENGTH];
+		random.nextBytes(iv);
+		final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+		cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+		cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+		final byte[] encrypted = cipher.doFinal(material);
+		return PREFIX + Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_LENGTH + encrypted.length).put(iv).put(encrypted).array());
+	}
+
+	/**
+	 * Decode stored key material
+	 *
+	 * @param stored
+	 * @param kid - of the key
+	 * @return byte[]
+	 * @throws GeneralSecurityException when the material was encrypted with another key, or no key is configured
+	 */
+	byte[] decrypt(final String stored, final String kid) throws GeneralSecurityException {
+		if (!stored.startsWith(PREFIX)) {
+			return Base64.getDecoder().decode(stored);
+		}
+		if (key == null) {
+			throw new GeneralSecurityException(String.format("Signing key %s is encrypted and io.authomator.api.keys.encryptionkey is not set", kid));
+		}
+		final byte[] encrypted = Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+		if (encrypted.length <= IV_LENGTH) {
+			throw new GeneralSecurityException(String.format("Malformed encrypted signing key %s", kid));
+		}
+		final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+		cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, encrypted, 0, IV_LENGTH));
+		cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+		return cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH);
+	}
+}
@@ -0,0 +1,143 @@
+package io.authomator.api.jwt;
+
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwx.JsonWebStructure;
+import org.jose4j.keys.resolvers.VerificationKeyResolver;
+import org.jose4j.lang.JoseException;
+import org.jose4j.lang.UnresolvableKeyException;
+
+/**
+ * Immutable snapshot of the keys for one kind of token (user or internal): the signer of the
+ * active key and the verification key of every key that may still have valid tokens out there.
+ *
+ * Verification keys are looked up by the kid header of the token. Rotation builds a new ring
+ * and swaps it in, readers never see a partially updated ring.
+ */
+public final class KeyRing {
+
+	/**
+	 * Signer for the active key
+	 */
+	private final JwsSigner signer;
+
+	/**
+	 * Verification key by kid
+	 */
+	private final Map<String, Key> verificationKeys;
+
+	/**
+	 * Public keys by kid (RSA/ECDSA only), published in the JWKS
+	 */
+	private final Map<String, PublicKey> publicKeys;
+
+	private final Jwks jwks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param signer - signs with the active key
+	 * @param verificationKeys - verification key by kid, must contain the key of the signer
+	 * @param publicKeys - public keys by kid to publish, empty for HMAC keys
+	 * @throws JoseException
+	 */
+	KeyRing(final JwsSigner signer, final Map<String, Key> verificationKeys, final Map<String, PublicKey> publicKeys) throws JoseException {
+		if (!verificationKeys.containsKey(signer.getKid())) {
+			throw new JoseException("The key ring has no verification key for the active key " + signer.getKid());
+		}
+		this.signer = signer;
+		this.verificationKeys = Collections.unmodifiableMap(new HashMap<>(verificationKeys));
+		this.publicKeys = Collections.unmodifiableMap(new LinkedHashMap<>(publicKeys));
+		this.jwks = publicKeys.isEmpty() ? Jwks.empty() : Jwks.of(signer.getAlg(), this.publicKeys);
+	}
+
+	/**
+	 * A ring holding a single key
+	 *
+	 * @param signer
+	 * @param verificationKey
+	 * @param publicKey - or null for HMAC keys
+	 * @return KeyRing
+	 * @throws JoseException
+	 */
+	static KeyRing of(final JwsSigner signer, final Key verificationKey, final PublicKey publicKey) throws JoseException {
+		return new KeyRing(signer,
+				Collections.singletonMap(signer.getKid(), verificationKey),
+				publicKey == null ? Collections.<String, PublicKey>emptyMap() : Collections.singletonMap(signer.getKid(), publicKey));
+	}
+
+	/**
+	 * Create a ring that signs with the active key of the other ring and verifies with the keys of both,
+	 * the keys of the other ring win on a kid collision
+	 *
+	 * @param other
+	 * @return KeyRing
+	 * @throws JoseException
+	 */
+	KeyRing merge(final KeyRing other) throws JoseException {
+		Map<String, Key> keys = new HashMap<>(verificationKeys);
+		keys.putAll(other.verificationKeys);
+		Map<String, PublicKey> published = new LinkedHashMap<>(publicKeys);
+		published.putAll(other.publicKeys);
+		return new KeyRing(other.signer, keys, published);
+	}
+
+	/**
+	 * @return JwsSigner for the active key
+	 */
+	public JwsSigner getSigner() {
+		return signer;
+	}
+
+	/**
+	 * @param kid
+	 * @return Key or null when the ring has no key with this id
+	 */
+	public Key getVerificationKey(final String kid) {
+		return verificationKeys.get(kid);
+	}
+
+	/**
+	 * @return the ids of all the verification keys
+	 */
+	public Set<String> getKeyIds() {
+		return verificationKeys.keySet();
+	}
+
+	public Jwks getJwks() {
+		return jwks;
+	}
+
+	/**
+	 * Resolver for a JwtConsumer that always verifies against the current ring of the holder
+	 *
+	 * @param holder - supplies the current ring
+	 * @param defaultKid - used for tokens without a kid header
+	 * @return VerificationKeyResolver
+	 */
+	static VerificationKeyResolver resolver(final Holder holder, final String defaultKid) {
+		return (JsonWebSignature jws, List<JsonWebStructure> nestingContext) -> {
+			final String kid = jws.getKeyIdHeaderValue();
+			final Key key = holder.get().getVerificationKey(kid == null ? defaultKid : kid);
+			if (key == null) {
+				throw new UnresolvableKeyException("No verification key for kid " + kid);
+			}
+			return key;
+		};
+	}
+
+	/**
+	 * Supplies the current ring
+	 */
+	interface Holder {
+		KeyRing get();
+	}
+}
@@ -0,0 +1,268 @@
+package io.authomator.api.jwt;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.authomator.api.domain.entity.SigningKey;
+import io.authomator.api.domain.repository.SigningKeyRepository;
+
+/**
+ * Rotates the token signing keys on a fixed schedule, without a restart.
+ *
+ * Time is divided in periods of io.authomator.api.keys.rotation.period minutes. Tokens are signed with
+ * the key of the current period, the key of the next period is created (and published in the JWKS)
+ * one period ahead so resource servers have it cached before the first token signed with it shows up.
+ * A key stays in the ring until the longest token ttl has passed after its period ended.
+ *
+ * Keys live in the signingKeys collection, every node derives the same kid for a period and only the
+ * first insert wins, so all nodes sign and verify with the same keys. The configured keys (kid "0")
+ * stay valid for verification, sessions started before rotation was enabled keep working.
+ *
+ * The secrets and private keys are encrypted with io.authomator.api.keys.encryptionkey before they are
+ * stored. Without it they are stored as plain Base64, and anyone able to read the database can sign tokens.
+ */
+@Service
+public class KeyRotationService {
+
+	private static final Logger logger = Logger.getLogger(KeyRotationService.class);
+
+	/**
+	 * Bytes of a generated HMAC secret, enough for HS512
+	 */
+	private static final int SECRET_LENGTH = 64;
+
+	/**
+	 * Clock skew allowed by the token consumers
+	 */
+	private static final long ALLOWED_CLOCK_SKEW = 30 * 1000L;
+
+	private static final Map<String, String> EC_CURVES = new HashMap<>();
+
+	static {
+		EC_CURVES.put(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256, "secp256r1");
+		EC_CURVES.put(AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384, "secp384r1");
+		EC_CURVES.put(AlgorithmIdentifiers.ECDSA_USING_P521_CURVE_AND_SHA512, "secp521r1");
+	}
+
+	private final JwtService jwtService;
+
+	private final SigningKeyRepository signingKeyRepository;
+
+	private final boolean enabled;
+
+	/**
+	 * Rotation period in milliseconds
+	 */
+	private final long period;
+
+	private final KeyEncryption encryption;
+
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Constructor
+	 *
+	 * @param jwtService
+	 * @param signingKeyRepository
+	 * @param enabled
+	 * @param period - in minutes
+	 * @param encryptionKey - of the stored secrets and private keys, empty stores them unencrypted
+	 */
+	@Autowired
+	public KeyRotationService(
+			JwtService jwtService,
+			SigningKeyRepository signingKeyRepository,
+			@Value("${io.authomator.api.keys.rotation.enabled:false}") boolean enabled,
+			@Value("${io.authomator.api.keys.rotation.period:1440}") long period,
+			@Value("${io.authomator.api.keys.encryptionkey:}") String encryptionKey) {
+
+		if (period <= 0) {
+			throw new RuntimeException("io.authomator.api.keys.rotation.period must be a positive number of minutes");
+		}
+		this.jwtService = jwtService;
+		this.signingKeyRepository = signingKeyRepository;
+		this.enabled = enabled;
+		this.period = period * 60 * 1000L;
+		this.encryption = new KeyEncryption(encryptionKey);
+		if (enabled && !encryption.isEnabled()) {
+			logger.log(Level.WARN, "io.authomator.api.keys.encryptionkey is not set, the rotated signing keys are stored unencrypted in the signingKeys collection");
+		}
+	}
+
+	/**
+	 * Check for a rotation, also picks up the keys created by other nodes
+	 */
+	@Scheduled(fixedDelayString = "${io.authomator.api.keys.rotation.check:60000}")
+	public void scheduledRotation() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			rotate(System.currentTimeMillis());
+		} catch (Exception e) {
+			// Keep signing with the current ring, the next run retries
+			logger.log(Level.ERROR, String.format("Signing key rotation failed: %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Make sure the keys for the current and next period exist, drop expired keys and install the rings
+	 *
+	 * @param now - in milliseconds since the epoch
+	 * @throws GeneralSecurityException
+	 * @throws JoseException
+	 */
+	void rotate(final long now) throws GeneralSecurityException, JoseException {
+		final KeyRing userKeys = rotate(SigningKey.TYPE_USER, jwtService.getAlg(), now);
+		final KeyRing internalKeys = rotate(SigningKey.TYPE_INTERNAL, jwtService.getInternalAlg(), now);
+		jwtService.installKeyRings(userKeys, internalKeys);
+	}
+
+	private KeyRing rotate(final String type, final String alg, final long now) throws GeneralSecurityException, JoseException {
+
+		final long current = now / period;
+		final long retention = jwtService.getMaxTtl() * 60 * 1000L + ALLOWED_CLOCK_SKEW;
+
+		TreeMap<Long, SigningKey> keys = load(type, alg);
+		boolean created = false;
+		for (long p = current; p <= current + 1; p++) {
+			if (!keys.containsKey(p)) {
+				created |= insert(generate(type, alg, p));
+			}
+		}
+		if (created) {
+			// Reload, another node may have won the insert
+			keys = load(type, alg);
+		}
+
+		final List<SigningKey> expired = new ArrayList<>();
+		final Map<String, Key> verificationKeys = new HashMap<>();
+		final Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+		JwsSigner signer = null;
+
+		for (SigningKey key : keys.values()) {
+			if ((key.getPeriod() + 1) * period + retention < now) {
+				expired.add(key);
+				continue;
+			}
+			if (JwsSigner.isAsymmetric(alg)) {
+				final String keyAlgorithm = PemKeys.keyAlgorithm(alg);
+				final PublicKey publicKey = PemKeys.publicKey(Base64.getDecoder().decode(key.getPublicKey()), keyAlgorithm);
+				verificationKeys.put(key.getId(), publicKey);
+				publicKeys.put(key.getId(), publicKey);
+				if (key.getPeriod() == current) {
+					signer = new JwsSigner(alg, key.getId(), PemKeys.privateKey(encryption.decrypt(key.getPrivateKey(), key.getId()), keyAlgorithm));
+				}
+			}
+			else {
+				final byte[] secret = encryption.decrypt(key.getSecret(), key.getId());
+				verificationKeys.put(key.getId(), new HmacKey(secret));
+				if (key.getPeriod() == current) {
+					signer = new JwsSigner(alg, key.getId(), secret);
+				}
+			}
+		}
+
+		if (!expired.isEmpty()) {
+			signingKeyRepository.delete(expired);
+			logger.log(Level.INFO, String.format("Removed %d expired %s signing keys", expired.size(), type));
+		}
+		if (signer == null) {
+			throw new JoseException(String.format("No %s signing key for period %d", type, current));
+		}
+		return new KeyRing(signer, verificationKeys, publicKeys);
+	}
+
+	/**
+	 * Load the keys of a type by period, keys for another algorithm (the configuration changed) are ignored
+	 */
+	private TreeMap<Long, SigningKey> load(final String type, final String alg) {
+		TreeMap<Long, SigningKey> keys = new TreeMap<>();
+		for (SigningKey key : signingKeyRepository.findByType(type)) {
+			if (alg.equals(key.getAlg())) {
+				keys.put(key.getPeriod(), key);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Insert a new key
+	 *
+	 * @param key
+	 * @return boolean false when another node created the key for this period first
+	 */
+	private boolean insert(final SigningKey key) {
+		try {
+			signingKeyRepository.insert(key);
+			logger.log(Level.INFO, String.format("Created %s signing key %s", key.getType(), key.getId()));
+			return true;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * The kid of the key for a type and period
+	 *
+	 * @param type
+	 * @param alg
+	 * @param period
+	 * @return String
+	 */
+	static String keyId(final String type, final String alg, final long period) {
+		return String.format("%s-%s-%d", type.substring(0, 1), alg, period);
+	}
+
+	private SigningKey generate(final String type, final String alg, final long period) throws GeneralSecurityException {
+		SigningKey key = new SigningKey();
+		key.setId(keyId(type, alg, period));
+		key.setType(type);
+		key.setAlg(alg);
+		key.setPeriod(period);
+		key.setCreatedAt(new Date());
+
+		if (JwsSigner.isAsymmetric(alg)) {
+			final KeyPairGenerator generator = KeyPairGenerator.getInstance(PemKeys.keyAlgorithm(alg));
+			if (EC_CURVES.containsKey(alg)) {
+				generator.initialize(new ECGenParameterSpec(EC_CURVES.get(alg)), random);
+			}
+			else {
+				generator.initialize(2048, random);
+			}
+			final KeyPair keyPair = generator.generateKeyPair();
+			key.setPrivateKey(encryption.encrypt(keyPair.getPrivate().getEncoded(), key.getId()));
+			key.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+		}
+		else {
+			final byte[] secret = new byte[SECRET_LENGTH];
+			random.nextBytes(secret);
+			key.setSecret(encryption.encrypt(secret, key.getId()));
+		}
+		return key;
+	}
+}
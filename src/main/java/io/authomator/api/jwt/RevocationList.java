@@ -0,0 +1,144 @@
+package io.authomator.api.jwt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory set of revoked token ids (jti), checked by the token validators.
+ *
+ * Lookups are a single ConcurrentHashMap probe and never block. A revoked id only has to be kept
+ * until the token it belongs to expires, the ids are therefore also scheduled on a hashed timer
+ * wheel: a ring of buckets, one per tick, where an id is filed in the bucket of its expiry tick.
+ * Advancing the wheel only visits the buckets of the ticks that passed, so expiring ids costs
+ * O(expired) instead of a scan over the whole set. Ids expiring more than one revolution ahead
+ * stay in their bucket until a later pass reaches their deadline.
+ *
+ * Instances are thread-safe.
+ */
+public final class RevocationList {
+
+	/**
+	 * Buckets on the wheel
+	 */
+	private static final int WHEEL_SIZE = 512;
+
+	private static final long DEFAULT_TICK = 1000L;
+
+	/**
+	 * Revoked ids, mapped to their expiry in milliseconds since the epoch
+	 */
+	private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+	/**
+	 * Tick length in milliseconds
+	 */
+	private final long tick;
+
+	/**
+	 * Bucket per tick modulo WHEEL_SIZE, guarded by this
+	 */
+	private final List<List<Entry>> wheel = new ArrayList<>(WHEEL_SIZE);
+
+	/**
+	 * Last tick the wheel was advanced to, guarded by this
+	 */
+	private long currentTick;
+
+	private static final class Entry {
+
+		private final String jti;
+		private final long expiresAt;
+
+		private Entry(final String jti, final long expiresAt) {
+			this.jti = jti;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Constructor, one second ticks starting now
+	 */
+	public RevocationList() {
+		this(DEFAULT_TICK, System.currentTimeMillis());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param tick - in milliseconds
+	 * @param now - in milliseconds since the epoch
+	 */
+	RevocationList(final long tick, final long now) {
+		this.tick = tick;
+		this.currentTick = now / tick;
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			wheel.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Determine if a token id is revoked
+	 *
+	 * @param jti
+	 * @return boolean
+	 */
+	public boolean isRevoked(final String jti) {
+		return jti != null && revoked.containsKey(jti);
+	}
+
+	/**
+	 * Revoke a token id until the token expires
+	 *
+	 * @param jti
+	 * @param expiresAt - in milliseconds since the epoch
+	 * @return boolean false if the id was revoked already
+	 */
+	public boolean revoke(final String jti, final long expiresAt) {
+		if (revoked.putIfAbsent(jti, expiresAt) != null) {
+			return false;
+		}
+		synchronized (this) {
+			// First tick that starts after the expiry, the entry is always due when its bucket is visited
+			final long expiryTick = Math.max(expiresAt / tick + 1, currentTick + 1);
+			wheel.get((int) (expiryTick % WHEEL_SIZE)).add(new Entry(jti, expiresAt));
+		}
+		return true;
+	}
+
+	/**
+	 * Advance the wheel and forget the ids of the tokens that expired
+	 *
+	 * @param now - in milliseconds since the epoch
+	 * @return int number of ids removed
+	 */
+	public synchronized int expire(final long now) {
+		final long targetTick = now / tick;
+		if (targetTick <= currentTick) {
+			return 0;
+		}
+		final long ticks = Math.min(targetTick - currentTick, WHEEL_SIZE);
+		int removed = 0;
+		for (long t = targetTick - ticks + 1; t <= targetTick; t++) {
+			final Iterator<Entry> bucket = wheel.get((int) (t % WHEEL_SIZE)).iterator();
+			while (bucket.hasNext()) {
+				final Entry entry = bucket.next();
+				if (entry.expiresAt <= now) {
+					bucket.remove();
+					revoked.remove(entry.jti);
+					removed++;
+				}
+			}
+		}
+		currentTick = targetTick;
+		return removed;
+	}
+
+	/**
+	 * @return int number of revoked ids held
+	 */
+	public int size() {
+		return revoked.size();
+	}
+}
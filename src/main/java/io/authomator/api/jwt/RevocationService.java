@@ -0,0 +1,125 @@
+package io.authomator.api.jwt;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.authomator.api.domain.entity.RevokedToken;
+import io.authomator.api.domain.repository.RevokedTokenRepository;
+
+/**
+ * Revokes tokens by their jti, before they expire.
+ *
+ * Revocations are stored in the revokedTokens collection, so they survive a restart, and added to the
+ * in-memory RevocationList of the JwtService, which the validators check without a database read.
+ * Every io.authomator.api.revocation.sync milliseconds the revocations made on other nodes since the
+ * last sync are loaded, and the ids of expired tokens are dropped from memory. MongoDB drops them
+ * from the collection through a TTL index.
+ */
+@Service
+public class RevocationService {
+
+	private static final Logger logger = Logger.getLogger(RevocationService.class);
+
+	/**
+	 * Clock skew allowed by the token consumers, a token is kept revoked this long after it expired
+	 */
+	private static final long ALLOWED_CLOCK_SKEW = 30 * 1000L;
+
+	/**
+	 * Revocations made this long before the last sync are loaded again, covers clock differences
+	 * between the nodes
+	 */
+	private static final long SYNC_OVERLAP = 60 * 1000L;
+
+	private final JwtService jwtService;
+
+	private final RevokedTokenRepository revokedTokenRepository;
+
+	/**
+	 * Time of the last successful sync, 0 before the revocations were loaded
+	 */
+	private long lastSync;
+
+	/**
+	 * Constructor
+	 *
+	 * @param jwtService
+	 * @param revokedTokenRepository
+	 */
+	@Autowired
+	public RevocationService(JwtService jwtService, RevokedTokenRepository revokedTokenRepository) {
+		this.jwtService = jwtService;
+		this.revokedTokenRepository = revokedTokenRepository;
+	}
+
+	/**
+	 * Load the revocations on startup, before the first token is validated
+	 */
+	@PostConstruct
+	public void load() {
+		scheduledSync();
+	}
+
+	/**
+	 * Pick up the revocations of the other nodes
+	 */
+	@Scheduled(fixedDelayString = "${io.authomator.api.revocation.sync:10000}")
+	public void scheduledSync() {
+		try {
+			sync(System.currentTimeMillis());
+		} catch (Exception e) {
+			// Keep validating against the revocations loaded so far, the next run retries
+			logger.log(Level.ERROR, String.format("Revoked tokens sync failed: %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Load the revocations made since the last sync (all unexpired ones on the first run) and expire
+	 * the ids of the tokens that are no longer valid anyway
+	 *
+	 * @param now - in milliseconds since the epoch
+	 */
+	synchronized void sync(final long now) {
+		final List<RevokedToken> revokedTokens = lastSync == 0
+				? revokedTokenRepository.findByExpiresAtAfter(new Date(now))
+				: revokedTokenRepository.findByRevokedAtAfter(new Date(lastSync - SYNC_OVERLAP));
+
+		final RevocationList revocationList = jwtService.getRevocationList();
+		for (RevokedToken revokedToken : revokedTokens) {
+			revocationList.revoke(revokedToken.getId(), revokedToken.getExpiresAt().getTime());
+		}
+		revocationList.expire(now);
+		lastSync = now;
+	}
+
+	/**
+	 * Revoke a validated token until it expires
+	 *
+	 * @param claims - validated token claims
+	 * @throws InvalidJwtException when the token has no jti or expiration time
+	 * @throws MalformedClaimException
+	 */
+	public void revoke(final JwtClaims claims) throws InvalidJwtException, MalformedClaimException {
+		final String jti = claims.getJwtId();
+		if (jti == null || claims.getExpirationTime() == null) {
+			throw new InvalidJwtException("Token can not be revoked, it has no jti or exp claim");
+		}
+		final long expiresAt = claims.getExpirationTime().getValueInMillis() + ALLOWED_CLOCK_SKEW;
+
+		revokedTokenRepository.save(new RevokedToken(jti, new Date(expiresAt), new Date()));
+		jwtService.getRevocationList().revoke(jti, expiresAt);
+		logger.log(Level.INFO, String.format("Revoked token %s of user %s", jti, claims.getSubject()));
+	}
+}
@@ -0,0 +1,106 @@
+package io.authomator.api.jwt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.dto.IntrospectionReply;
+
+/**
+ * Validates access tokens for the introspection endpoints, through the IntrospectionCache.
+ *
+ * Batches are validated in parallel on the common fork/join pool: validation is pure CPU work
+ * (signature check, JSON parse), the pool is sized to the cores and the request thread takes part.
+ */
+@Component
+public class TokenIntrospector {
+
+	private static final Logger logger = Logger.getLogger(TokenIntrospector.class);
+
+	/**
+	 * Smaller batches are validated on the request thread, splitting them costs more than it saves
+	 */
+	private static final int PARALLEL_THRESHOLD = 4;
+
+	private final JwtService jwtService;
+
+	private final IntrospectionCache introspectionCache;
+
+	/**
+	 * Constructor
+	 *
+	 * @param jwtService
+	 * @param introspectionCache
+	 */
+	@Autowired
+	public TokenIntrospector(JwtService jwtService, IntrospectionCache introspectionCache) {
+		this.jwtService = jwtService;
+		this.introspectionCache = introspectionCache;
+	}
+
+	/**
+	 * Introspect an access token
+	 *
+	 * @param token - compact serialization
+	 * @return IntrospectionReply, inactive for invalid, expired or revoked tokens
+	 */
+	public IntrospectionReply introspect(final String token) {
+		if (token == null) {
+			return new IntrospectionReply();
+		}
+		IntrospectionReply reply = introspectionCache.get(token, System.currentTimeMillis());
+		if (reply != null && !jwtService.getRevocationList().isRevoked(reply.getJti())) {
+			return reply;
+		}
+		try {
+			// Throws for revoked tokens as well
+			reply = createReply(jwtService.validateAccessToken(token));
+		} catch (InvalidJwtException | MalformedClaimException e) {
+			logger.log(Level.DEBUG, String.format("Introspected token is not active: %s", e.getMessage()));
+			return new IntrospectionReply();
+		}
+		introspectionCache.put(token, reply);
+		return reply;
+	}
+
+	/**
+	 * Introspect a batch of access tokens
+	 *
+	 * @param tokens - compact serializations
+	 * @return List<IntrospectionReply> in the order of the tokens
+	 */
+	public List<IntrospectionReply> introspect(final List<String> tokens) {
+		if (tokens.size() < PARALLEL_THRESHOLD) {
+			List<IntrospectionReply> replies = new ArrayList<>(tokens.size());
+			for (String token : tokens) {
+				replies.add(introspect(token));
+			}
+			return replies;
+		}
+		return tokens.parallelStream().map(this::introspect).collect(Collectors.toList());
+	}
+
+	private IntrospectionReply createReply(final JwtClaims claims) throws MalformedClaimException {
+		IntrospectionReply reply = new IntrospectionReply();
+		reply.setActive(true);
+		reply.setIss(claims.getIssuer());
+		reply.setAud(claims.getAudience());
+		reply.setExp(claims.getExpirationTime() == null ? null : claims.getExpirationTime().getValue());
+		reply.setIat(claims.getIssuedAt() == null ? null : claims.getIssuedAt().getValue());
+		reply.setNbf(claims.getNotBefore() == null ? null : claims.getNotBefore().getValue());
+		reply.setJti(claims.getJwtId());
+		reply.setSub(claims.getSubject());
+		reply.setRoles(claims.getStringListClaimValue("roles"));
+		reply.setCtx(claims.getStringClaimValue("ctx"));
+		reply.setEv(claims.getClaimValue("ev", Boolean.class));
+		return reply;
+	}
+}
@@ -0,0 +1,73 @@
+package io.authomator.api.jwt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dedicated pool for the CPU-bound token work (signing, claims rendering).
+ *
+ * The pool has one thread per core by default and a short queue. When the queue is full the task
+ * runs on the calling thread: under saturation minting degrades to sequential instead of queueing
+ * behind other requests.
+ */
+@Component
+@ConditionalOnProperty(name="io.authomator.api.tokens.parallel", havingValue="true")
+public class TokenMintingExecutor {
+
+	/**
+	 * Queued tasks per pool thread
+	 */
+	private static final int QUEUE_PER_THREAD = 16;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads - pool size, 0 for one thread per available processor
+	 */
+	@Autowired
+	public TokenMintingExecutor(@Value("${io.authomator.api.tokens.parallel.threads:0}") int threads) {
+		final int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		final AtomicInteger count = new AtomicInteger();
+		final ThreadFactory threadFactory = r -> {
+			Thread thread = new Thread(r, "token-minting-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(size * QUEUE_PER_THREAD), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.prestartAllCoreThreads();
+	}
+
+	/**
+	 * Submit a task, runs it on the calling thread when the pool is saturated
+	 *
+	 * @param task
+	 * @return Future
+	 */
+	public <T> Future<T> submit(final Callable<T> task) {
+		return executor.submit(task);
+	}
+
+	public int getPoolSize() {
+		return executor.getCorePoolSize();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,174 @@
+package io.authomator.api.password;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+/**
+ * Argon2id (BouncyCastle), hashes use the PHC string format:
+ * $argon2id$v=19$m=&lt;memory KiB&gt;,t=&lt;iterations&gt;,p=&lt;parallelism&gt;$&lt;salt&gt;$&lt;hash&gt;
+ */
+public class Argon2PasswordHasher implements PasswordHasher {
+
+	private static final Logger logger = Logger.getLogger(Argon2PasswordHasher.class);
+
+	public static final String ID = "argon2";
+
+	private static final String TYPE = "argon2id";
+
+	private static final int SALT_LENGTH = 16;
+
+	private static final int HASH_LENGTH = 32;
+
+	private final int memory;
+	private final int iterations;
+	private final int parallelism;
+
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Constructor
+	 *
+	 * @param memory - in KiB
+	 * @param iterations
+	 * @param parallelism
+	 */
+	public Argon2PasswordHasher(final int memory, final int iterations, final int parallelism) {
+		if (memory < 8 * parallelism || iterations < 1 || parallelism < 1) {
+			throw new IllegalArgumentException("The argon2 memory must be at least 8 KiB per lane, iterations and parallelism positive numbers");
+		}
+		this.memory = memory;
+		this.iterations = iterations;
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public String hash(final String password) {
+		final byte[] salt = new byte[SALT_LENGTH];
+		random.nextBytes(salt);
+		final Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return parameters() + "$" + encoder.encodeToString(salt) + "$"
+				+ encoder.encodeToString(argon2(password, salt, memory, iterations, parallelism, HASH_LENGTH));
+	}
+
+	@Override
+	public boolean matches(final String password, final String hash) {
+		// "", argon2id, v=19, m=..,t=..,p=.., salt, hash
+		final String[] parts = hash.split("\\$");
+		if (parts.length != 6 || !TYPE.equals(parts[1]) || !parts[2].equals("v=" + Argon2Parameters.ARGON2_VERSION_13)) {
+			return false;
+		}
+		final int[] mtp = parameters(parts[3]);
+		if (mtp == null) {
+			logger.log(Level.WARN, String.format("Malformed %s hash parameters: %s", ID, parts[3]));
+			return false;
+		}
+		final Base64.Decoder decoder = Base64.getDecoder();
+		final byte[] expected;
+		final byte[] actual;
+		try {
+			expected = decoder.decode(parts[5]);
+			// The generator rejects invalid parameters with an IllegalStateException
+			actual = argon2(password, decoder.decode(parts[4]), mtp[0], mtp[1], mtp[2], expected.length);
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			logger.log(Level.WARN, String.format("Malformed %s hash: %s", ID, e.getMessage()));
+			return false;
+		}
+		return MessageDigest.isEqual(expected, actual);
+	}
+
+	@Override
+	public boolean needsRehash(final String hash) {
+		final String[] parts = hash.split("\\$");
+		if (parts.length != 6 || !TYPE.equals(parts[1]) || !parts[2].equals("v=" + Argon2Parameters.ARGON2_VERSION_13)) {
+			return true;
+		}
+		final int[] mtp = parameters(parts[3]);
+		return mtp == null || cost(mtp[0], mtp[1]) < cost(memory, iterations);
+	}
+
+	@Override
+	public String getParameters() {
+		return String.format("m=%d,t=%d,p=%d", memory, iterations, parallelism);
+	}
+
+	/**
+	 * One more iteration, the memory use per hash stays as configured
+	 */
+	@Override
+	public PasswordHasher stronger() {
+		return iterations < Integer.MAX_VALUE ? new Argon2PasswordHasher(memory, iterations + 1, parallelism) : null;
+	}
+
+	/**
+	 * Work of a hash, proportional to m * t, the parallelism only splits it over lanes
+	 */
+	private static long cost(final int memory, final int iterations) {
+		return (long) memory * iterations;
+	}
+
+	/**
+	 * Parse m=..,t=..,p=..
+	 *
+	 * @param parameters
+	 * @return int[] {m, t, p} or null when malformed
+	 */
+	private static int[] parameters(final String parameters) {
+		final int[] mtp = new int[3];
+		for (String parameter : parameters.split(",")) {
+			if (parameter.length() < 3 || parameter.charAt(1) != '=') {
+				return null;
+			}
+			final int value;
+			try {
+				value = Integer.parseInt(parameter.substring(2));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			switch (parameter.charAt(0)) {
+			case 'm':
+				mtp[0] = value;
+				break;
+			case 't':
+				mtp[1] = value;
+				break;
+			case 'p':
+				mtp[2] = value;
+				break;
+			default:
+				return null;
+			}
+		}
+		return mtp[0] > 0 && mtp[1] > 0 && mtp[2] > 0 ? mtp : null;
+	}
+
+	private String parameters() {
+		return String.format("$%s$v=%d$m=%d,t=%d,p=%d", TYPE, Argon2Parameters.ARGON2_VERSION_13, memory, iterations, parallelism);
+	}
+
+	private static byte[] argon2(final String password, final byte[] salt, final int memory, final int iterations,
+			final int parallelism, final int length) {
+		final Argon2BytesGenerator generator = new Argon2BytesGenerator();
+		generator.init(new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+				.withVersion(Argon2Parameters.ARGON2_VERSION_13)
+				.withSalt(salt)
+				.withMemoryAsKB(memory)
+				.withIterations(iterations)
+				.withParallelism(parallelism)
+				.build());
+		final byte[] hash = new byte[length];
+		generator.generateBytes(password.getBytes(StandardCharsets.UTF_8), hash);
+		return hash;
+	}
+}
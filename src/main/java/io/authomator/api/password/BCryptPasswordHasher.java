@@ -0,0 +1,73 @@
+package io.authomator.api.password;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+/**
+ * bcrypt, hashes look like $2a$10$&lt;salt&gt;&lt;hash&gt;
+ */
+public class BCryptPasswordHasher implements PasswordHasher {
+
+	private static final Logger logger = Logger.getLogger(BCryptPasswordHasher.class);
+
+	public static final String ID = "bcrypt";
+
+	/**
+	 * log2 of the number of rounds
+	 */
+	private final int cost;
+
+	public BCryptPasswordHasher(final int cost) {
+		if (cost < 4 || cost > 31) {
+			throw new IllegalArgumentException("The bcrypt cost must be between 4 and 31");
+		}
+		this.cost = cost;
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public String hash(final String password) {
+		return BCrypt.hashpw(password, BCrypt.gensalt(cost));
+	}
+
+	@Override
+	public boolean matches(final String password, final String hash) {
+		try {
+			return BCrypt.checkpw(password, hash);
+		} catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+			logger.log(Level.WARN, String.format("Malformed %s hash: %s", ID, e.getMessage()));
+			return false;
+		}
+	}
+
+	@Override
+	public boolean needsRehash(final String hash) {
+		// $2a$10$...
+		if (hash.length() < 7 || hash.charAt(6) != '$') {
+			return true;
+		}
+		try {
+			return Integer.parseInt(hash.substring(4, 6)) < cost;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	@Override
+	public String getParameters() {
+		return "cost=" + cost;
+	}
+
+	/**
+	 * Twice the rounds
+	 */
+	@Override
+	public PasswordHasher stronger() {
+		return cost < 31 ? new BCryptPasswordHasher(cost + 1) : null;
+	}
+}
@@ -0,0 +1,59 @@
+package io.authomator.api.password;
+
+/**
+ * A password hashing algorithm with its cost parameters.
+ *
+ * Hashes are self describing: they carry the salt and the parameters they were made with, so a
+ * hash made with other parameters can still be checked, and recognized as outdated.
+ */
+public interface PasswordHasher {
+
+	/**
+	 * Id of the algorithm, stored as {id} prefix in front of the hash
+	 *
+	 * @return String
+	 */
+	String getId();
+
+	/**
+	 * Hash a password with a new random salt and the current parameters
+	 *
+	 * @param password - plain text
+	 * @return String hash, without the {id} prefix
+	 */
+	String hash(String password);
+
+	/**
+	 * Check a password against a hash made by this algorithm
+	 *
+	 * @param password - plain text
+	 * @param hash - without the {id} prefix
+	 * @return boolean, false for a malformed hash
+	 */
+	boolean matches(String password, String hash);
+
+	/**
+	 * Determine if a hash made by this algorithm was made with a lower cost than the current one.
+	 *
+	 * Hashes with a higher cost are kept: nodes calibrated to different costs would otherwise
+	 * rehash each other's hashes down and back on every sign in.
+	 *
+	 * @param hash - without the {id} prefix
+	 * @return boolean
+	 */
+	boolean needsRehash(String hash);
+
+	/**
+	 * The cost parameters of new hashes, for logging
+	 *
+	 * @return String
+	 */
+	String getParameters();
+
+	/**
+	 * The same algorithm one step more expensive, to calibrate the cost
+	 *
+	 * @return PasswordHasher or null when this is the maximum cost
+	 */
+	PasswordHasher stronger();
+}
@@ -0,0 +1,138 @@
+package io.authomator.api.password;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Finds the strongest cost of a password hashing algorithm that still hashes within a latency target
+ * on this machine.
+ *
+ * Starting from the configured cost, every step (PasswordHasher.stronger) is timed over a number of
+ * hashes on the calling thread, and accepted while the p99 of those hashes meets the target. A step is
+ * abandoned as soon as more hashes exceeded the target than the p99 allows, so the slow steps cost
+ * little. The configured cost is a floor: it is kept even when it misses the target.
+ *
+ * The timings are of one hash on an idle machine, the latency under load also depends on the queueing
+ * in the PasswordHashingExecutor.
+ */
+public class PasswordHasherCalibrator {
+
+	/**
+	 * Result of a calibration
+	 */
+	public static final class Calibration {
+		private final PasswordHasher hasher;
+		private final double p99Millis;
+
+		private Calibration(final PasswordHasher hasher, final double p99Millis) {
+			this.hasher = hasher;
+			this.p99Millis = p99Millis;
+		}
+
+		/**
+		 * @return PasswordHasher with the chosen cost
+		 */
+		public PasswordHasher getHasher() {
+			return hasher;
+		}
+
+		/**
+		 * @return double p99 (ms) of the chosen cost
+		 */
+		public double getP99Millis() {
+			return p99Millis;
+		}
+	}
+
+	private static final String PASSWORD = "calibration-password";
+
+	/**
+	 * Most steps tried, bcrypt runs out of cost before
+	 */
+	private static final int MAX_STEPS = 32;
+
+	private final long targetNanos;
+
+	private final int samples;
+
+	/**
+	 * Returns the duration (ns) of one hash
+	 */
+	private final ToLongFunction<PasswordHasher> timer;
+
+	/**
+	 * Constructor
+	 *
+	 * @param targetMillis - p99 latency target of one hash
+	 * @param samples - hashes timed per step
+	 */
+	public PasswordHasherCalibrator(final long targetMillis, final int samples) {
+		this(targetMillis, samples, hasher -> {
+			final long start = System.nanoTime();
+			hasher.hash(PASSWORD);
+			return System.nanoTime() - start;
+		});
+	}
+
+	PasswordHasherCalibrator(final long targetMillis, final int samples, final ToLongFunction<PasswordHasher> timer) {
+		if (targetMillis < 1 || samples < 1) {
+			throw new IllegalArgumentException("The calibration target and samples must be positive numbers");
+		}
+		this.targetNanos = targetMillis * 1000000L;
+		this.samples = samples;
+		this.timer = timer;
+	}
+
+	/**
+	 * Calibrate the cost of an algorithm
+	 *
+	 * @param floor - the hasher with the lowest acceptable cost
+	 * @return Calibration
+	 */
+	public Calibration calibrate(final PasswordHasher floor) {
+		// Warm up the code path, the first hash includes class loading and interpretation
+		timer.applyAsLong(floor);
+
+		Calibration chosen = new Calibration(floor, p99(floor, Integer.MAX_VALUE) / 1000000.0);
+		if (chosen.p99Millis * 1000000.0 > targetNanos) {
+			return chosen;
+		}
+		PasswordHasher candidate = floor.stronger();
+		for (int step = 0; candidate != null && step < MAX_STEPS; step++) {
+			final long p99 = p99(candidate, samples - 1 - p99Index());
+			if (p99 > targetNanos) {
+				break;
+			}
+			chosen = new Calibration(candidate, p99 / 1000000.0);
+			candidate = candidate.stronger();
+		}
+		return chosen;
+	}
+
+	/**
+	 * Index of the p99 in the sorted samples
+	 */
+	private int p99Index() {
+		return (int) Math.ceil(samples * 0.99) - 1;
+	}
+
+	/**
+	 * Time the samples of a hasher
+	 *
+	 * @param hasher
+	 * @param allowedOverTarget - stop once more samples exceeded the target
+	 * @return long p99 (ns), or the duration of the sample that exceeded the allowance
+	 */
+	private long p99(final PasswordHasher hasher, final int allowedOverTarget) {
+		final long[] durations = new long[samples];
+		int overTarget = 0;
+		for (int i = 0; i < samples; i++) {
+			durations[i] = timer.applyAsLong(hasher);
+			if (durations[i] > targetNanos && ++overTarget > allowedOverTarget) {
+				return durations[i];
+			}
+		}
+		Arrays.sort(durations);
+		return durations[p99Index()];
+	}
+}
@@ -0,0 +1,204 @@
+package io.authomator.api.password;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * The supported password hashing algorithms, and the one new hashes are made with.
+ *
+ * Stored hashes carry the id of their algorithm as prefix, {bcrypt}$2a$10$..., so the algorithm
+ * and its parameters can be changed without invalidating existing passwords. Hashes without prefix
+ * predate the prefixes and are bcrypt hashes.
+ *
+ * With a calibration target the cost of the current algorithm is raised at startup to the strongest
+ * cost that hashes within the target on this machine (PasswordHasherCalibrator), the configured cost
+ * being the minimum. Hashes made with another cost keep verifying at their own cost, and are only
+ * rehashed when their cost is lower than the current one. The algorithm, its parameters and the
+ * calibrated p99 are logged and exposed over JMX.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=PasswordHashers")
+public class PasswordHashers {
+
+	private static final Logger logger = Logger.getLogger(PasswordHashers.class);
+
+	private final Map<String, PasswordHasher> hashers = new HashMap<>();
+
+	/**
+	 * The algorithm of new hashes
+	 */
+	private PasswordHasher current;
+
+	/**
+	 * p99 (ms) of the current hasher measured at startup, 0 when not calibrated
+	 */
+	private double calibratedP99Millis;
+
+	private long calibrationTargetMillis;
+
+	/**
+	 * Constructor
+	 *
+	 * @param algorithm - bcrypt, pbkdf2, scrypt or argon2
+	 * @param bcryptCost - log2 rounds
+	 * @param pbkdf2Iterations
+	 * @param scryptCost - N, a power of 2
+	 * @param scryptBlockSize - r
+	 * @param scryptParallelization - p
+	 * @param argon2Memory - in KiB
+	 * @param argon2Iterations
+	 * @param argon2Parallelism
+	 * @param calibrationTarget - p99 latency target (ms) of a hash, 0 keeps the configured cost
+	 * @param calibrationSamples - hashes timed per cost
+	 */
+	@Autowired
+	public PasswordHashers(
+			@Value("${io.authomator.api.password.algorithm:bcrypt}") String algorithm,
+			@Value("${io.authomator.api.password.bcrypt.cost:10}") int bcryptCost,
+			@Value("${io.authomator.api.password.pbkdf2.iterations:600000}") int pbkdf2Iterations,
+			@Value("${io.authomator.api.password.scrypt.cost:16384}") int scryptCost,
+			@Value("${io.authomator.api.password.scrypt.blocksize:8}") int scryptBlockSize,
+			@Value("${io.authomator.api.password.scrypt.parallelization:1}") int scryptParallelization,
+			@Value("${io.authomator.api.password.argon2.memory:19456}") int argon2Memory,
+			@Value("${io.authomator.api.password.argon2.iterations:2}") int argon2Iterations,
+			@Value("${io.authomator.api.password.argon2.parallelism:1}") int argon2Parallelism,
+			@Value("${io.authomator.api.password.calibrate.target:0}") long calibrationTarget,
+			@Value("${io.authomator.api.password.calibrate.samples:20}") int calibrationSamples) {
+
+		this(algorithm,
+				new BCryptPasswordHasher(bcryptCost),
+				new Pbkdf2PasswordHasher(pbkdf2Iterations),
+				new SCryptPasswordHasher(scryptCost, scryptBlockSize, scryptParallelization),
+				new Argon2PasswordHasher(argon2Memory, argon2Iterations, argon2Parallelism));
+
+		if (calibrationTarget > 0) {
+			calibrate(new PasswordHasherCalibrator(calibrationTarget, calibrationSamples));
+			this.calibrationTargetMillis = calibrationTarget;
+		}
+		logger.log(Level.INFO, String.format("Hashing new passwords with %s (%s)", current.getId(), current.getParameters()));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param algorithm - id of the hasher of new hashes
+	 * @param hashers - must include bcrypt, for the hashes without prefix
+	 */
+	public PasswordHashers(final String algorithm, final PasswordHasher... hashers) {
+		for (PasswordHasher hasher : hashers) {
+			this.hashers.put(hasher.getId(), hasher);
+		}
+		if (!this.hashers.containsKey(BCryptPasswordHasher.ID)) {
+			throw new IllegalArgumentException("The bcrypt hasher is required to check hashes without prefix");
+		}
+		this.current = this.hashers.get(algorithm);
+		if (current == null) {
+			throw new IllegalArgumentException(String.format("Unknown password hashing algorithm %s, use one of %s", algorithm, this.hashers.keySet()));
+		}
+	}
+
+	/**
+	 * Replace the current hasher by the strongest cost of its algorithm that meets the calibration target
+	 *
+	 * @param calibrator
+	 */
+	void calibrate(final PasswordHasherCalibrator calibrator) {
+		final PasswordHasher configured = current;
+		final PasswordHasherCalibrator.Calibration calibration = calibrator.calibrate(configured);
+		current = calibration.getHasher();
+		hashers.put(current.getId(), current);
+		calibratedP99Millis = calibration.getP99Millis();
+		if (current == configured) {
+			logger.log(Level.WARN, String.format("Password hashing calibration kept the configured %s (%s), p99 %.1f ms",
+					current.getId(), current.getParameters(), calibratedP99Millis));
+		} else {
+			logger.log(Level.INFO, String.format("Password hashing calibrated %s from (%s) to (%s), p99 %.1f ms",
+					current.getId(), configured.getParameters(), current.getParameters(), calibratedP99Millis));
+		}
+	}
+
+	/**
+	 * Hash a password with the current algorithm
+	 *
+	 * @param password - plain text
+	 * @return String {id}hash
+	 */
+	public String hash(final String password) {
+		return "{" + current.getId() + "}" + current.hash(password);
+	}
+
+	/**
+	 * Check a password against a stored hash
+	 *
+	 * @param password - plain text
+	 * @param stored - {id}hash, or a bcrypt hash without prefix
+	 * @return boolean, false for an unknown algorithm
+	 */
+	public boolean matches(final String password, final String stored) {
+		if (password == null || stored == null) {
+			return false;
+		}
+		final PasswordHasher hasher = hasher(stored);
+		return hasher != null && hasher.matches(password, strip(stored));
+	}
+
+	/**
+	 * Determine if a stored hash should be replaced by a hash with the current algorithm and
+	 * parameters, the next time the password is known
+	 *
+	 * @param stored
+	 * @return boolean
+	 */
+	public boolean needsRehash(final String stored) {
+		return !stored.startsWith("{" + current.getId() + "}") || current.needsRehash(strip(stored));
+	}
+
+	/**
+	 * The hasher of new hashes
+	 *
+	 * @return PasswordHasher
+	 */
+	public PasswordHasher getCurrent() {
+		return current;
+	}
+
+	@ManagedAttribute(description = "Algorithm of new password hashes")
+	public String getAlgorithm() {
+		return current.getId();
+	}
+
+	@ManagedAttribute(description = "Cost parameters of new password hashes")
+	public String getParameters() {
+		return current.getParameters();
+	}
+
+	@ManagedAttribute(description = "p99 (ms) of a hash with the current parameters measured at startup, 0 when not calibrated")
+	public double getCalibratedP99Millis() {
+		return calibratedP99Millis;
+	}
+
+	@ManagedAttribute(description = "p99 latency target (ms) of the startup calibration, 0 when not calibrated")
+	public long getCalibrationTargetMillis() {
+		return calibrationTargetMillis;
+	}
+
+	private PasswordHasher hasher(final String stored) {
+		if (!stored.startsWith("{")) {
+			return hashers.get(BCryptPasswordHasher.ID);
+		}
+		final int end = stored.indexOf('}');
+		return end < 0 ? null : hashers.get(stored.substring(1, end));
+	}
+
+	private static String strip(final String stored) {
+		return stored.startsWith("{") ? stored.substring(stored.indexOf('}') + 1) : stored;
+	}
+}
@@ -0,0 +1,113 @@
+package io.authomator.api.password;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * PBKDF2 with HMAC-SHA256 from the JDK, hashes look like &lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt; (base64)
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+	private static final Logger logger = Logger.getLogger(Pbkdf2PasswordHasher.class);
+
+	public static final String ID = "pbkdf2";
+
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+	private static final int SALT_LENGTH = 16;
+
+	private static final int HASH_LENGTH = 32;
+
+	private final int iterations;
+
+	private final SecureRandom random = new SecureRandom();
+
+	public Pbkdf2PasswordHasher(final int iterations) {
+		if (iterations < 1) {
+			throw new IllegalArgumentException("The PBKDF2 iterations must be a positive number");
+		}
+		this.iterations = iterations;
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public String hash(final String password) {
+		final byte[] salt = new byte[SALT_LENGTH];
+		random.nextBytes(salt);
+		final Base64.Encoder encoder = Base64.getEncoder();
+		return iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(pbkdf2(password, salt, iterations, HASH_LENGTH));
+	}
+
+	@Override
+	public boolean matches(final String password, final String hash) {
+		final String[] parts = hash.split("\\$");
+		if (parts.length != 3) {
+			return false;
+		}
+		final Base64.Decoder decoder = Base64.getDecoder();
+		final byte[] expected;
+		final byte[] salt;
+		final int iterations;
+		try {
+			expected = decoder.decode(parts[2]);
+			salt = decoder.decode(parts[1]);
+			iterations = Integer.parseInt(parts[0]);
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.WARN, String.format("Malformed %s hash: %s", ID, e.getMessage()));
+			return false;
+		}
+		if (iterations < 1 || expected.length == 0) {
+			logger.log(Level.WARN, String.format("Malformed %s hash: %d iterations, %d bytes", ID, iterations, expected.length));
+			return false;
+		}
+		return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations, expected.length));
+	}
+
+	@Override
+	public boolean needsRehash(final String hash) {
+		final int end = hash.indexOf('$');
+		try {
+			return end < 0 || Integer.parseInt(hash.substring(0, end)) < iterations;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	@Override
+	public String getParameters() {
+		return "iterations=" + iterations;
+	}
+
+	/**
+	 * Twice the iterations
+	 */
+	@Override
+	public PasswordHasher stronger() {
+		return iterations <= Integer.MAX_VALUE / 2 ? new Pbkdf2PasswordHasher(iterations * 2) : null;
+	}
+
+	private static byte[] pbkdf2(final String password, final byte[] salt, final int iterations, final int length) {
+		try {
+			final PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+			try {
+				return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+			} finally {
+				spec.clearPassword();
+			}
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to hash the password with " + ALGORITHM, e);
+		}
+	}
+}
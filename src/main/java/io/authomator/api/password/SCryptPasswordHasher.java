@@ -0,0 +1,118 @@
+package io.authomator.api.password;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.bouncycastle.crypto.generators.SCrypt;
+
+/**
+ * scrypt (BouncyCastle), hashes look like &lt;N&gt;$&lt;r&gt;$&lt;p&gt;$&lt;salt&gt;$&lt;hash&gt; (base64)
+ */
+public class SCryptPasswordHasher implements PasswordHasher {
+
+	private static final Logger logger = Logger.getLogger(SCryptPasswordHasher.class);
+
+	public static final String ID = "scrypt";
+
+	private static final int SALT_LENGTH = 16;
+
+	private static final int HASH_LENGTH = 32;
+
+	/**
+	 * CPU/memory cost (N, a power of 2), block size (r) and parallelization (p)
+	 */
+	private final int cpuCost;
+	private final int blockSize;
+	private final int parallelization;
+
+	private final SecureRandom random = new SecureRandom();
+
+	public SCryptPasswordHasher(final int cpuCost, final int blockSize, final int parallelization) {
+		if (cpuCost < 2 || (cpuCost & (cpuCost - 1)) != 0) {
+			throw new IllegalArgumentException("The scrypt cpu cost must be a power of 2");
+		}
+		if (blockSize < 1 || parallelization < 1) {
+			throw new IllegalArgumentException("The scrypt block size and parallelization must be positive numbers");
+		}
+		this.cpuCost = cpuCost;
+		this.blockSize = blockSize;
+		this.parallelization = parallelization;
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public String hash(final String password) {
+		final byte[] salt = new byte[SALT_LENGTH];
+		random.nextBytes(salt);
+		final byte[] hash = SCrypt.generate(password.getBytes(StandardCharsets.UTF_8), salt, cpuCost, blockSize, parallelization, HASH_LENGTH);
+		final Base64.Encoder encoder = Base64.getEncoder();
+		return parameters() + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+	}
+
+	@Override
+	public boolean matches(final String password, final String hash) {
+		final String[] parts = hash.split("\\$");
+		if (parts.length != 5) {
+			return false;
+		}
+		final Base64.Decoder decoder = Base64.getDecoder();
+		final byte[] expected;
+		final byte[] actual;
+		try {
+			expected = decoder.decode(parts[4]);
+			// SCrypt rejects invalid parameters with an IllegalArgumentException as well
+			actual = SCrypt.generate(password.getBytes(StandardCharsets.UTF_8), decoder.decode(parts[3]),
+					Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), expected.length);
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.WARN, String.format("Malformed %s hash: %s", ID, e.getMessage()));
+			return false;
+		}
+		return MessageDigest.isEqual(expected, actual);
+	}
+
+	@Override
+	public boolean needsRehash(final String hash) {
+		final String[] parts = hash.split("\\$");
+		if (parts.length != 5) {
+			return true;
+		}
+		try {
+			return cost(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]))
+					< cost(cpuCost, blockSize, parallelization);
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	@Override
+	public String getParameters() {
+		return String.format("N=%d,r=%d,p=%d", cpuCost, blockSize, parallelization);
+	}
+
+	/**
+	 * Twice the cpu/memory cost, memory use per hash doubles as well (128 * N * r bytes)
+	 */
+	@Override
+	public PasswordHasher stronger() {
+		return cpuCost <= Integer.MAX_VALUE / 256 / blockSize ? new SCryptPasswordHasher(cpuCost * 2, blockSize, parallelization) : null;
+	}
+
+	/**
+	 * Work of a hash, proportional to N * r * p
+	 */
+	private static long cost(final int cpuCost, final int blockSize, final int parallelization) {
+		return (long) cpuCost * blockSize * parallelization;
+	}
+
+	private String parameters() {
+		return cpuCost + "$" + blockSize + "$" + parallelization;
+	}
+}
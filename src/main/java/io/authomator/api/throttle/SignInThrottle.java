@@ -0,0 +1,130 @@
+package io.authomator.api.throttle;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import io.authomator.api.exception.TooManyRequestsException;
+
+/**
+ * Throttles sign in attempts per account and per client address, before any user lookup or password
+ * check, so credential stuffing can not turn into unlimited password hashing.
+ *
+ * Every attempt takes a token from the bucket of its (trimmed, lower cased) email and from the bucket
+ * of its client address. The client address is the remote address of the request, set
+ * server.use-forward-headers behind a proxy.
+ *
+ * The number of tracked keys and the throttled attempts are exposed over JMX.
+ */
+@Component
+@ManagedResource(objectName = "io.authomator.api:type=SignInThrottle")
+public class SignInThrottle {
+
+	private static final Logger logger = Logger.getLogger(SignInThrottle.class);
+
+	private static final int STRIPES = 64;
+
+	private final boolean enabled;
+
+	private final TokenBuckets emails;
+
+	private final TokenBuckets addresses;
+
+	private final LongAdder throttledEmails = new LongAdder();
+	private final LongAdder throttledAddresses = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param enabled
+	 * @param emailCapacity - attempts per email in a burst
+	 * @param emailPerMinute - attempts per email regained per minute
+	 * @param addressCapacity - attempts per client address in a burst
+	 * @param addressPerMinute - attempts per client address regained per minute
+	 * @param maxKeys - maximum number of tracked emails, and of tracked addresses
+	 */
+	@Autowired
+	public SignInThrottle(
+			@Value("${io.authomator.api.throttle.signin.enabled:true}") boolean enabled,
+			@Value("${io.authomator.api.throttle.signin.email.capacity:10}") int emailCapacity,
+			@Value("${io.authomator.api.throttle.signin.email.perminute:10}") int emailPerMinute,
+			@Value("${io.authomator.api.throttle.signin.address.capacity:100}") int addressCapacity,
+			@Value("${io.authomator.api.throttle.signin.address.perminute:100}") int addressPerMinute,
+			@Value("${io.authomator.api.throttle.signin.maxkeys:100000}") int maxKeys) {
+
+		this.enabled = enabled;
+		this.emails = new TokenBuckets(emailCapacity, emailPerMinute, maxKeys, STRIPES);
+		this.addresses = new TokenBuckets(addressCapacity, addressPerMinute, maxKeys, STRIPES);
+	}
+
+	/**
+	 * Take a sign in attempt for an email from a client address
+	 *
+	 * @param email
+	 * @param address - client address
+	 * @throws TooManyRequestsException when the email or the address is out of attempts
+	 */
+	public void acquire(final String email, final String address) throws TooManyRequestsException {
+		if (!enabled) {
+			return;
+		}
+		final long now = System.nanoTime();
+		// The address first, a stuffing client should not drain the buckets of the accounts it tries
+		if (address != null) {
+			final long wait = addresses.tryAcquire(address, now);
+			if (wait > 0) {
+				throttledAddresses.increment();
+				logger.log(Level.WARN, String.format("Sign in throttled for address %s", address));
+				throw new TooManyRequestsException("Too many sign in attempts, retry later", seconds(wait));
+			}
+		}
+		if (email != null) {
+			final long wait = emails.tryAcquire(email.trim().toLowerCase(Locale.ROOT), now);
+			if (wait > 0) {
+				throttledEmails.increment();
+				logger.log(Level.WARN, String.format("Sign in throttled for %s", email));
+				throw new TooManyRequestsException("Too many sign in attempts, retry later", seconds(wait));
+			}
+		}
+	}
+
+	private static long seconds(final long nanos) {
+		return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * Forget every attempt
+	 */
+	public void clear() {
+		emails.clear();
+		addresses.clear();
+	}
+
+	@ManagedAttribute(description = "Emails with recent sign in attempts")
+	public int getTrackedEmails() {
+		return emails.size();
+	}
+
+	@ManagedAttribute(description = "Client addresses with recent sign in attempts")
+	public int getTrackedAddresses() {
+		return addresses.size();
+	}
+
+	@ManagedAttribute(description = "Sign in attempts throttled per email")
+	public long getThrottledEmails() {
+		return throttledEmails.sum();
+	}
+
+	@ManagedAttribute(description = "Sign in attempts throttled per client address")
+	public long getThrottledAddresses() {
+		return throttledAddresses.sum();
+	}
+}
@@ -0,0 +1,147 @@
+package io.authomator.api.throttle;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token buckets per key, eg: one per email address, in bounded memory.
+ *
+ * Every bucket holds up to capacity tokens and is refilled at a fixed rate, a request takes a token
+ * or is throttled until the next token. The buckets are spread over lock striped, access ordered
+ * maps: contention is limited to keys of the same stripe, and every stripe holds at most its share of
+ * maxKeys buckets, evicting the least recently used one. Buckets idle long enough to be full again
+ * are the same as no bucket and are evicted as the stripe is used, so memory follows the active keys.
+ */
+public final class TokenBuckets {
+
+	private static final class Bucket {
+		private double tokens;
+		private long updatedAt;
+
+		private Bucket(final double tokens, final long updatedAt) {
+			this.tokens = tokens;
+			this.updatedAt = updatedAt;
+		}
+	}
+
+	private final List<LinkedHashMap<String, Bucket>> stripes;
+
+	private final int mask;
+
+	private final double capacity;
+
+	/**
+	 * Tokens per nanosecond
+	 */
+	private final double rate;
+
+	/**
+	 * Nanoseconds to refill an empty bucket
+	 */
+	private final long refillNanos;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity - tokens of a full bucket, the allowed burst
+	 * @param perMinute - tokens added per minute
+	 * @param maxKeys - maximum number of buckets
+	 * @param stripes - number of locks, rounded up to a power of 2
+	 */
+	public TokenBuckets(final int capacity, final int perMinute, final int maxKeys, final int stripes) {
+		if (capacity < 1 || perMinute < 1 || maxKeys < 1 || stripes < 1) {
+			throw new IllegalArgumentException("The capacity, rate, keys and stripes of token buckets must be positive numbers");
+		}
+		final int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+		final int maxPerStripe = Math.max(1, maxKeys / size);
+		this.stripes = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			this.stripes.add(new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<String, Bucket> eldest) {
+					return size() > maxPerStripe;
+				}
+			});
+		}
+		this.mask = size - 1;
+		this.capacity = capacity;
+		this.rate = perMinute / 60e9;
+		this.refillNanos = (long) Math.ceil(capacity / rate);
+	}
+
+	/**
+	 * Take a token from the bucket of a key
+	 *
+	 * @param key
+	 * @param now - System.nanoTime()
+	 * @return long 0 when a token was taken, otherwise the nanoseconds until the next token
+	 */
+	public long tryAcquire(final String key, final long now) {
+		final LinkedHashMap<String, Bucket> stripe = stripe(key);
+		synchronized (stripe) {
+			evictIdle(stripe, now);
+			Bucket bucket = stripe.get(key);
+			if (bucket == null) {
+				bucket = new Bucket(capacity, now);
+				stripe.put(key, bucket);
+			} else {
+				bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedAt) * rate);
+				bucket.updatedAt = now;
+			}
+			if (bucket.tokens >= 1) {
+				bucket.tokens -= 1;
+				return 0;
+			}
+			return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / rate));
+		}
+	}
+
+	/**
+	 * Remove the least recently used buckets that had the time to refill completely
+	 */
+	private void evictIdle(final LinkedHashMap<String, Bucket> stripe, final long now) {
+		final Iterator<Bucket> buckets = stripe.values().iterator();
+		while (buckets.hasNext()) {
+			if (now - buckets.next().updatedAt < refillNanos) {
+				return;
+			}
+			buckets.remove();
+		}
+	}
+
+	private LinkedHashMap<String, Bucket> stripe(final String key) {
+		final int h = key.hashCode();
+		return stripes.get((h ^ (h >>> 16)) & mask);
+	}
+
+	/**
+	 * Number of buckets
+	 *
+	 * @return int
+	 */
+	public int size() {
+		int size = 0;
+		for (LinkedHashMap<String, Bucket> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Remove every bucket
+	 */
+	public void clear() {
+		for (LinkedHashMap<String, Bucket> stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+}
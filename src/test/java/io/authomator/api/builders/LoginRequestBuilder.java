@@ -1,9 +1,13 @@
 package io.authomator.api.builders;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.authomator.api.dto.LoginRequest;
+import io.authomator.api.dto.TokenType;
 
 public class LoginRequestBuilder {
 	
@@ -23,6 +27,11 @@ public class LoginRequestBuilder {
 		return this;
 	}
 	
+	public LoginRequestBuilder withTokens(TokenType... tokens){
+		request.setTokens(new HashSet<>(Arrays.asList(tokens)));
+		return this;
+	}
+	
 	public LoginRequest build(){
 		return request;
 	}
@@ -3,6 +3,7 @@ package io.authomator.api.controllers;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -38,6 +39,8 @@ import io.authomator.api.domain.entity.User;
 import io.authomator.api.domain.repository.UserRepository;
 import io.authomator.api.domain.service.ContextService;
 import io.authomator.api.domain.service.UserService;
+import io.authomator.api.dto.TokenType;
+import io.authomator.api.throttle.SignInThrottle;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
@@ -65,6 +68,9 @@ public class AuthenticationControllerTest {
 	@Autowired
 	private ContextService contextService;
 	
+	@Autowired
+	private SignInThrottle signInThrottle;
+	
 	@Value("${io.authomator.api.registration.allow:false}")
 	private boolean registrationStatus;
 	
@@ -97,6 +103,7 @@ public class AuthenticationControllerTest {
 	public void cleanup(){
     	userRepository.deleteAll();
 		ReflectionTestUtils.setField(userService, "registrationEnabled", registrationStatus);
+		signInThrottle.clear();
     }
     
     /*
@@ -129,6 +136,46 @@ public class AuthenticationControllerTest {
     		.andExpect(jsonPath("$.identityToken").exists());
     }
     
+    @Test
+    public void getAccount_returns_requested_tokens_only() throws Exception {
+    	    	
+    	String req = new LoginRequestBuilder()
+    			.withEmail(USER_EMAIL)
+    			.withPassword(USER_PASSWORD)
+    			.withTokens(TokenType.ACCESS)
+    			.buildAsJson();
+    	    	
+    	mockMvc
+    		.perform(
+				post("/sign-in")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(req)
+			)
+    		.andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_JSON))
+            .andExpect(jsonPath("$.accessToken").exists())
+            .andExpect(jsonPath("$.refreshToken").doesNotExist())
+    		.andExpect(jsonPath("$.identityToken").doesNotExist());
+    }
+    
+    @Test
+    public void getAccount_with_unknown_token_type() throws Exception {
+    	
+    	String req = "{\"email\":\"" + USER_EMAIL + "\",\"password\":\"" + USER_PASSWORD + "\",\"tokens\":[\"sessionToken\"]}";
+    	    	
+    	mockMvc
+    		.perform(
+				post("/sign-in")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(req)
+			)
+    		.andDo(print())
+            .andExpect(status().isBadRequest());
+    }
+    
     @Test
     public void getAccount_with_missing_context() throws Exception {
     	
@@ -215,6 +262,77 @@ public class AuthenticationControllerTest {
     }
     
     
+    @Test
+    public void getAccount_throttles_attempts_per_email() throws Exception {
+    	
+    	long throttled = signInThrottle.getThrottledEmails();
+    	
+    	// 10 attempts per email, whatever its case
+    	for (int i = 0; i < 10; i++) {
+	    	mockMvc
+	    		.perform(
+					post("/sign-in")
+					.accept(APPLICATION_JSON)
+					.contentType(APPLICATION_JSON)
+					.content(new LoginRequestBuilder().withEmail(i % 2 == 0 ? USER_EMAIL : USER_EMAIL.toUpperCase()).withPassword("wrongpassword").buildAsJson())
+				)
+	            .andExpect(status().isUnprocessableEntity());
+    	}
+    	
+    	mockMvc
+    		.perform(
+				post("/sign-in")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new LoginRequestBuilder().withEmail(USER_EMAIL).withPassword(USER_PASSWORD).buildAsJson())
+			)
+    		.andDo(print())
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", notNullValue()))
+            .andExpect(content().contentType(APPLICATION_JSON))
+            .andExpect(jsonPath("$.message").value("Too many sign in attempts, retry later"))
+            .andExpect(jsonPath("$.code").value("TooManyRequests"));
+    	
+    	assertEquals(throttled + 1, signInThrottle.getThrottledEmails());
+    }
+    
+    @Test
+    public void getAccount_throttles_attempts_per_address() throws Exception {
+    	
+    	long throttled = signInThrottle.getThrottledAddresses();
+    	
+    	// 100 attempts per address whatever the email, plus the few regained while the test runs
+    	int attempts = 0;
+    	int status;
+    	do {
+    		status = mockMvc
+	    		.perform(
+					post("/sign-in")
+					.with(request -> { request.setRemoteAddr("10.0.0.1"); return request; })
+					.accept(APPLICATION_JSON)
+					.contentType(APPLICATION_JSON)
+					.content(new LoginRequestBuilder().withEmail("unknown" + attempts + "@local.tld").withPassword(USER_PASSWORD).buildAsJson())
+				)
+	    		.andReturn().getResponse().getStatus();
+    		attempts++;
+    	} while (status == 422 && attempts < 200);
+    	
+    	assertEquals(429, status);
+    	assertTrue(attempts > 100);
+    	assertEquals(throttled + 1, signInThrottle.getThrottledAddresses());
+    	
+    	// Other addresses are not affected
+    	mockMvc
+    		.perform(
+				post("/sign-in")
+				.with(request -> { request.setRemoteAddr("10.0.0.2"); return request; })
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new LoginRequestBuilder().withEmail(USER_EMAIL).withPassword(USER_PASSWORD).buildAsJson())
+			)
+            .andExpect(status().isOk());
+    }
+    
     @Test
     public void getAccount_for_malformed_email_returns_unprocessable() throws Exception {
     	    	
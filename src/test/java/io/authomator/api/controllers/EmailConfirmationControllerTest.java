@@ -16,7 +16,6 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.util.HashMap;
 import java.util.Map;
 
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.lang.JoseException;
 import org.junit.After;
 import org.junit.Before;
@@ -129,10 +128,10 @@ public class EmailConfirmationControllerTest {
      */
     
     private Map<String,String> createSendConfirmRequest() throws JoseException{
-    	JsonWebSignature accessToken = jwtService.getAccessToken(user, ctx);
+    	String accessToken = jwtService.getAccessToken(user, ctx);
     	Map<String, String> req = new HashMap<>();
     	req.put("url", "https://authomator.io/confirm/email");
-    	req.put("accessToken", accessToken.getCompactSerialization());
+    	req.put("accessToken", accessToken);
     	return req;
     }
     
@@ -305,7 +304,7 @@ public class EmailConfirmationControllerTest {
     public void confirmEmail() throws JsonProcessingException, Exception{
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user).getCompactSerialization());
+    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user));
 
     	assertFalse(user.getEmailVerified());
     	
@@ -330,7 +329,7 @@ public class EmailConfirmationControllerTest {
     	ReflectionTestUtils.setField(userService, "verificationEmailEnabled", false);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user).getCompactSerialization());
+    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user));
 
     	assertFalse(user.getEmailVerified());
     	
@@ -356,7 +355,7 @@ public class EmailConfirmationControllerTest {
     public void confirmEmail_when_verification_is_already_done() throws JsonProcessingException, Exception{
     	    	
     	Map<String, String> req = new HashMap<>();
-    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user).getCompactSerialization());
+    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user));
     	
     	user.setEmailVerified(true);
     	user = userRepository.save(user);
@@ -379,7 +378,7 @@ public class EmailConfirmationControllerTest {
     public void confirmEmail_when_user_is_deleted() throws JsonProcessingException, Exception{
     	    	
     	Map<String, String> req = new HashMap<>();
-    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user).getCompactSerialization());
+    	req.put("confirmEmailToken", jwtService.getConfirmEmailToken(user));
     	
     	userRepository.delete(user);
     	
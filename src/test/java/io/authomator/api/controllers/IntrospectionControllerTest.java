@@ -0,0 +1,215 @@
+package io.authomator.api.controllers;
+
+import static io.authomator.api.TestUtil.APPLICATION_JSON;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.http.MediaType;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.builders.UserBuilder;
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.jwt.IntrospectionCache;
+import io.authomator.api.jwt.JwtService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class IntrospectionControllerTest {
+
+	@Autowired
+	private FilterChainProxy filterChainProxy;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@Autowired
+	private JwtService jwtService;
+
+	@Autowired
+	private IntrospectionCache introspectionCache;
+
+	private MockMvc mockMvc;
+
+	private User user;
+
+	private Context ctx;
+
+	@Before
+	public void setup() {
+		mockMvc = MockMvcBuilders
+				.webAppContextSetup(webApplicationContext)
+				.addFilter(filterChainProxy)
+				.build();
+
+		user = new UserBuilder()
+				.withId("someid")
+				.withEmail("test@local.tld")
+				.withRoles("USER", "ADMIN")
+				.build();
+		ctx = new Context();
+		ctx.setId("somectxid");
+	}
+
+	private ResultActions introspect(String token) throws Exception {
+		Map<String, String> req = new HashMap<>();
+		req.put("token", token);
+		return mockMvc
+			.perform(
+				post("/introspect")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new ObjectMapper().writeValueAsString(req))
+			)
+			.andDo(print());
+	}
+
+	@Test
+	public void active_token() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+
+		introspect(token)
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(APPLICATION_JSON))
+			.andExpect(jsonPath("$.active").value(true))
+			.andExpect(jsonPath("$.sub").value("someid"))
+			.andExpect(jsonPath("$.ctx").value("somectxid"))
+			.andExpect(jsonPath("$.roles[1]").value("ADMIN"))
+			.andExpect(jsonPath("$.ev").value(false))
+			.andExpect(jsonPath("$.jti").exists())
+			.andExpect(jsonPath("$.exp").exists());
+	}
+
+	@Test
+	public void active_token_form_encoded() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+
+		mockMvc
+			.perform(
+				post("/introspect")
+				.accept(APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED)
+				.param("token", token)
+			)
+			.andDo(print())
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.active").value(true))
+			.andExpect(jsonPath("$.sub").value("someid"));
+	}
+
+	@Test
+	public void repeated_introspection_is_served_from_the_cache() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+
+		introspect(token).andExpect(jsonPath("$.active").value(true));
+		long hits = introspectionCache.getHits();
+		long misses = introspectionCache.getMisses();
+
+		introspect(token).andExpect(jsonPath("$.active").value(true));
+		assertEquals(hits + 1, introspectionCache.getHits());
+		assertEquals(misses, introspectionCache.getMisses());
+	}
+
+	@Test
+	public void revoked_cached_token_is_not_active() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+		introspect(token).andExpect(jsonPath("$.active").value(true));
+
+		String jti = jwtService.validateAccessToken(token).getJwtId();
+		jwtService.getRevocationList().revoke(jti, System.currentTimeMillis() + 3600 * 1000L);
+
+		introspect(token)
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.active").value(false))
+			.andExpect(jsonPath("$.sub").doesNotExist());
+	}
+
+	@Test
+	public void invalid_token_is_not_active() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+
+		introspect(token.substring(0, token.length() - 2))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.active").value(false));
+
+		introspect(jwtService.getRefreshToken(user, ctx))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.active").value(false));
+	}
+
+	private ResultActions introspectBatch(List<String> tokens) throws Exception {
+		Map<String, List<String>> req = new HashMap<>();
+		req.put("tokens", tokens);
+		return mockMvc
+			.perform(
+				post("/introspect/batch")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new ObjectMapper().writeValueAsString(req))
+			)
+			.andDo(print());
+	}
+
+	@Test
+	public void batch_replies_in_token_order() throws Exception {
+		List<String> tokens = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Context c = new Context();
+			c.setId("ctx" + i);
+			tokens.add(i == 3 ? "some.invalid.token" : jwtService.getAccessToken(user, c));
+		}
+
+		ResultActions result = introspectBatch(tokens)
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(APPLICATION_JSON))
+			.andExpect(jsonPath("$.results", hasSize(10)))
+			.andExpect(jsonPath("$.results[3].active").value(false))
+			.andExpect(jsonPath("$.results[3].sub").doesNotExist());
+		for (int i = 0; i < 10; i++) {
+			if (i != 3) {
+				result
+					.andExpect(jsonPath("$.results[" + i + "].active").value(true))
+					.andExpect(jsonPath("$.results[" + i + "].sub").value("someid"))
+					.andExpect(jsonPath("$.results[" + i + "].ctx").value("ctx" + i));
+			}
+		}
+	}
+
+	@Test
+	public void batch_size_is_limited() throws Exception {
+		introspectBatch(Collections.nCopies(101, "some.invalid.token"))
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(jsonPath("$.fieldErrors[0].field").value("tokens"))
+			.andExpect(jsonPath("$.fieldErrors[0].code").value("Size"));
+
+		introspectBatch(Collections.emptyList())
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(jsonPath("$.fieldErrors[0].field").value("tokens"));
+	}
+}
@@ -0,0 +1,109 @@
+package io.authomator.api.controllers;
+
+import static io.authomator.api.TestUtil.APPLICATION_JSON;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.jwt.JwtService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class JwksControllerTest {
+
+	@Autowired
+	private FilterChainProxy filterChainProxy;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@Autowired
+	private JwtService jwtService;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setup() {
+		mockMvc = MockMvcBuilders
+				.webAppContextSetup(webApplicationContext)
+				.addFilter(filterChainProxy)
+				.build();
+	}
+
+	@Test
+	public void jwks_is_public_and_cacheable() throws Exception {
+		mockMvc
+			.perform(get("/.well-known/jwks.json"))
+			.andDo(print())
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(APPLICATION_JSON))
+			.andExpect(header().string("ETag", jwtService.getJwks().getEtag()))
+			.andExpect(header().string("Cache-Control", "max-age=3600, public"))
+			// The test configuration signs with a HMAC secret, which must never be published
+			.andExpect(jsonPath("$.keys", hasSize(0)));
+	}
+
+	@Test
+	public void jwks_not_modified_for_matching_etag() throws Exception {
+		mockMvc
+			.perform(get("/.well-known/jwks.json").header("If-None-Match", jwtService.getJwks().getEtag()))
+			.andDo(print())
+			.andExpect(status().isNotModified())
+			.andExpect(header().string("ETag", jwtService.getJwks().getEtag()))
+			.andExpect(content().string(""));
+	}
+
+	@Test
+	public void jwks_not_modified_for_etag_list() throws Exception {
+		mockMvc
+			.perform(get("/.well-known/jwks.json").header("If-None-Match", "\"stale\", W/" + jwtService.getJwks().getEtag()))
+			.andDo(print())
+			.andExpect(status().isNotModified())
+			.andExpect(content().string(""));
+	}
+
+	@Test
+	public void jwks_not_modified_for_any_etag() throws Exception {
+		mockMvc
+			.perform(get("/.well-known/jwks.json").header("If-None-Match", "*"))
+			.andDo(print())
+			.andExpect(status().isNotModified())
+			.andExpect(content().string(""));
+	}
+
+	@Test
+	public void jwks_for_stale_etag() throws Exception {
+		mockMvc
+			.perform(get("/.well-known/jwks.json").header("If-None-Match", "\"stale\""))
+			.andDo(print())
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.keys").isArray());
+	}
+
+	@Test
+	public void jwks_only_allows_get() throws Exception {
+		mockMvc
+			.perform(post("/.well-known/jwks.json"))
+			.andDo(print())
+			.andExpect(status().isForbidden());
+	}
+}
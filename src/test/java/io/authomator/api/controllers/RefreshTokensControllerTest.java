@@ -8,6 +8,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 import org.junit.After;
@@ -31,8 +32,10 @@ import io.authomator.api.builders.UserBuilder;
 import io.authomator.api.domain.entity.Context;
 import io.authomator.api.domain.entity.User;
 import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.MembershipRepository;
 import io.authomator.api.domain.repository.UserRepository;
 import io.authomator.api.domain.service.ContextService;
+import io.authomator.api.domain.service.UserService;
 import io.authomator.api.dto.TokenReply;
 import io.authomator.api.jwt.JwtService;
 
@@ -57,8 +60,14 @@ public class RefreshTokensControllerTest {
 	@Autowired
 	private ContextRepository contextRepository;
 	
+	@Autowired
+	private MembershipRepository membershipRepository;
+	
 	@Autowired
 	private ContextService contextService;
+	
+	@Autowired
+	private UserService userService;
 		
 	@Autowired
 	private JwtService jwtService;
@@ -94,6 +103,7 @@ public class RefreshTokensControllerTest {
     public void cleanup() {
     	userRepository.deleteAll();
     	contextRepository.deleteAll();
+    	membershipRepository.deleteAll();
     }
     
     @Test
@@ -119,6 +129,85 @@ public class RefreshTokensControllerTest {
     		.andExpect(jsonPath("$.identityToken").exists());
     }
     
+    @Test
+    public void refresh_with_requested_tokens_only() throws Exception {
+    	    	
+    	TokenReply tokens = jwtService.createTokensForUser(user, ctx);
+    	
+    	HashMap<String, Object> req = new HashMap<>();
+    	req.put("refreshToken", tokens.getRefreshToken());
+    	req.put("tokens", Arrays.asList("accessToken", "refreshToken"));
+    	
+    	mockMvc
+    		.perform(
+				post("/refresh-tokens")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new ObjectMapper().writeValueAsString(req))
+			)
+    		.andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_JSON))
+            .andExpect(jsonPath("$.accessToken").exists())
+            .andExpect(jsonPath("$.refreshToken").exists())
+    		.andExpect(jsonPath("$.identityToken").doesNotExist());
+    }
+    
+    @Test
+    public void refresh_with_unchanged_user_is_served_without_database() throws Exception {
+    	
+    	HashMap<String, String> req = new HashMap<>();
+    	req.put("refreshToken", jwtService.createTokensForUser(user, ctx).getRefreshToken());
+    	
+    	String reply = mockMvc
+    		.perform(
+				post("/refresh-tokens")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new ObjectMapper().writeValueAsString(req))
+			)
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    	
+    	// Served from the user, context and membership caches, the database is not read
+    	userRepository.deleteAll();
+    	contextRepository.deleteAll();
+    	membershipRepository.deleteAll();
+    	req.put("refreshToken", new ObjectMapper().readValue(reply, TokenReply.class).getRefreshToken());
+    	
+    	mockMvc
+    		.perform(
+				post("/refresh-tokens")
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new ObjectMapper().writeValueAsString(req))
+			)
+    		.andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.accessToken").exists());
+    }
+    
+    @Test
+    public void refresh_after_password_reset() throws Exception {
+    	
+    	TokenReply tokens = jwtService.createTokensForUser(user, ctx);
+    	userService.resetPassword(user.getId(), "someotherpassword");
+    	
+    	HashMap<String, String> req = new HashMap<>();
+    	req.put("refreshToken", tokens.getRefreshToken());
+    	
+    	expectGenericValidationError(
+			mockMvc
+        		.perform(
+    				post("/refresh-tokens")
+    				.accept(APPLICATION_JSON)
+    				.contentType(APPLICATION_JSON)
+    				.content(new ObjectMapper().writeValueAsString(req))
+    			)
+        		.andDo(print())
+		);
+    }
+    
     private void expectGenericValidationError(ResultActions act) throws Exception{
     	act
 	    	.andExpect(status().isUnprocessableEntity())
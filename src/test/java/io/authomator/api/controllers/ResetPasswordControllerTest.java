@@ -16,7 +16,6 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.util.HashMap;
 import java.util.Map;
 
-import org.jose4j.jws.JsonWebSignature;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -294,10 +293,10 @@ public class ResetPasswordControllerTest {
     	System.out.println(user.getPassword());
     	Assert.notNull(user);
     	
-    	JsonWebSignature token = jwtService.getForgotPasswordToken(user);
+    	String token = jwtService.getForgotPasswordToken(user);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("resetToken", token.getCompactSerialization());
+    	req.put("resetToken", token);
     	req.put("newPassword", "newpassword");
     	
     	mockMvc
@@ -326,10 +325,10 @@ public class ResetPasswordControllerTest {
     	System.out.println(user.getPassword());
     	Assert.notNull(user);
     	
-    	JsonWebSignature token = jwtService.getForgotPasswordToken(user);
+    	String token = jwtService.getForgotPasswordToken(user);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("resetToken", token.getCompactSerialization());    	
+    	req.put("resetToken", token);    	
     	
     	mockMvc
     		.perform(
@@ -357,10 +356,10 @@ public class ResetPasswordControllerTest {
     	System.out.println(user.getPassword());
     	Assert.notNull(user);
     	
-    	JsonWebSignature token = jwtService.getForgotPasswordToken(user);
+    	String token = jwtService.getForgotPasswordToken(user);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("resetToken", token.getCompactSerialization());
+    	req.put("resetToken", token);
     	req.put("newPassword", "12345");  // min(6)
     	
     	mockMvc
@@ -389,12 +388,12 @@ public class ResetPasswordControllerTest {
     	User user = userRepository.findByEmail(USER_EMAIL);
     	Assert.notNull(user);
     	
-    	JsonWebSignature token = jwtService.getForgotPasswordToken(user);
+    	String token = jwtService.getForgotPasswordToken(user);
     	
     	userRepository.deleteAll();
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("resetToken", token.getCompactSerialization());
+    	req.put("resetToken", token);
     	req.put("newPassword", "newpassword");
     	
     	mockMvc
@@ -424,10 +423,10 @@ public class ResetPasswordControllerTest {
     	user.getContexts().clear();
     	userRepository.save(user);
     	
-    	JsonWebSignature token = jwtService.getForgotPasswordToken(user);
+    	String token = jwtService.getForgotPasswordToken(user);
     	    	
     	Map<String, String> req = new HashMap<>();
-    	req.put("resetToken", token.getCompactSerialization());
+    	req.put("resetToken", token);
     	req.put("newPassword", "newpassword");
     	
     	mockMvc
@@ -450,12 +449,12 @@ public class ResetPasswordControllerTest {
     	User user = userRepository.findByEmail(USER_EMAIL);
     	Assert.notNull(user);
     	
-    	JsonWebSignature token = jwtService.getForgotPasswordToken(user);
+    	String token = jwtService.getForgotPasswordToken(user);
     	
     	userRepository.deleteAll();
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("resetToken", token.getCompactSerialization() + "defect");
+    	req.put("resetToken", token + "defect");
     	req.put("newPassword", "newpassword");
     	
     	mockMvc
@@ -0,0 +1,214 @@
+package io.authomator.api.controllers;
+
+import static io.authomator.api.TestUtil.APPLICATION_JSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.builders.UserBuilder;
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.RevokedToken;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.RevokedTokenRepository;
+import io.authomator.api.domain.repository.UserRepository;
+import io.authomator.api.domain.service.ContextService;
+import io.authomator.api.dto.TokenReply;
+import io.authomator.api.jwt.JwtService;
+import io.authomator.api.jwt.RevocationService;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class RevocationControllerTest {
+
+	private static final String USER_EMAIL = "test@local.tld";
+	private static final String USER_PASSWORD = "test@local.tld";
+
+	@Autowired
+	private FilterChainProxy filterChainProxy;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ContextRepository contextRepository;
+
+	@Autowired
+	private RevokedTokenRepository revokedTokenRepository;
+
+	@Autowired
+	private ContextService contextService;
+
+	@Autowired
+	private JwtService jwtService;
+
+	@Autowired
+	private RevocationService revocationService;
+
+	private MockMvc mockMvc;
+
+	private User user;
+
+	private Context ctx;
+
+	@Before
+	public void setup() {
+		mockMvc = MockMvcBuilders
+				.webAppContextSetup(webApplicationContext)
+				.addFilter(filterChainProxy)
+				.build();
+
+		userRepository.deleteAll();
+		revokedTokenRepository.deleteAll();
+		User u = new UserBuilder()
+				.withEmail(USER_EMAIL)
+				.withPassword(USER_PASSWORD)
+				.withRoles("USER")
+				.build();
+		user = userRepository.save(u);
+
+		ctx = contextService.createDefaultContext(user);
+		user.getContexts().add(ctx);
+		userRepository.save(user);
+	}
+
+	@After
+	public void cleanup() {
+		userRepository.deleteAll();
+		contextRepository.deleteAll();
+		revokedTokenRepository.deleteAll();
+	}
+
+	private ResultActions perform(String url, Map<String, String> req, boolean put) throws Exception {
+		return mockMvc
+			.perform(
+				(put ? put(url) : post(url))
+				.accept(APPLICATION_JSON)
+				.contentType(APPLICATION_JSON)
+				.content(new ObjectMapper().writeValueAsString(req))
+			)
+			.andDo(print());
+	}
+
+	private ResultActions revoke(String token) throws Exception {
+		Map<String, String> req = new HashMap<>();
+		req.put("token", token);
+		return perform("/revoke", req, false);
+	}
+
+	@Test
+	public void every_token_has_a_unique_jti() throws Exception {
+		TokenReply first = jwtService.createTokensForUser(user, ctx);
+		TokenReply second = jwtService.createTokensForUser(user, ctx);
+
+		String jti = jwtService.validateAccessToken(first.getAccessToken()).getJwtId();
+		assertEquals(22, jti.length());
+		assertNotEquals(jti, jwtService.validateAccessToken(second.getAccessToken()).getJwtId());
+		assertNotEquals(jti, jwtService.validateRefreshToken(first.getRefreshToken()).getJwtId());
+	}
+
+	@Test
+	public void revoked_refresh_token_can_not_refresh() throws Exception {
+		TokenReply tokens = jwtService.createTokensForUser(user, ctx);
+
+		revoke(tokens.getRefreshToken()).andExpect(status().isNoContent());
+
+		Map<String, String> req = new HashMap<>();
+		req.put("refreshToken", tokens.getRefreshToken());
+		perform("/refresh-tokens", req, false)
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(jsonPath("$.fieldErrors[0].field").value("refreshToken"));
+
+		// The access token of the same sign-in is untouched
+		jwtService.validateAccessToken(tokens.getAccessToken());
+	}
+
+	@Test
+	public void revoked_access_token_is_rejected() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+
+		revoke(token).andExpect(status().isNoContent());
+
+		Map<String, String> req = new HashMap<>();
+		req.put("accessToken", token);
+		req.put("oldPassword", USER_PASSWORD);
+		req.put("newPassword", "newPass");
+		perform("/password", req, true)
+			.andExpect(status().isUnprocessableEntity());
+
+		// Revoking twice is an invalid token
+		revoke(token)
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(jsonPath("$.fieldErrors[0].field").value("token"));
+	}
+
+	@Test
+	public void revocation_is_persisted_until_the_token_expires() throws Exception {
+		String token = jwtService.getAccessToken(user, ctx);
+		JwtClaims claims = jwtService.validateAccessToken(token);
+		revoke(token).andExpect(status().isNoContent());
+
+		RevokedToken revokedToken = revokedTokenRepository.findOne(claims.getJwtId());
+		assertNotNull(revokedToken);
+		assertTrue(revokedToken.getExpiresAt().getTime() > claims.getExpirationTime().getValueInMillis());
+	}
+
+	@Test
+	public void revocations_of_other_nodes_are_synced() throws Exception {
+		TokenReply tokens = jwtService.createTokensForUser(user, ctx);
+		String jti = jwtService.validateRefreshToken(tokens.getRefreshToken()).getJwtId();
+
+		// Revoked by another node
+		long now = System.currentTimeMillis();
+		revokedTokenRepository.save(new RevokedToken(jti, new Date(now + 3600 * 1000L), new Date(now)));
+		revocationService.scheduledSync();
+
+		try {
+			jwtService.validateRefreshToken(tokens.getRefreshToken());
+		} catch (InvalidJwtException e) {
+			assertTrue(e.getMessage().contains(jti));
+			return;
+		}
+		throw new AssertionError("Revoked refresh token validated");
+	}
+
+	@Test
+	public void invalid_token_can_not_be_revoked() throws Exception {
+		revoke("some.invalid.token")
+			.andExpect(status().isUnprocessableEntity())
+			.andExpect(jsonPath("$.fieldErrors[0].field").value("token"));
+	}
+}
@@ -11,7 +11,6 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.util.HashMap;
 import java.util.Map;
 
-import org.jose4j.jws.JsonWebSignature;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +32,7 @@ import io.authomator.api.builders.UserBuilder;
 import io.authomator.api.domain.entity.Context;
 import io.authomator.api.domain.entity.User;
 import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.MembershipRepository;
 import io.authomator.api.domain.repository.UserRepository;
 import io.authomator.api.domain.service.ContextService;
 import io.authomator.api.domain.service.UserService;
@@ -62,6 +62,9 @@ public class UpdatePasswordControllerTest {
 	@Autowired
 	private ContextRepository contextRepository;
 	
+	@Autowired
+	private MembershipRepository membershipRepository;
+	
 	@Autowired
 	private ContextService contextService;
 	
@@ -98,6 +101,7 @@ public class UpdatePasswordControllerTest {
 	public void cleanup(){
     	userRepository.deleteAll();
     	contextRepository.deleteAll();
+    	membershipRepository.deleteAll();
     }
     
     
@@ -106,10 +110,10 @@ public class UpdatePasswordControllerTest {
     	
     	final String newPassword = "newPass";
     	    	
-    	JsonWebSignature token = jwtService.getAccessToken(user, ctx);
+    	String token = jwtService.getAccessToken(user, ctx);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("accessToken", token.getCompactSerialization());
+    	req.put("accessToken", token);
     	req.put("oldPassword", USER_PASSWORD);
     	req.put("newPassword", newPassword);
     	
@@ -134,10 +138,10 @@ public class UpdatePasswordControllerTest {
     @Test
     public void testChangePasswordShouldReturnUnprocessableIfNewPasswordIsMissing() throws Throwable {
     	    	
-    	JsonWebSignature token = jwtService.getAccessToken(user, ctx);
+    	String token = jwtService.getAccessToken(user, ctx);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("accessToken", token.getCompactSerialization());
+    	req.put("accessToken", token);
     	req.put("oldPassword", USER_PASSWORD);
     	
     	mockMvc
@@ -168,10 +172,10 @@ public class UpdatePasswordControllerTest {
     @Test
     public void testChangePasswordShouldReturnUnprocessableIfNewPasswordIsTooShort() throws Throwable {
     	    	
-    	JsonWebSignature token = jwtService.getAccessToken(user, ctx);
+    	String token = jwtService.getAccessToken(user, ctx);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("accessToken", token.getCompactSerialization());
+    	req.put("accessToken", token);
     	req.put("oldPassword", USER_PASSWORD);
     	req.put("newPassword", "1");
     	
@@ -205,10 +209,10 @@ public class UpdatePasswordControllerTest {
     	
     	final String newPassword = "newPass";
     	
-    	JsonWebSignature token = jwtService.getAccessToken(user, ctx);
+    	String token = jwtService.getAccessToken(user, ctx);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("accessToken", token.getCompactSerialization());
+    	req.put("accessToken", token);
     	req.put("oldPassword", "incorrectcurrent");
     	req.put("newPassword", newPassword);
     	
@@ -241,10 +245,10 @@ public class UpdatePasswordControllerTest {
     	
     	final String newPassword = "newPass";
     	    	
-    	JsonWebSignature token = jwtService.getAccessToken(user, ctx);
+    	String token = jwtService.getAccessToken(user, ctx);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("accessToken", token.getCompactSerialization());
+    	req.put("accessToken", token);
     	req.put("oldPassword", USER_PASSWORD);
     	req.put("newPassword", newPassword);
     	
@@ -277,10 +281,10 @@ public class UpdatePasswordControllerTest {
     	
     	final String newPassword = "newPass";
     	    	
-    	JsonWebSignature token = jwtService.getAccessToken(user, ctx);
+    	String token = jwtService.getAccessToken(user, ctx);
     	
     	Map<String, String> req = new HashMap<>();
-    	req.put("accessToken", token.getCompactSerialization());
+    	req.put("accessToken", token);
     	req.put("oldPassword", USER_PASSWORD);
     	req.put("newPassword", newPassword);
     	
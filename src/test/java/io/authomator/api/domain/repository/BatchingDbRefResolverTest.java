@@ -0,0 +1,99 @@
+package io.authomator.api.domain.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class BatchingDbRefResolverTest {
+
+	@Autowired
+	private BatchingDbRefResolver dbRefResolver;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ContextRepository contextRepository;
+
+	@After
+	public void cleanup() {
+		userRepository.deleteAll();
+		contextRepository.deleteAll();
+	}
+
+	private User userWithContexts(final int contexts) {
+		User user = new User();
+		user.setEmail("sometest@domain.tld");
+		user.setPassword("somepassword");
+		userRepository.save(user);
+		for (int i = 0; i < contexts; i++) {
+			Context context = new Context();
+			context.setName("context" + i);
+			context.setOwner(user);
+			user.getContexts().add(contextRepository.save(context));
+		}
+		return userRepository.save(user);
+	}
+
+	/*
+	 * Without the batching, and with eager owners, this took 1 + 20 + 20 queries
+	 */
+	@Test
+	public void resolvesTheContextsOfAUserInOneQuery() {
+		User saved = userWithContexts(20);
+		long batchQueries = dbRefResolver.getBatchQueries();
+		long singleQueries = dbRefResolver.getSingleQueries();
+
+		User user = userRepository.findByEmail("sometest@domain.tld");
+
+		assertEquals(batchQueries + 1, dbRefResolver.getBatchQueries());
+		assertEquals(singleQueries, dbRefResolver.getSingleQueries());
+		assertEquals(
+			saved.getContexts().stream().map(Context::getId).collect(Collectors.toList()),
+			user.getContexts().stream().map(Context::getId).collect(Collectors.toList()));
+		assertEquals("context0", user.getContexts().iterator().next().getName());
+	}
+
+	@Test
+	public void resolvesOwnersWhenUsed() {
+		User saved = userWithContexts(2);
+		User user = userRepository.findOne(saved.getId());
+
+		Set<String> owners = new HashSet<>();
+		for (Context context : user.getContexts()) {
+			owners.add(context.getOwner().getEmail());
+		}
+		assertEquals(1, owners.size());
+		assertTrue(owners.contains("sometest@domain.tld"));
+	}
+
+	@Test
+	public void skipsMissingContexts() {
+		User saved = userWithContexts(3);
+		contextRepository.delete(saved.getContexts().iterator().next().getId());
+		long singleQueries = dbRefResolver.getSingleQueries();
+
+		User user = userRepository.findOne(saved.getId());
+
+		assertEquals(singleQueries, dbRefResolver.getSingleQueries());
+		assertEquals(2, user.getContexts().stream().filter(c -> c != null).count());
+	}
+}
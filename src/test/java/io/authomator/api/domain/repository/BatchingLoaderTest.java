@@ -0,0 +1,134 @@
+package io.authomator.api.domain.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.User;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class BatchingLoaderTest {
+
+	private static final int USERS = 50;
+
+	@Autowired
+	private UserLoader userLoader;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@After
+	public void cleanup() {
+		userRepository.deleteAll();
+	}
+
+	private User user(final int i) {
+		User user = new User();
+		user.setEmail("sometest" + i + "@domain.tld");
+		user.setPassword("somepassword");
+		return userRepository.save(user);
+	}
+
+	@Test
+	public void loadsAUser() {
+		User user = user(0);
+
+		assertEquals(user.getEmail(), userLoader.load(user.getId()).getEmail());
+		assertNull(userLoader.load("5f0000000000000000000000"));
+		assertNull(userLoader.load(null));
+	}
+
+	@Test
+	public void batchesConcurrentLookups() throws Exception {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			users.add(user(i));
+		}
+		long batches = userLoader.getBatches();
+
+		ExecutorService executor = Executors.newFixedThreadPool(USERS);
+		try {
+			CyclicBarrier barrier = new CyclicBarrier(USERS);
+			List<Future<User>> loaded = new ArrayList<>();
+			for (User user : users) {
+				loaded.add(executor.submit(() -> {
+					barrier.await();
+					return userLoader.load(user.getId());
+				}));
+			}
+			for (int i = 0; i < USERS; i++) {
+				assertEquals(users.get(i).getEmail(), loaded.get(i).get().getEmail());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(userLoader.getBatches() - batches < USERS / 2);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failsTheWaitingLookupsWhenTheQueryThrowsAnError() throws Exception {
+		CountDownLatch querying = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		UserRepository repository = mock(UserRepository.class);
+		when(repository.findAll(any(Iterable.class))).then(invocation -> {
+			querying.countDown();
+			release.await();
+			return new ArrayList<User>();
+		}).thenThrow(new AssertionError("query failed"));
+		BatchingLoader<User> loader = new UserLoader(repository, TimeUnit.SECONDS.toMicros(10), 2);
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			// keeps a batch querying, the next batch waits for a second lookup
+			Future<User> first = executor.submit(() -> loader.load("5f0000000000000000000001"));
+			assertTrue(querying.await(10, TimeUnit.SECONDS));
+			Future<User> leader = executor.submit(() -> loader.load("5f0000000000000000000002"));
+			while (loader.getLoads() < 2) {
+				Thread.sleep(1);
+			}
+			Future<User> follower = executor.submit(() -> loader.load("5f0000000000000000000003"));
+
+			for (Future<User> lookup : new Future[] { leader, follower }) {
+				try {
+					lookup.get(10, TimeUnit.SECONDS);
+					fail("The lookup should fail");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof AssertionError);
+				}
+			}
+			assertFalse(first.isDone());
+			release.countDown();
+			assertNull(first.get(10, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.UserRepository;
+import io.authomator.api.exception.MissingDefaultContextException;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class DefaultContextMigrationTest {
+
+	@Autowired
+	private DefaultContextMigration defaultContextMigration;
+
+	@Autowired
+	private ContextService contextService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ContextRepository contextRepository;
+
+	@After
+	public void cleanup() {
+		userRepository.deleteAll();
+		contextRepository.deleteAll();
+	}
+
+	/**
+	 * A user as stored before the defaultContextId, in its own context and another one
+	 */
+	private User legacyUser(final String email) {
+		User user = new User();
+		user.setEmail(email);
+		user.setPassword("somepassword");
+		userRepository.save(user);
+		user.getContexts().add(contextService.createContext(user, "other"));
+		Context ctx = contextService.createContext(user, email);
+		user.getContexts().add(ctx);
+		return userRepository.save(user);
+	}
+
+	@Test
+	public void setsTheContextNamedAfterTheEmail() throws MissingDefaultContextException {
+		User legacy = legacyUser("legacy@domain.tld");
+		assertNull(legacy.getDefaultContextId());
+		Context ctx = contextService.getDefaultContext(legacy);
+
+		assertEquals(1, defaultContextMigration.migrate());
+
+		User migrated = userRepository.findOne(legacy.getId());
+		assertEquals(ctx.getId(), migrated.getDefaultContextId());
+		// Migrated once
+		assertEquals(0, defaultContextMigration.migrate());
+	}
+
+	@Test
+	public void skipsUsersWithoutContextNamedAfterTheEmail() {
+		User user = new User();
+		user.setEmail("nocontext@domain.tld");
+		user.setPassword("somepassword");
+		userRepository.save(user);
+
+		assertEquals(0, defaultContextMigration.migrate());
+		assertNull(userRepository.findOne(user.getId()).getDefaultContextId());
+	}
+
+	@Test
+	public void defaultContextSurvivesAnEmailChange() throws MissingDefaultContextException {
+		User user = legacyUser("before@domain.tld");
+		defaultContextMigration.migrate();
+		user = userRepository.findOne(user.getId());
+		Context ctx = contextService.getDefaultContext(user);
+
+		user.setEmail("after@domain.tld");
+		userRepository.save(user);
+
+		assertEquals(ctx.getId(), contextService.getDefaultContext(userRepository.findOne(user.getId())).getId());
+	}
+}
@@ -0,0 +1,259 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.BasicDBObject;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.MembershipRepository;
+import io.authomator.api.domain.repository.UserRepository;
+
+/**
+ * Two nodes: the application context of the test and a second one, on the same database
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class InvalidationBusTest {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ContextRepository contextRepository;
+
+	@Autowired
+	private MembershipRepository membershipRepository;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${io.authomator.api.registration.allow:false}")
+	private boolean registrationStatus;
+
+	/**
+	 * The embedded MongoDB of the test, or the configured one
+	 */
+	@Value("${local.mongo.port:${spring.data.mongodb.port:27017}}")
+	private int mongoPort;
+
+	private ConfigurableApplicationContext otherNode;
+
+	@Before
+	public void startOtherNode() {
+		otherNode = new SpringApplicationBuilder(AuthomatorApiApplication.class).run(
+				"--server.port=0",
+				"--spring.jmx.enabled=false",
+				"--spring.data.mongodb.port=" + mongoPort,
+				"--spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration");
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+	}
+
+	@After
+	public void cleanup() {
+		otherNode.close();
+		ReflectionTestUtils.setField(userService, "registrationEnabled", registrationStatus);
+		userRepository.deleteAll();
+		contextRepository.deleteAll();
+		membershipRepository.deleteAll();
+	}
+
+	private static void awaitEviction(final UserCache cache, final String userId) throws InterruptedException {
+		for (int i = 0; i < 100 && cache.get(userId) != null; i++) {
+			Thread.sleep(50);
+		}
+	}
+
+	/**
+	 * Register a user, once the other node received the registration it can count invalidations
+	 */
+	private User register(final String email) throws Exception {
+		User user = userService.register(email, "yeahright");
+		KnownEmailFilter otherFilter = otherNode.getBean(KnownEmailFilter.class);
+		for (int i = 0; i < 100 && !otherFilter.mightExist(email); i++) {
+			Thread.sleep(50);
+		}
+		return user;
+	}
+
+	@Test
+	public void passwordResetEvictsTheUserOnTheOtherNode() throws Exception {
+		User user = register("sometest@domain.tld");
+		UserService otherUserService = otherNode.getBean(UserService.class);
+		InvalidationBus otherBus = otherNode.getBean(InvalidationBus.class);
+		UserCache otherUserCache = otherNode.getBean(UserCache.class);
+
+		otherUserService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		assertNotNull(otherUserCache.get(user.getId()));
+
+		long received = otherBus.getReceived();
+		User reset = userService.resetPassword(user.getId(), "anotherpassword");
+		awaitEviction(otherUserCache, user.getId());
+
+		assertNull(otherUserCache.get(user.getId()));
+		assertEquals(received + 1, otherBus.getReceived());
+		assertEquals(reset.getTokenVersion(), otherUserService.refresh(user.getId(), user.getDefaultContextId(), reset.getTokenVersion()).getTokenVersion());
+	}
+
+	@Test
+	public void passwordHashUpgradeEvictsTheUserOnTheOtherNode() throws Exception {
+		User user = register("sometest@domain.tld");
+		// A hash without prefix predates the prefixes and is rehashed on sign in
+		mongoTemplate.updateFirst(query(where("_id").is(user.getId())),
+				Update.update("password", BCrypt.hashpw("yeahright", BCrypt.gensalt(4))), User.class);
+		UserService otherUserService = otherNode.getBean(UserService.class);
+		UserCache otherUserCache = otherNode.getBean(UserCache.class);
+
+		otherUserService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		assertNotNull(otherUserCache.get(user.getId()));
+
+		userService.signIn("sometest@domain.tld", "yeahright");
+		awaitEviction(otherUserCache, user.getId());
+
+		assertNull(otherUserCache.get(user.getId()));
+		assertTrue(otherUserService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion()).getPassword().startsWith("{"));
+	}
+
+	@Test
+	public void receivesTheEventsOfNodesWithALaggingClock() throws Exception {
+		User user = register("sometest@domain.tld");
+		UserService otherUserService = otherNode.getBean(UserService.class);
+		UserCache otherUserCache = otherNode.getBean(UserCache.class);
+		otherUserService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		assertNotNull(otherUserCache.get(user.getId()));
+
+		// Published by a node a minute behind: its event ids are older than the events already read
+		mongoTemplate.getCollection(InvalidationBus.COLLECTION).insert(
+				new BasicDBObject("_id", new ObjectId(new Date(System.currentTimeMillis() - 60000)))
+						.append("node", new ObjectId().toHexString())
+						.append("type", "user")
+						.append("key", user.getId())
+						.append("at", System.currentTimeMillis()));
+		awaitEviction(otherUserCache, user.getId());
+
+		assertNull(otherUserCache.get(user.getId()));
+	}
+
+	@Test
+	public void savingAUserWithoutAContextEvictsTheMembershipOnTheOtherNode() throws Exception {
+		User user = register("sometest@domain.tld");
+		ContextService otherContextService = otherNode.getBean(ContextService.class);
+		MembershipCache otherMembershipCache = otherNode.getBean(MembershipCache.class);
+		assertTrue(otherContextService.hasContext(user, user.getDefaultContextId()));
+		assertTrue(otherMembershipCache.contains(user.getId(), user.getDefaultContextId()));
+
+		User saved = userRepository.findOne(user.getId());
+		saved.getContexts().clear();
+		userRepository.save(saved);
+		for (int i = 0; i < 100 && otherMembershipCache.contains(user.getId(), user.getDefaultContextId()); i++) {
+			Thread.sleep(50);
+		}
+
+		assertFalse(otherMembershipCache.contains(user.getId(), user.getDefaultContextId()));
+	}
+
+	@Test
+	public void registrationAddsTheEmailToTheFilterOfTheOtherNode() throws Exception {
+		KnownEmailFilter otherFilter = otherNode.getBean(KnownEmailFilter.class);
+		assertFalse(otherFilter.mightExist("sometest@domain.tld"));
+
+		userService.register("sometest@domain.tld", "yeahright");
+		for (int i = 0; i < 100 && !otherFilter.mightExist("sometest@domain.tld"); i++) {
+			Thread.sleep(50);
+		}
+
+		// Before the next sync of the other node
+		assertTrue(otherFilter.mightExist("sometest@domain.tld"));
+	}
+
+	@Test
+	public void clearsTheCachesWhenEventsWereLost() throws Exception {
+		User user = register("sometest@domain.tld");
+		UserService otherUserService = otherNode.getBean(UserService.class);
+		UserCache otherUserCache = otherNode.getBean(UserCache.class);
+		userService.resetPassword(user.getId(), "anotherpassword");
+		Thread.sleep(500);
+		otherUserService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion() + 1);
+		assertNotNull(otherUserCache.get(user.getId()));
+
+		// The last event read is gone, as when a capped collection wraps around
+		mongoTemplate.getCollection(InvalidationBus.COLLECTION).remove(new BasicDBObject());
+		awaitEviction(otherUserCache, user.getId());
+
+		assertNull(otherUserCache.get(user.getId()));
+	}
+
+	@Test
+	public void pruneDeletesTheExpiredEvents() throws Exception {
+		User user = register("sometest@domain.tld");
+		UserService otherUserService = otherNode.getBean(UserService.class);
+		UserCache otherUserCache = otherNode.getBean(UserCache.class);
+		InvalidationBus bus = otherNode.getBean(InvalidationBus.class);
+		mongoTemplate.getCollection(InvalidationBus.COLLECTION).insert(
+				new BasicDBObject("node", new ObjectId().toHexString())
+						.append("type", "user")
+						.append("key", new ObjectId().toHexString())
+						.append("at", System.currentTimeMillis() - 601 * 1000L));
+		long events = mongoTemplate.getCollection(InvalidationBus.COLLECTION).count();
+
+		bus.prune(System.currentTimeMillis());
+
+		assertEquals(events - 1, mongoTemplate.getCollection(InvalidationBus.COLLECTION).count());
+		// The other node goes on with the events published after the deletion
+		otherUserService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		assertNotNull(otherUserCache.get(user.getId()));
+		userService.resetPassword(user.getId(), "anotherpassword");
+		awaitEviction(otherUserCache, user.getId());
+
+		assertNull(otherUserCache.get(user.getId()));
+	}
+
+	@Test
+	public void ignoresItsOwnInvalidations() throws Exception {
+		User user = register("sometest@domain.tld");
+		InvalidationBus otherBus = otherNode.getBean(InvalidationBus.class);
+		long published = otherBus.getPublished();
+		long received = otherBus.getReceived();
+
+		otherBus.invalidateUser(user.getId());
+		userService.resetPassword(user.getId(), "anotherpassword");
+		for (int i = 0; i < 100 && otherBus.getReceived() == received; i++) {
+			Thread.sleep(50);
+		}
+		// Would have been received first
+		Thread.sleep(200);
+
+		assertEquals(published + 1, otherBus.getPublished());
+		assertEquals(received + 1, otherBus.getReceived());
+	}
+}
@@ -0,0 +1,117 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.UserRepository;
+import io.authomator.api.exception.UserNotFoundException;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class KnownEmailFilterTest {
+
+	@Autowired
+	private KnownEmailFilter knownEmailFilter;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@After
+	public void cleanup() {
+		userRepository.deleteAll();
+	}
+
+	private User saveUser(final String email) {
+		User user = new User();
+		user.setEmail(email);
+		user.setPassword("somepassword");
+		return userRepository.save(user);
+	}
+
+	@Test
+	public void addsSavedUsers() {
+		assertFalse(knownEmailFilter.mightExist("saved@domain.tld"));
+		saveUser("Saved@Domain.tld");
+		assertTrue(knownEmailFilter.mightExist("saved@domain.tld"));
+		assertTrue(knownEmailFilter.mightExist(" SAVED@domain.tld"));
+	}
+
+	@Test
+	public void answersUnknownEmailsWithoutLookup() throws Exception {
+		long certainMisses = knownEmailFilter.getCertainMisses();
+		try {
+			userService.forgotPassword("unknown@domain.tld");
+		} catch (UserNotFoundException e) {
+			assertEquals(certainMisses + 1, knownEmailFilter.getCertainMisses());
+			return;
+		}
+		throw new AssertionError("Expected UserNotFoundException");
+	}
+
+	@Test
+	public void answersEveryEmailWhileTheSyncFails() {
+		KnownEmailFilter filter = new KnownEmailFilter(mongoTemplate, true, 10, 0.01, 10000, "");
+		filter.load();
+		assertFalse(filter.mightExist("unknown@domain.tld"));
+
+		// Last synced longer ago than two intervals
+		filter.sync(System.currentTimeMillis() - 30000);
+		assertTrue(filter.mightExist("unknown@domain.tld"));
+
+		filter.sync(System.currentTimeMillis());
+		assertFalse(filter.mightExist("unknown@domain.tld"));
+	}
+
+	@Test
+	public void loadsFromTheSnapshotAndTheUsersCreatedSince() throws Exception {
+		Path dir = Files.createTempDirectory("emails");
+		Path snapshot = dir.resolve("emails.bin");
+		try {
+			saveUser("first@domain.tld");
+			KnownEmailFilter first = new KnownEmailFilter(mongoTemplate, true, 10, 0.01, 10000, snapshot.toString());
+			first.load();
+			assertTrue(Files.exists(snapshot));
+
+			// Created by another node, and removed from the collection: only the snapshot knows it
+			saveUser("second@domain.tld");
+			userRepository.delete(userRepository.findByEmail("first@domain.tld"));
+
+			KnownEmailFilter second = new KnownEmailFilter(mongoTemplate, true, 10, 0.01, 10000, snapshot.toString());
+			second.load();
+			assertTrue(second.mightExist("first@domain.tld"));
+			assertTrue(second.mightExist("second@domain.tld"));
+			assertFalse(second.mightExist("third@domain.tld"));
+
+			// A snapshot made with other settings is ignored
+			KnownEmailFilter third = new KnownEmailFilter(mongoTemplate, true, 20, 0.01, 10000, snapshot.toString());
+			third.load();
+			assertFalse(third.mightExist("first@domain.tld"));
+			assertTrue(third.mightExist("second@domain.tld"));
+		} finally {
+			Files.deleteIfExists(snapshot);
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import com.mongodb.BasicDBObject;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.Membership;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.MembershipRepository;
+import io.authomator.api.domain.repository.UserRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class MembershipMigrationTest {
+
+	@Autowired
+	private MembershipMigration membershipMigration;
+
+	@Autowired
+	private ContextService contextService;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ContextRepository contextRepository;
+
+	@Autowired
+	private MembershipRepository membershipRepository;
+
+	@After
+	public void cleanup() {
+		userRepository.deleteAll();
+		contextRepository.deleteAll();
+		membershipRepository.deleteAll();
+	}
+
+	/**
+	 * A context as stored before the memberships collection, with its members in a userRoles map
+	 */
+	private ObjectId legacyContext(final String... userIds) {
+		BasicDBObject userRoles = new BasicDBObject();
+		for (String userId : userIds) {
+			userRoles.append(userId, Arrays.asList("admin"));
+		}
+		ObjectId id = new ObjectId();
+		mongoTemplate.getCollection("contexts").insert(new BasicDBObject("_id", id).append("name", "legacy").append("userRoles", userRoles));
+		return id;
+	}
+
+	@Test
+	public void movesTheMembersToMemberships() {
+		String contextId = legacyContext("user1", "user2").toHexString();
+
+		assertEquals(1, membershipMigration.migrate());
+
+		Membership membership = membershipRepository.findByUserIdAndContextId("user1", contextId);
+		assertNotNull(membership);
+		assertTrue(membership.getRoles().contains("admin"));
+		assertNotNull(membershipRepository.findByUserIdAndContextId("user2", contextId));
+		assertFalse(mongoTemplate.getCollection("contexts").findOne().containsField("userRoles"));
+		// Migrated once
+		assertEquals(0, membershipMigration.migrate());
+		assertEquals(2, mongoTemplate.getCollection("memberships").count(new BasicDBObject("contextId", contextId)));
+	}
+
+	@Test
+	public void migratedMembersHaveTheirContext() {
+		User user = new User();
+		user.setEmail("legacy@domain.tld");
+		user.setPassword("somepassword");
+		userRepository.save(user);
+		String contextId = legacyContext(user.getId()).toHexString();
+
+		membershipMigration.migrate();
+
+		assertTrue(contextService.hasContext(userRepository.findOne(user.getId()), contextId));
+	}
+}
@@ -0,0 +1,96 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class NearCacheTest {
+
+	private static NearCache<String> cache(final int maxSize, final long ttl) {
+		return new NearCache<String>(maxSize, ttl) {};
+	}
+
+	@Test
+	public void loadsOnceAndCountsHits() {
+		NearCache<String> cache = cache(10, 60);
+		AtomicInteger loads = new AtomicInteger();
+
+		assertEquals("value-a", cache.get("a", id -> { loads.incrementAndGet(); return "value-" + id; }));
+		assertEquals("value-a", cache.get("a", id -> "other"));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void doesNotCacheUnknownIds() {
+		NearCache<String> cache = cache(10, 60);
+
+		assertNull(cache.get("a", id -> null));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void dropsTheLeastRecentlyUsed() {
+		NearCache<String> cache = cache(2, 60);
+		cache.get("a", id -> id);
+		cache.get("b", id -> id);
+		cache.get("a", id -> id);
+		cache.get("c", id -> id);
+
+		assertEquals(2, cache.getSize());
+		assertEquals("a", cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void evictForgetsTheEntity() {
+		NearCache<String> cache = cache(10, 60);
+		cache.get("a", id -> "old");
+		cache.evict("a");
+
+		assertEquals("new", cache.get("a", id -> "new"));
+	}
+
+	@Test
+	public void doesNotCacheALoadRacingAnEviction() {
+		NearCache<String> cache = cache(10, 60);
+
+		// The entity is written and evicted while it is being loaded
+		assertEquals("old", cache.get("a", id -> {
+			cache.evict(id);
+			return "old";
+		}));
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void doesNotCacheAMembershipRemovedDuringTheLookup() {
+		MembershipCache cache = new MembershipCache(10, 60);
+
+		// The membership is found, then removed and evicted before it is cached
+		assertTrue(cache.isMember("user", "context", (userId, contextId) -> {
+			cache.evict(userId, contextId);
+			return true;
+		}));
+		assertFalse(cache.contains("user", "context"));
+		assertFalse(cache.isMember("user", "context", (userId, contextId) -> false));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void disabledWithoutSizeOrTtl() {
+		NearCache<String> noSize = cache(0, 60);
+		NearCache<String> noTtl = cache(10, 0);
+		noSize.get("a", id -> id);
+		noTtl.get("a", id -> id);
+
+		assertEquals(0, noSize.getSize());
+		assertEquals(0, noTtl.getSize());
+	}
+}
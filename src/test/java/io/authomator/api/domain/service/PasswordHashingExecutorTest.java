@@ -0,0 +1,72 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.authomator.api.exception.PasswordHashingBusyException;
+import io.authomator.api.password.BCryptPasswordHasher;
+import io.authomator.api.password.PasswordHashers;
+
+public class PasswordHashingExecutorTest {
+
+	private static final PasswordHashers HASHERS = new PasswordHashers("bcrypt", new BCryptPasswordHasher(10));
+
+	@Test
+	public void hashesAndMatchesPasswords() throws PasswordHashingBusyException {
+		PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, 1, HASHERS);
+		try {
+			String hash = executor.hash("somepassword");
+			assertTrue(hash.startsWith("{bcrypt}$2a$10$"));
+			assertTrue(executor.matches("somepassword", hash));
+			assertFalse(executor.matches("otherpassword", hash));
+			assertFalse(executor.needsRehash(hash));
+			assertEquals(3, executor.getCompleted());
+			assertTrue(executor.getMeanHashingMillis() > 0);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void rejectsWhenSaturated() throws Exception {
+		PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, 3, HASHERS);
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			// One task on the pool thread, one in the queue
+			callers.submit(() -> executor.execute(() -> {
+				running.countDown();
+				return release.await(10, TimeUnit.SECONDS);
+			}));
+			assertTrue(running.await(10, TimeUnit.SECONDS));
+			callers.submit(() -> executor.execute(() -> true));
+			while (executor.getQueueDepth() < 1) {
+				Thread.sleep(1);
+			}
+
+			try {
+				executor.matches("somepassword", "$2a$10$invalid");
+				fail("Expected PasswordHashingBusyException");
+			} catch (PasswordHashingBusyException e) {
+				assertEquals(3, e.getRetryAfter());
+			}
+			assertEquals(1, executor.getRejected());
+		}
+		finally {
+			release.countDown();
+			callers.shutdown();
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package io.authomator.api.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ScalableBloomFilterTest {
+
+	@Test
+	public void neverReportsAddedValuesAbsent() {
+		ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.add("user" + i + "@domain.tld");
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("user" + i + "@domain.tld"));
+		}
+		// Grew past the first slice
+		assertTrue(filter.getSlices() > 1);
+	}
+
+	@Test
+	public void keepsTheFalsePositiveRate() {
+		ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+		for (int i = 0; i < 20000; i++) {
+			filter.add("user" + i + "@domain.tld");
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("other" + i + "@domain.tld")) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < 1000);
+	}
+
+	@Test
+	public void addReportsKnownValues() {
+		ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01);
+		assertTrue(filter.add("user@domain.tld"));
+		assertFalse(filter.add("user@domain.tld"));
+		assertEquals(1, filter.size());
+	}
+
+	@Test
+	public void roundTripsThroughAStream() throws IOException {
+		ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01);
+		for (int i = 0; i < 100; i++) {
+			filter.add("user" + i + "@domain.tld");
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		filter.writeTo(new DataOutputStream(bytes));
+
+		ScalableBloomFilter read = ScalableBloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 10, 0.01);
+		assertEquals(filter.size(), read.size());
+		assertEquals(filter.getSlices(), read.getSlices());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(read.mightContain("user" + i + "@domain.tld"));
+		}
+		assertTrue(read.add("new@domain.tld"));
+
+		// Made with other settings
+		assertNull(ScalableBloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 20, 0.01));
+	}
+}
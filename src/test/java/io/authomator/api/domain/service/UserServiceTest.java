@@ -4,29 +4,40 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.List;
 import java.util.Set;
 
+import org.bson.types.ObjectId;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.mongodb.BasicDBObject;
+
 import io.authomator.api.AuthomatorApiApplication;
 import io.authomator.api.domain.entity.Context;
 import io.authomator.api.domain.entity.User;
 import io.authomator.api.domain.repository.ContextRepository;
+import io.authomator.api.domain.repository.MembershipRepository;
 import io.authomator.api.domain.repository.UserRepository;
 import io.authomator.api.exception.InvalidContextException;
 import io.authomator.api.exception.InvalidCredentialsException;
+import io.authomator.api.exception.InvalidTokenVersionException;
 import io.authomator.api.exception.MissingDefaultContextException;
+import io.authomator.api.exception.PasswordHashingBusyException;
 import io.authomator.api.exception.RegistrationNotEnabledException;
 import io.authomator.api.exception.UserAlreadyExistsException;
+import io.authomator.api.exception.UserEmailConfirmedAlreadyException;
 import io.authomator.api.exception.UserNotFoundException;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -40,12 +51,24 @@ public class UserServiceTest {
 	@Autowired
 	private ContextRepository contextRepository;
 	
+	@Autowired
+	private MembershipRepository membershipRepository;
+	
+	@Autowired
+	private MembershipCache membershipCache;
+	
+	@Autowired
+	private UserCache userCache;
+	
 	@Autowired
 	private UserService userService;
 
 	@Autowired
 	private ContextService contextService;
 	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
 	@Value("${io.authomator.api.registration.allow:false}")
 	private boolean registrationStatus;
 	
@@ -59,6 +82,7 @@ public class UserServiceTest {
 		ReflectionTestUtils.setField(userService, "defaultRoles", defaultRoles);
 		userRepository.deleteAll();
 		contextRepository.deleteAll();
+		membershipRepository.deleteAll();
 	}
 	
 	//--------------------------------------------------------------------------
@@ -84,7 +108,7 @@ public class UserServiceTest {
 	//--------------------------------------------------------------------------
 	
 	@Test
-	public void signUpShouldSignupUsers() throws UserAlreadyExistsException, RegistrationNotEnabledException{
+	public void signUpShouldSignupUsers() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
 		User user = userService.register("sometest@domain.tld", "test");
 		assertNotNull(user);
@@ -92,7 +116,7 @@ public class UserServiceTest {
 	
 
 	@Test
-	public void signUpShouldSignupUsersAndAddDefaultGroups() throws UserAlreadyExistsException, RegistrationNotEnabledException{
+	public void signUpShouldSignupUsersAndAddDefaultGroups() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
 		ReflectionTestUtils.setField(userService, "defaultRoles", new String[]{"ADMIN", "TESTER"});		
 		User user = userService.register("sometest@domain.tld", "test");
@@ -103,14 +127,14 @@ public class UserServiceTest {
 
 	
 	@Test(expected=RegistrationNotEnabledException.class)
-	public void signUpShouldNotSignupUsersIfSignupIsDisabled() throws UserAlreadyExistsException, RegistrationNotEnabledException{
+	public void signUpShouldNotSignupUsersIfSignupIsDisabled() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", false);
 		userService.register("sometest@domain.tld", "test");
 	}
 	
 	
 	@Test(expected=UserAlreadyExistsException.class)
-	public void signUpShouldNotCreateDuplicateUsers() throws UserAlreadyExistsException, RegistrationNotEnabledException{
+	public void signUpShouldNotCreateDuplicateUsers() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
 		
 		User user = new User();
@@ -121,6 +145,35 @@ public class UserServiceTest {
 		userService.register("sometest@domain.tld", "someotherpass");		
 	}
 	
+	@Test(expected=UserAlreadyExistsException.class)
+	public void signUpShouldNotCreateDuplicateUsersUnknownToTheEmailFilter() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		
+		// Written by another node, bypassing the save events
+		mongoTemplate.getCollection("users").insert(new BasicDBObject("email", "othernode@domain.tld"));
+		
+		try {
+			userService.register("othernode@domain.tld", "someotherpass");
+		} finally {
+			assertEquals(1, mongoTemplate.getCollection("users").count(new BasicDBObject("email", "othernode@domain.tld")));
+			assertEquals(0, contextRepository.count());
+		}
+	}
+	
+	@Test
+	public void signUpShouldInsertTheUserAndItsContext() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException, MissingDefaultContextException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		
+		User registered = userService.register("sometest@domain.tld", "yeahright");
+		
+		User user = userRepository.findOne(registered.getId());
+		Context context = contextService.getDefaultContext(user);
+		assertEquals(registered.getContexts().iterator().next().getId(), context.getId());
+		assertEquals(context.getId(), user.getDefaultContextId());
+		assertEquals(user.getId(), context.getOwner().getId());
+		assertNotNull(membershipRepository.findByUserIdAndContextId(user.getId(), context.getId()));
+	}
+	
 	@Test
 	public void signUpShouldCreateContext() throws Exception {
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
@@ -140,7 +193,7 @@ public class UserServiceTest {
 	//--------------------------------------------------------------------------
 
 	@Test
-	public void loginShouldloginCorrectCredentials() throws UserNotFoundException, InvalidCredentialsException, UserAlreadyExistsException, RegistrationNotEnabledException{
+	public void loginShouldloginCorrectCredentials() throws UserNotFoundException, InvalidCredentialsException, UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
 		assertNotNull(
 			userService.register("sometest@domain.tld", "yeahright")
@@ -152,36 +205,277 @@ public class UserServiceTest {
 	}
 	
 	@Test(expected=UserNotFoundException.class)
-	public void loginThrowsUserNotFoundException() throws UserNotFoundException, InvalidCredentialsException{
+	public void loginThrowsUserNotFoundException() throws UserNotFoundException, InvalidCredentialsException, PasswordHashingBusyException{
 		userService.signIn("sometest@domain.tld", "test");
 	}
 
 	@Test(expected=InvalidCredentialsException.class)
-	public void loginThrowsInvalidCredentialsException() throws UserNotFoundException, InvalidCredentialsException, UserAlreadyExistsException, RegistrationNotEnabledException{
+	public void loginThrowsInvalidCredentialsException() throws UserNotFoundException, InvalidCredentialsException, UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
 		assertNotNull(
 				userService.register("sometest@domain.tld", "mypassword")
 			);
 		userService.signIn("sometest@domain.tld", "notmypassword");
 	}
+	
+	@Test
+	public void loginUpgradesOutdatedPasswordHash() throws UserNotFoundException, InvalidCredentialsException, PasswordHashingBusyException{
+		User user = new User();
+		user.setEmail("sometest@domain.tld");
+		// Hash without prefix and with a lower cost, as stored before the prefixes
+		user.setPasswordHash(BCrypt.hashpw("yeahright", BCrypt.gensalt(4)));
+		user = userRepository.save(user);
+		long tokenVersion = user.getTokenVersion();
+		
+		userService.signIn("sometest@domain.tld", "yeahright");
+		
+		User upgraded = userRepository.findOne(user.getId());
+		assertTrue(upgraded.getPassword().startsWith("{bcrypt}$2a$10$"));
+		assertEquals(tokenVersion, upgraded.getTokenVersion());
+		assertNotNull(userService.signIn("sometest@domain.tld", "yeahright"));
+	}
 
 	//--------------------------------------------------------------------------
 	//  .refresh()
 	//--------------------------------------------------------------------------
 	@Test
-	public void refreshReturnsAUser() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, MissingDefaultContextException{
+	public void refreshReturnsAUser() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, MissingDefaultContextException, InvalidTokenVersionException, PasswordHashingBusyException{
 		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
 		User user = userService.register("sometest@domain.tld", "yeahright");
 		assertNotNull(user);
-		User refreshedUser = userService.refresh(user.getId(), contextService.getDefaultContext(user).getId());
+		User refreshedUser = userService.refresh(user.getId(), contextService.getDefaultContext(user).getId(), user.getTokenVersion());
 		assertNotNull(refreshedUser);
 		assertEquals(user.getEmail(), refreshedUser.getEmail());
+		assertNotNull(userCache.get(user.getId()));
 	}
 	
 	@Test(expected=UserNotFoundException.class)
-	public void refreshThrowsUserNotFoundForUnknownUsers() throws UserNotFoundException, InvalidContextException{		
-		userService.refresh("nonexisting", "na");
+	public void refreshThrowsUserNotFoundForUnknownUsers() throws UserNotFoundException, InvalidContextException, InvalidTokenVersionException{		
+		userService.refresh("nonexisting", "na", 0);
+	}
+	
+	@Test(expected=InvalidTokenVersionException.class)
+	public void refreshThrowsInvalidTokenVersionAfterPasswordReset() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, MissingDefaultContextException, InvalidTokenVersionException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		long tokenVersion = user.getTokenVersion();
+		String contextId = contextService.getDefaultContext(user).getId();
+		userService.refresh(user.getId(), contextId, tokenVersion);
+		
+		User reset = userService.resetPassword(user.getId(), "anotherpassword");
+		assertTrue(reset.getTokenVersion() > tokenVersion);
+		assertEquals(null, userCache.get(user.getId()));
+		userService.refresh(user.getId(), contextId, tokenVersion);
+	}
+	
+	@Test
+	public void refreshChecksTheMembershipOnce() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, MissingDefaultContextException, InvalidTokenVersionException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		String contextId = contextService.getDefaultContext(user).getId();
+		membershipCache.evict(user.getId(), contextId);
+		
+		userService.refresh(user.getId(), contextId, user.getTokenVersion());
+		assertTrue(membershipCache.contains(user.getId(), contextId));
+	}
+	
+	//--------------------------------------------------------------------------
+	//  Context removal
+	//--------------------------------------------------------------------------
+	
+	@Test
+	public void savingAUserWithoutAContextRevokesTheMembership() throws UserAlreadyExistsException, RegistrationNotEnabledException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		String contextId = user.getDefaultContextId();
+		assertTrue(contextService.hasContext(user, contextId));
+		
+		User saved = userRepository.findOne(user.getId());
+		saved.getContexts().clear();
+		userRepository.save(saved);
+		
+		assertFalse(membershipCache.contains(user.getId(), contextId));
+		assertEquals(null, membershipRepository.findByUserIdAndContextId(user.getId(), contextId));
+		assertFalse(contextService.hasContext(saved, contextId));
+	}
+	
+	@Test(expected=InvalidContextException.class)
+	public void refreshThrowsInvalidContextForOtherContexts() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, InvalidTokenVersionException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		User other = userService.register("othertest@domain.tld", "yeahright");
+		
+		userService.refresh(user.getId(), other.getDefaultContextId(), user.getTokenVersion());
+	}
+	
+	@Test
+	public void refreshReadsTheUserThroughTheCache() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, InvalidTokenVersionException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		long misses = userCache.getMisses();
+		
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		assertEquals(misses, userCache.getMisses());
+		assertNotNull(userCache.get(user.getId()));
+	}
+	
+	@Test
+	public void passwordChangesEvictTheCachedUser() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, InvalidTokenVersionException, PasswordHashingBusyException, InvalidCredentialsException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		
+		User updated = userService.updatePassword(user.getId(), user.getDefaultContextId(), "yeahright", "newpassword");
+		assertEquals(null, userCache.get(user.getId()));
+		assertEquals(updated.getTokenVersion(), userService.refresh(user.getId(), user.getDefaultContextId(), updated.getTokenVersion()).getTokenVersion());
+		
+		userService.resetPassword(user.getId(), "anotherpassword");
+		assertEquals(null, userCache.get(user.getId()));
+	}
+	
+	@Test
+	public void refreshReloadsAUserChangedOnAnotherNode() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, InvalidTokenVersionException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		
+		// Written by another node, this node's cache is not evicted
+		mongoTemplate.getCollection("users").update(new BasicDBObject("_id", new ObjectId(user.getId())),
+				new BasicDBObject("$inc", new BasicDBObject("tokenVersion", 1)));
+		
+		assertEquals(user.getTokenVersion() + 1, userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion() + 1).getTokenVersion());
+	}
+	
+	@Test
+	public void refreshRejectsOutdatedTokensFromTheCache() throws UserAlreadyExistsException, RegistrationNotEnabledException, UserNotFoundException, InvalidContextException, InvalidTokenVersionException, PasswordHashingBusyException{
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		User reset = userService.resetPassword(user.getId(), "anotherpassword");
+		userService.refresh(user.getId(), user.getDefaultContextId(), reset.getTokenVersion());
+		long misses = userCache.getMisses();
+		
+		for (int i = 0; i < 3; i++) {
+			try {
+				userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+				fail("Outdated token version accepted");
+			} catch (InvalidTokenVersionException e) {
+				// expected
+			}
+		}
+		assertEquals(misses, userCache.getMisses());
+		assertNotNull(userCache.get(user.getId()));
+	}
+	
+	//--------------------------------------------------------------------------
+	//  Targeted updates
+	//--------------------------------------------------------------------------
+	
+	private BasicDBObject storedUser(final String userId) {
+		return (BasicDBObject) mongoTemplate.getCollection("users").findOne(new BasicDBObject("_id", new ObjectId(userId)));
+	}
+	
+	@Test
+	public void updatePasswordKeepsConcurrentChanges() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		
+		// Written by another node after this node cached the user
+		mongoTemplate.getCollection("users").update(new BasicDBObject("_id", new ObjectId(user.getId())),
+				new BasicDBObject("$set", new BasicDBObject("emailVerified", true)));
+		
+		userService.updatePassword(user.getId(), user.getDefaultContextId(), "yeahright", "newpassword");
+		assertTrue(storedUser(user.getId()).getBoolean("emailVerified"));
+	}
+	
+	@Test
+	public void updatePasswordRetriesOnAStaleCopy() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		
+		mongoTemplate.getCollection("users").update(new BasicDBObject("_id", new ObjectId(user.getId())),
+				new BasicDBObject("$inc", new BasicDBObject("tokenVersion", 1)));
+		
+		User updated = userService.updatePassword(user.getId(), user.getDefaultContextId(), "yeahright", "newpassword");
+		assertEquals(user.getTokenVersion() + 2, updated.getTokenVersion());
+		assertEquals(updated.getTokenVersion(), storedUser(user.getId()).getLong("tokenVersion"));
+		assertEquals(updated.getPassword(), storedUser(user.getId()).getString("password"));
+	}
+	
+	@Test(expected=InvalidCredentialsException.class)
+	public void updatePasswordChecksAPasswordChangedConcurrently() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.refresh(user.getId(), user.getDefaultContextId(), user.getTokenVersion());
+		
+		mongoTemplate.getCollection("users").update(new BasicDBObject("_id", new ObjectId(user.getId())),
+				new BasicDBObject("$set", new BasicDBObject("password", "{bcrypt}" + BCrypt.hashpw("changed", BCrypt.gensalt(4))))
+					.append("$inc", new BasicDBObject("tokenVersion", 1)));
+		
+		userService.updatePassword(user.getId(), user.getDefaultContextId(), "yeahright", "newpassword");
+	}
+	
+	@Test
+	public void resetPasswordOnlyWritesThePassword() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		
+		User reset = userService.resetPassword(user.getId(), "anotherpassword");
+		assertEquals(user.getTokenVersion() + 1, reset.getTokenVersion());
+		assertEquals(reset.getTokenVersion(), storedUser(user.getId()).getLong("tokenVersion"));
+		assertEquals(1, ((List<?>) storedUser(user.getId()).get("contexts")).size());
+		assertEquals(user.getDefaultContextId(), storedUser(user.getId()).getString("defaultContextId"));
+	}
+	
+	/**
+	 * Store the user as written before the token version was introduced
+	 * 
+	 * @param userId
+	 */
+	private void storeWithoutTokenVersion(final String userId) {
+		BasicDBObject stored = storedUser(userId);
+		stored.removeField("tokenVersion");
+		mongoTemplate.getCollection("users").remove(new BasicDBObject("_id", new ObjectId(userId)));
+		mongoTemplate.getCollection("users").insert(stored);
+		userCache.evict(userId);
+	}
+	
+	@Test
+	public void resetPasswordOfAUserWithoutATokenVersion() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		storeWithoutTokenVersion(user.getId());
+		
+		User reset = userService.resetPassword(user.getId(), "anotherpassword");
+		assertEquals(1, reset.getTokenVersion());
+		assertEquals(1, storedUser(user.getId()).getLong("tokenVersion"));
+		assertEquals(reset.getPassword(), storedUser(user.getId()).getString("password"));
+	}
+	
+	@Test
+	public void updatePasswordOfAUserWithoutATokenVersion() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		storeWithoutTokenVersion(user.getId());
+		
+		User updated = userService.updatePassword(user.getId(), user.getDefaultContextId(), "yeahright", "newpassword");
+		assertEquals(1, updated.getTokenVersion());
+		assertEquals(1, storedUser(user.getId()).getLong("tokenVersion"));
+		assertEquals(updated.getPassword(), storedUser(user.getId()).getString("password"));
+	}
+	
+	@Test(expected=UserEmailConfirmedAlreadyException.class)
+	public void confirmEmailOnceOnAStaleCopy() throws Exception {
+		ReflectionTestUtils.setField(userService, "registrationEnabled", true);
+		User user = userService.register("sometest@domain.tld", "yeahright");
+		userService.getUserForEmailConfirmation(user.getId());
+		
+		mongoTemplate.getCollection("users").update(new BasicDBObject("_id", new ObjectId(user.getId())),
+				new BasicDBObject("$set", new BasicDBObject("emailVerified", true)));
+		
+		userService.confirmEmail(user.getId());
 	}
-
 	
 }
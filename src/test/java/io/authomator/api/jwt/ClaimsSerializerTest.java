@@ -0,0 +1,118 @@
+package io.authomator.api.jwt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.junit.Test;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+public class ClaimsSerializerTest {
+
+	private static final String ISSUER = "issuer";
+	private static final List<String> AUDIENCE = Arrays.asList("audience", "audience2");
+	private static final long NOW = 1441713654L;
+	private static final String JTI = "Nq3rWbFmTn6sYqkP0QH1xA";
+
+	private final ClaimsSerializer serializer = new ClaimsSerializer(ISSUER, AUDIENCE, "#refresh", "#forgot", "#confirm-email", () -> JTI);
+
+	private User createTestUser(String email) {
+		User user = new User();
+		user.setId("someid");
+		user.setEmail(email);
+		user.setRoles("USER");
+		user.setRoles("ADMIN");
+		for (String id : new String[]{"ctx1", "ctx2", "ctx3"}) {
+			Context ctx = new Context();
+			ctx.setId(id);
+			user.getContexts().add(ctx);
+		}
+		return user;
+	}
+
+	private Context createTestContext() {
+		Context ctx = new Context();
+		ctx.setId("ctx1");
+		return ctx;
+	}
+
+	/**
+	 * Reference claims, built the way JwtService did with jose4j
+	 */
+	private JwtClaims registeredClaims(List<String> audience, int ttl) {
+		JwtClaims claims = new JwtClaims();
+		claims.setIssuer(ISSUER);
+		claims.setAudience(audience);
+		claims.setExpirationTime(NumericDate.fromSeconds(NOW + ttl * 60));
+		claims.setIssuedAt(NumericDate.fromSeconds(NOW));
+		claims.setNotBefore(NumericDate.fromSeconds(NOW - 60));
+		claims.setJwtId(JTI);
+		return claims;
+	}
+
+	private JwtClaims userClaims(User user, Context ctx, List<String> audience) {
+		JwtClaims claims = registeredClaims(audience, 60);
+		claims.setSubject(user.getId());
+		claims.setStringListClaim("roles", user.getRoles());
+		claims.setStringClaim("ctx", ctx.getId());
+		return claims;
+	}
+
+	@Test
+	public void accessClaimsAreIdenticalToJose4j() {
+		for (String email : new String[]{"testuser@mydomain.tld", "we\"ird\\/user\t\u0001 é@mydomain.tld"}) {
+			User user = createTestUser(email);
+			user.setEmailVerified(true);
+			JwtClaims claims = userClaims(user, createTestContext(), AUDIENCE);
+			claims.setClaim("ev", user.getEmailVerified());
+			assertEquals(claims.toJson(), serializer.accessClaims(user, createTestContext(), NOW, 60));
+		}
+	}
+
+	@Test
+	public void identityClaimsAreIdenticalToJose4j() {
+		for (String email : new String[]{"testuser@mydomain.tld", "we\"ird\\/user\t\u0001 é@mydomain.tld"}) {
+			User user = createTestUser(email);
+			JwtClaims claims = userClaims(user, createTestContext(), AUDIENCE);
+			claims.setClaim("email", user.getEmail());
+			claims.setClaim("emailVerified", user.getEmailVerified());
+			claims.setClaim("contexts", user.getContexts().stream().map(c -> c.getId()).collect(Collectors.toList()));
+			assertEquals(claims.toJson(), serializer.identityClaims(user, createTestContext(), NOW, 60));
+		}
+	}
+
+	@Test
+	public void singleAudienceIsRenderedAsString() {
+		ClaimsSerializer single = new ClaimsSerializer(ISSUER, Collections.singletonList("audience"), "#refresh", "#forgot", "#confirm-email", () -> JTI);
+		User user = createTestUser("testuser@mydomain.tld");
+		JwtClaims claims = userClaims(user, createTestContext(), Collections.singletonList("audience"));
+		claims.setClaim("ev", user.getEmailVerified());
+		assertEquals(claims.toJson(), single.accessClaims(user, createTestContext(), NOW, 60));
+	}
+
+	@Test
+	public void internalClaimsAreIdenticalToJose4j() {
+		User user = createTestUser("testuser@mydomain.tld");
+
+		JwtClaims refresh = registeredClaims(Collections.singletonList(ISSUER + "#refresh"), 120);
+		refresh.setSubject(user.getId());
+		refresh.setStringClaim("ctx", "ctx1");
+		refresh.setClaim("ver", user.getTokenVersion());
+		assertEquals(refresh.toJson(), serializer.refreshClaims(user, createTestContext(), NOW, 120));
+
+		JwtClaims forgot = registeredClaims(Collections.singletonList(ISSUER + "#forgot"), 60);
+		forgot.setSubject(user.getId());
+		assertEquals(forgot.toJson(), serializer.forgotClaims(user, NOW, 60));
+
+		JwtClaims confirm = registeredClaims(Collections.singletonList(ISSUER + "#confirm-email"), 120);
+		confirm.setSubject(user.getId());
+		assertEquals(confirm.toJson(), serializer.confirmEmailClaims(user, NOW, 120));
+	}
+}
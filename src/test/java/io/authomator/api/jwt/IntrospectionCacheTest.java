@@ -0,0 +1,57 @@
+package io.authomator.api.jwt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import io.authomator.api.dto.IntrospectionReply;
+
+public class IntrospectionCacheTest {
+
+	private static final long NOW = 1441713654000L;
+
+	private IntrospectionReply reply(long exp) {
+		IntrospectionReply reply = new IntrospectionReply();
+		reply.setActive(true);
+		reply.setExp(exp / 1000L);
+		return reply;
+	}
+
+	@Test
+	public void entriesExpireWithTheToken() {
+		IntrospectionCache cache = new IntrospectionCache(10);
+		IntrospectionReply reply = reply(NOW + 60000L);
+		cache.put("token", reply);
+
+		assertSame(reply, cache.get("token", NOW));
+		assertNull(cache.get("other", NOW));
+		assertNull(cache.get("token", NOW + 60000L));
+		assertEquals(0, cache.getSize());
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() {
+		IntrospectionCache cache = new IntrospectionCache(2);
+		cache.put("a", reply(NOW + 60000L));
+		cache.put("b", reply(NOW + 60000L));
+		cache.get("a", NOW);
+		cache.put("c", reply(NOW + 60000L));
+
+		assertEquals(2, cache.getSize());
+		assertNull(cache.get("b", NOW));
+		assertEquals(true, cache.get("a", NOW).isActive());
+		assertEquals(true, cache.get("c", NOW).isActive());
+	}
+
+	@Test
+	public void disabledCacheIsAlwaysAMiss() {
+		IntrospectionCache cache = new IntrospectionCache(0);
+		cache.put("token", reply(NOW + 60000L));
+		assertNull(cache.get("token", NOW));
+		assertEquals(1, cache.getMisses());
+	}
+}
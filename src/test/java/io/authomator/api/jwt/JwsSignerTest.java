@@ -0,0 +1,137 @@
+package io.authomator.api.jwt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
+import org.junit.Test;
+
+public class JwsSignerTest {
+
+	private static final byte[] SECRET = "lkjdmqlkjfdsmlkjfdsqmlkjfdqsmlkfjdqsmflkdsjflqkjfdlkfjqdsmlkfjdqsmlkfjdsqmflkjdsq".getBytes();
+
+	private String payload() {
+		JwtClaims claims = new JwtClaims();
+		claims.setIssuer("issuer");
+		claims.setAudience("audience", "audience2");
+		claims.setExpirationTimeMinutesInTheFuture(10);
+		claims.setIssuedAtToNow();
+		claims.setSubject("someid");
+		claims.setStringListClaim("roles", "USER", "ADMIN");
+		claims.setStringClaim("ctx", "somectxid");
+		return claims.toJson();
+	}
+
+	private String signWithJose4j(String alg, String payload) throws JoseException {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(payload);
+		jws.setKey(new HmacKey(SECRET));
+		jws.setAlgorithmHeaderValue(alg);
+		jws.setKeyIdHeaderValue("0");
+		return jws.getCompactSerialization();
+	}
+
+	@Test
+	public void signIsIdenticalToJose4j() throws JoseException {
+		String payload = payload();
+		for (String alg : new String[]{AlgorithmIdentifiers.HMAC_SHA256, AlgorithmIdentifiers.HMAC_SHA384, AlgorithmIdentifiers.HMAC_SHA512}) {
+			JwsSigner signer = new JwsSigner(alg, "0", SECRET);
+			assertEquals(alg, signWithJose4j(alg, payload), signer.sign(payload));
+		}
+	}
+
+	@Test
+	public void signIsThreadSafe() throws Exception {
+		final String payload = payload();
+		final String expected = signWithJose4j(AlgorithmIdentifiers.HMAC_SHA512, payload);
+		final JwsSigner signer = new JwsSigner(AlgorithmIdentifiers.HMAC_SHA512, "0", SECRET);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				results.add(pool.submit(() -> signer.sign(payload)));
+			}
+			for (Future<String> result : results) {
+				assertEquals(expected, result.get());
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private void assertVerifies(String alg, KeyPair keyPair) throws Exception {
+		String payload = payload();
+		JwsSigner signer = new JwsSigner(alg, "0", keyPair.getPrivate());
+
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setCompactSerialization(signer.sign(payload));
+		jws.setKey(keyPair.getPublic());
+		assertEquals(alg, jws.getAlgorithmHeaderValue());
+		assertEquals("0", jws.getKeyIdHeaderValue());
+		assertEquals(payload, jws.getPayload());
+		assertTrue(alg, jws.verifySignature());
+	}
+
+	@Test
+	public void signRsaVerifiesWithJose4j() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		KeyPair keyPair = generator.generateKeyPair();
+		for (String alg : new String[]{AlgorithmIdentifiers.RSA_USING_SHA256, AlgorithmIdentifiers.RSA_USING_SHA384, AlgorithmIdentifiers.RSA_USING_SHA512}) {
+			assertVerifies(alg, keyPair);
+		}
+	}
+
+	@Test
+	public void signEcdsaVerifiesWithJose4j() throws Exception {
+		String[][] curves = new String[][]{
+			{AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256, "secp256r1"},
+			{AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384, "secp384r1"},
+			{AlgorithmIdentifiers.ECDSA_USING_P521_CURVE_AND_SHA512, "secp521r1"}
+		};
+		for (String[] curve : curves) {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+			generator.initialize(new ECGenParameterSpec(curve[1]));
+			assertVerifies(curve[0], generator.generateKeyPair());
+		}
+	}
+
+	@Test(expected = JoseException.class)
+	public void rejectsShortRsaKeys() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(1024);
+		new JwsSigner(AlgorithmIdentifiers.RSA_USING_SHA256, "0", generator.generateKeyPair().getPrivate());
+	}
+
+	@Test(expected = JoseException.class)
+	public void rejectsKeyNotMatchingAlgorithm() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		new JwsSigner(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256, "0", generator.generateKeyPair().getPrivate());
+	}
+
+	@Test(expected = JoseException.class)
+	public void rejectsShortKeys() throws JoseException {
+		new JwsSigner(AlgorithmIdentifiers.HMAC_SHA512, "0", new byte[32]);
+	}
+
+	@Test(expected = JoseException.class)
+	public void rejectsNone() throws JoseException {
+		new JwsSigner(AlgorithmIdentifiers.NONE, "0", SECRET);
+	}
+}
@@ -0,0 +1,132 @@
+package io.authomator.api.jwt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.List;
+
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.keys.HmacKey;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.User;
+
+public class JwtServiceAsymmetricTest {
+
+	private static final String SECRET = "lkjdmqlkjfdsmlkjfdsqmlkjfdqsmlkfjdqsmflkdsjflqkjfdlkfjqdsmlkfjdqsmlkfjdsqmflkjdsq";
+	private static final String INTERNAL_SECRET = "flmkjfdsmlkjdsflkjfdslkjfsdlmkjfdslkjdfsqlkmkljqdflmkjdsqmflkjsdqfmlkjsqdfldsqkjf";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private User user() {
+		User user = new User();
+		user.setId("5575e89dd9ebb6c28fa5b358");
+		user.setEmail("testuser@mydomain.tld");
+		user.setRoles("USER");
+		return user;
+	}
+
+	private Context context() {
+		Context ctx = new Context();
+		ctx.setId("5575e89dd9ebb6c28fa50000");
+		return ctx;
+	}
+
+	private JwtService createJwtService(String alg, KeyPair keyPair) throws Exception {
+		File privateKey = folder.newFile();
+		File publicKey = folder.newFile();
+		Files.write(privateKey.toPath(), PemKeys.toPem("PRIVATE KEY", keyPair.getPrivate().getEncoded()).getBytes(StandardCharsets.US_ASCII));
+		Files.write(publicKey.toPath(), PemKeys.toPem("PUBLIC KEY", keyPair.getPublic().getEncoded()).getBytes(StandardCharsets.US_ASCII));
+		return new JwtService(SECRET, INTERNAL_SECRET, alg, 60, 120, 60, "issuer", new String[]{"audience"},
+				privateKey.getAbsolutePath(), publicKey.getAbsolutePath());
+	}
+
+	private KeyPair rsaKeyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		return generator.generateKeyPair();
+	}
+
+	private KeyPair ecKeyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		return generator.generateKeyPair();
+	}
+
+	private void assertTokensVerifyWithJwks(JwtService jwtService, String alg) throws Exception {
+		String accessToken = jwtService.getAccessToken(user(), context());
+		JwtClaims claims = jwtService.validateAccessToken(accessToken);
+		assertEquals("5575e89dd9ebb6c28fa5b358", claims.getSubject());
+
+		// A resource server only needs the published key set
+		List<JsonWebKey> keys = new JsonWebKeySet(jwtService.getJwks().getJson()).getJsonWebKeys();
+		assertEquals(1, keys.size());
+		assertEquals("0", keys.get(0).getKeyId());
+		assertEquals(alg, keys.get(0).getAlgorithm());
+		assertFalse("Private key material must not be published", jwtService.getJwks().getJson().contains("\"d\""));
+
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setCompactSerialization(jwtService.getIdentityToken(user(), context()));
+		jws.setKey(((PublicJsonWebKey) keys.get(0)).getPublicKey());
+		assertTrue(jws.verifySignature());
+
+		// Internal tokens keep using the internal secret
+		jwtService.validateRefreshToken(jwtService.getRefreshToken(user(), context()));
+	}
+
+	@Test
+	public void rs256() throws Exception {
+		assertTokensVerifyWithJwks(createJwtService("RSA_USING_SHA256", rsaKeyPair()), "RS256");
+	}
+
+	@Test
+	public void es256() throws Exception {
+		assertTokensVerifyWithJwks(createJwtService("ECDSA_USING_P256_CURVE_AND_SHA256", ecKeyPair()), "ES256");
+	}
+
+	@Test(expected = InvalidJwtException.class)
+	public void rejectsHmacTokenSignedWithThePublicKey() throws Exception {
+		KeyPair keyPair = rsaKeyPair();
+		JwtService jwtService = createJwtService("RSA_USING_SHA256", keyPair);
+
+		JwtClaims claims = new JwtClaims();
+		claims.setIssuer("issuer");
+		claims.setExpirationTimeMinutesInTheFuture(10);
+		claims.setSubject("someone");
+		claims.setStringClaim("ctx", "somectx");
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(claims.toJson());
+		jws.setAlgorithmHeaderValue("HS256");
+		jws.setKey(new HmacKey(keyPair.getPublic().getEncoded()));
+		jws.setDoKeyValidation(false);
+
+		jwtService.validateAccessToken(jws.getCompactSerialization());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void requiresKeysForAsymmetricAlgorithms() {
+		new JwtService(SECRET, INTERNAL_SECRET, "RSA_USING_SHA256", 60, 120, 60, "issuer", new String[]{"audience"});
+	}
+
+	@Test
+	public void hmacPublishesEmptyKeySet() throws Exception {
+		JwtService jwtService = new JwtService(SECRET, INTERNAL_SECRET, "HMAC_SHA512", 60, 120, 60, "issuer", new String[]{"audience"});
+		assertEquals(0, new JsonWebKeySet(jwtService.getJwks().getJson()).getJsonWebKeys().size());
+	}
+}
@@ -3,6 +3,7 @@ package io.authomator.api.jwt;
 import static org.junit.Assert.*;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 
 import org.jose4j.jwa.AlgorithmConstraints;
 import org.jose4j.jws.JsonWebSignature;
@@ -29,6 +30,7 @@ import io.authomator.api.AuthomatorApiApplication;
 import io.authomator.api.domain.entity.Context;
 import io.authomator.api.domain.entity.User;
 import io.authomator.api.dto.TokenReply;
+import io.authomator.api.dto.TokenType;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
@@ -140,13 +142,15 @@ public class JwtServiceTest {
 	
 	
 	@Test
-	public void getUserClaims() throws MalformedClaimException {
+	public void getUserClaims() throws MalformedClaimException, InvalidJwtException {
 		User user = createTestUser();
 		Context ctx = createTestContext(user);
 		
-		Object claimsmaybe = ReflectionTestUtils.invokeMethod(jwtService, "getUserClaims", user, ctx);
-		Assert.isInstanceOf(JwtClaims.class, claimsmaybe);
-		JwtClaims claims = (JwtClaims) claimsmaybe;
+		Object serializer = ReflectionTestUtils.getField(jwtService, "claimsSerializer");
+		Assert.isInstanceOf(ClaimsSerializer.class, serializer);
+		JwtClaims claims = JwtClaims.parse(
+			((ClaimsSerializer) serializer).accessClaims(user, ctx, NumericDate.now().getValue(), defaultTtl)
+		);
 		
 		assertEquals("someid", claims.getSubject());
 		assertTrue(
@@ -185,7 +189,7 @@ public class JwtServiceTest {
 		User user = createTestUser();
 		Context ctx = createTestContext(user);
 		user.setEmailVerified(true);
-		String jwt = jwtService.getAccessToken(user, ctx).getCompactSerialization();
+		String jwt = jwtService.getAccessToken(user, ctx);
 		testUserToken(jwt);
 		JwtClaims accessClaims = testUserToken(jwt);
 		assertNull(accessClaims.getClaimValue("email"));
@@ -197,7 +201,7 @@ public class JwtServiceTest {
 	public void getIdentityToken() throws JoseException, InvalidJwtException, MalformedClaimException {
 		User user = createTestUser();
 		Context ctx = createTestContext(user);
-		String jwt = jwtService.getIdentityToken(user, ctx).getCompactSerialization();		
+		String jwt = jwtService.getIdentityToken(user, ctx);		
 		JwtClaims idClaims = testUserToken(jwt);
 		assertEquals(user.getEmail(), idClaims.getClaimValue("email"));
 		assertFalse((boolean)idClaims.getClaimValue("emailVerified"));
@@ -208,7 +212,7 @@ public class JwtServiceTest {
 	public void getRefreshToken() throws JoseException, InvalidJwtException, MalformedClaimException {
 		User user = createTestUser();
 		Context ctx = createTestContext(user);
-		String jwt = jwtService.getRefreshToken(user, ctx).getCompactSerialization();		
+		String jwt = jwtService.getRefreshToken(user, ctx);		
 		JwtConsumerBuilder cb = new JwtConsumerBuilder();
 		cb.setVerificationKey(new HmacKey(defaultInternalSecret.getBytes()));
 		cb.setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE);
@@ -227,7 +231,7 @@ public class JwtServiceTest {
 	@Test
 	public void getConfirmEmailToken() throws JoseException, InvalidJwtException, MalformedClaimException {
 		User user = createTestUser();
-		String jwt = jwtService.getConfirmEmailToken(user).getCompactSerialization();		
+		String jwt = jwtService.getConfirmEmailToken(user);		
 		JwtConsumerBuilder cb = new JwtConsumerBuilder();
 		cb.setVerificationKey(new HmacKey(defaultInternalSecret.getBytes()));
 		cb.setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE);
@@ -246,7 +250,7 @@ public class JwtServiceTest {
 	@Test
 	public void getForgotPasswordToken() throws JoseException, InvalidJwtException, MalformedClaimException {
 		User user = createTestUser();
-		String jwt = jwtService.getForgotPasswordToken(user).getCompactSerialization();		
+		String jwt = jwtService.getForgotPasswordToken(user);		
 		JwtConsumerBuilder cb = new JwtConsumerBuilder();
 		cb.setVerificationKey(new HmacKey(defaultInternalSecret.getBytes()));
 		cb.setJwsAlgorithmConstraints(AlgorithmConstraints.DISALLOW_NONE);
@@ -277,6 +281,47 @@ public class JwtServiceTest {
 		jwtService.validateAccessToken(tr.getAccessToken());
 	}
 	
+	@Test
+	public void createRequestedTokensForUser() throws JoseException, InvalidJwtException {
+		User user = createTestUser();
+		Context ctx = createTestContext(user);
+		TokenReply tr = jwtService.createTokensForUser(user, ctx, EnumSet.of(TokenType.IDENTITY, TokenType.REFRESH));
+		assertNull(tr.getAccessToken());
+		assertNotNull(tr.getIdentityToken());
+		assertNotNull(tr.getRefreshToken());
+		
+		tr = jwtService.createTokensForUser(user, ctx, EnumSet.noneOf(TokenType.class));
+		assertNotNull(tr.getAccessToken());
+		assertNotNull(tr.getIdentityToken());
+		assertNotNull(tr.getRefreshToken());
+	}
+	
+	@Test
+	public void createTokensForUserInParallel() throws JoseException, InvalidJwtException {
+		User user = createTestUser();
+		Context ctx = createTestContext(user);
+		TokenMintingExecutor executor = new TokenMintingExecutor(2);
+		try {
+			jwtService.setMintingExecutor(executor);
+			TokenReply tr = jwtService.createTokensForUser(user, ctx);
+			assertNotNull(tr.getAccessToken());
+			assertNotNull(tr.getIdentityToken());
+			assertNotNull(tr.getRefreshToken());
+			jwtService.validateRefreshToken(tr.getRefreshToken());
+			jwtService.validateAccessToken(tr.getAccessToken());
+			assertEquals(user.getEmail(), jwtService.validateAccessToken(tr.getIdentityToken()).getClaimValue("email"));
+			
+			tr = jwtService.createTokensForUser(user, ctx, EnumSet.of(TokenType.IDENTITY, TokenType.REFRESH));
+			assertNull(tr.getAccessToken());
+			assertNotNull(tr.getIdentityToken());
+			jwtService.validateRefreshToken(tr.getRefreshToken());
+		}
+		finally {
+			jwtService.setMintingExecutor(null);
+			executor.shutdown();
+		}
+	}
+	
 	
 	
 	private JsonWebSignature signClaims(JwtClaims claims, String secret){		
@@ -0,0 +1,190 @@
+package io.authomator.api.jwt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.lang.JoseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import io.authomator.api.AuthomatorApiApplication;
+import io.authomator.api.domain.entity.Context;
+import io.authomator.api.domain.entity.SigningKey;
+import io.authomator.api.domain.entity.User;
+import io.authomator.api.domain.repository.SigningKeyRepository;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = AuthomatorApiApplication.class)
+@WebAppConfiguration
+public class KeyRotationServiceTest {
+
+	private static final String SECRET = "lkjdmqlkjfdsmlkjfdsqmlkjfdqsmlkfjdqsmflkdsjflqkjfdlkfjqdsmlkfjdqsmlkfjdsqmflkjdsq";
+	private static final String INTERNAL_SECRET = "flmkjfdsmlkjdsflkjfdslkjfsdlmkjfdslkjdfsqlkmkljqdflmkjdsqmflkjsdqfmlkjsqdfldsqkjf";
+	private static final String ENCRYPTION_KEY = "qsdlkfjqsdmlkfjqsdmlfkjqsdmlfkjqsdmlfkjqsdmlfkjqsdf";
+
+	/**
+	 * Rotation period in minutes, ttl refresh is 120 minutes
+	 */
+	private static final long PERIOD = 60;
+	private static final long PERIOD_MILLIS = PERIOD * 60 * 1000L;
+
+	@Autowired
+	private SigningKeyRepository signingKeyRepository;
+
+	/**
+	 * Two nodes sharing the signingKeys collection
+	 */
+	private JwtService node1;
+	private JwtService node2;
+	private KeyRotationService rotation1;
+	private KeyRotationService rotation2;
+
+	private long now;
+
+	@Before
+	public void setup() {
+		signingKeyRepository.deleteAll();
+		node1 = new JwtService(SECRET, INTERNAL_SECRET, "HMAC_SHA512", 60, 120, 60, "issuer", new String[]{"audience"});
+		node2 = new JwtService(SECRET, INTERNAL_SECRET, "HMAC_SHA512", 60, 120, 60, "issuer", new String[]{"audience"});
+		rotation1 = new KeyRotationService(node1, signingKeyRepository, true, PERIOD, ENCRYPTION_KEY);
+		rotation2 = new KeyRotationService(node2, signingKeyRepository, true, PERIOD, ENCRYPTION_KEY);
+		now = System.currentTimeMillis();
+	}
+
+	@After
+	public void cleanup() {
+		signingKeyRepository.deleteAll();
+	}
+
+	private User user() {
+		User user = new User();
+		user.setId("5575e89dd9ebb6c28fa5b358");
+		user.setEmail("testuser@mydomain.tld");
+		user.setRoles("USER");
+		return user;
+	}
+
+	private Context context() {
+		Context ctx = new Context();
+		ctx.setId("5575e89dd9ebb6c28fa50000");
+		return ctx;
+	}
+
+	private String kid(String jwt) throws JoseException {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setCompactSerialization(jwt);
+		return jws.getKeyIdHeaderValue();
+	}
+
+	@Test
+	public void rotateCreatesCurrentAndNextKeys() throws Exception {
+		rotation1.rotate(now);
+
+		List<SigningKey> userKeys = signingKeyRepository.findByType(SigningKey.TYPE_USER);
+		List<SigningKey> internalKeys = signingKeyRepository.findByType(SigningKey.TYPE_INTERNAL);
+		assertEquals(2, userKeys.size());
+		assertEquals(2, internalKeys.size());
+
+		long period = now / PERIOD_MILLIS;
+		assertEquals(KeyRotationService.keyId(SigningKey.TYPE_USER, "HS512", period), kid(node1.getAccessToken(user(), context())));
+		assertEquals(KeyRotationService.keyId(SigningKey.TYPE_INTERNAL, "HS512", period), kid(node1.getRefreshToken(user(), context())));
+	}
+
+	@Test
+	public void nodesShareTheKeys() throws Exception {
+		rotation1.rotate(now);
+		rotation2.rotate(now);
+
+		assertEquals(2, signingKeyRepository.findByType(SigningKey.TYPE_USER).size());
+		node2.validateAccessToken(node1.getAccessToken(user(), context()));
+		node1.validateRefreshToken(node2.getRefreshToken(user(), context()));
+	}
+
+	@Test
+	public void configuredKeysStayValid() throws Exception {
+		String accessToken = node1.getAccessToken(user(), context());
+		String refreshToken = node1.getRefreshToken(user(), context());
+		assertEquals("0", kid(accessToken));
+
+		rotation1.rotate(now);
+
+		node1.validateAccessToken(accessToken);
+		node1.validateRefreshToken(refreshToken);
+	}
+
+	@Test
+	public void retiredKeysStayValidUntilTheLongestTtlPassed() throws Exception {
+		rotation1.rotate(now);
+		String refreshToken = node1.getRefreshToken(user(), context());
+
+		// Next period: a new active key, the previous one still verifies
+		rotation1.rotate(now + PERIOD_MILLIS);
+		String newRefreshToken = node1.getRefreshToken(user(), context());
+		assertNotEquals(kid(refreshToken), kid(newRefreshToken));
+		node1.validateRefreshToken(refreshToken);
+
+		// Just before the ttlRefresh (120 minutes) passed after the period ended
+		long periodEnd = (now / PERIOD_MILLIS + 1) * PERIOD_MILLIS;
+		rotation1.rotate(periodEnd + 119 * 60 * 1000L);
+		node1.validateRefreshToken(refreshToken);
+
+		// After the ttlRefresh passed the key is gone, everywhere
+		rotation1.rotate(periodEnd + 121 * 60 * 1000L);
+		try {
+			node1.validateRefreshToken(refreshToken);
+			assertTrue("Token signed with an expired key should be rejected", false);
+		} catch (InvalidJwtException e) {
+			// expected
+		}
+		assertFalse(signingKeyRepository.exists(kid(refreshToken)));
+	}
+
+	@Test(expected = InvalidJwtException.class)
+	public void rejectsUnknownKid() throws Exception {
+		rotation1.rotate(now);
+		String accessToken = node1.getAccessToken(user(), context());
+		signingKeyRepository.deleteAll();
+
+		JwtService otherNode = new JwtService(SECRET, INTERNAL_SECRET, "HMAC_SHA512", 60, 120, 60, "issuer", new String[]{"audience"});
+		new KeyRotationService(otherNode, signingKeyRepository, true, PERIOD, ENCRYPTION_KEY).rotate(now);
+		otherNode.validateAccessToken(accessToken);
+	}
+
+	@Test
+	public void storesTheKeysEncrypted() throws Exception {
+		rotation1.rotate(now);
+
+		for (SigningKey key : signingKeyRepository.findAll()) {
+			assertTrue(key.getSecret().startsWith(KeyEncryption.PREFIX));
+		}
+	}
+
+	@Test(expected = GeneralSecurityException.class)
+	public void rejectsKeysEncryptedWithAnotherEncryptionKey() throws Exception {
+		rotation1.rotate(now);
+
+		new KeyRotationService(node2, signingKeyRepository, true, PERIOD, "anotherencryptionkey").rotate(now);
+	}
+
+	@Test
+	public void readsKeysStoredUnencrypted() throws Exception {
+		new KeyRotationService(node1, signingKeyRepository, true, PERIOD, "").rotate(now);
+		assertFalse(signingKeyRepository.findAll().get(0).getSecret().startsWith(KeyEncryption.PREFIX));
+
+		rotation2.rotate(now);
+		node2.validateAccessToken(node1.getAccessToken(user(), context()));
+	}
+}
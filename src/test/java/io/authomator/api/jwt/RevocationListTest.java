@@ -0,0 +1,51 @@
+package io.authomator.api.jwt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RevocationListTest {
+
+	private static final long NOW = 1441713654000L;
+
+	@Test
+	public void revokedIdsAreRevoked() {
+		RevocationList list = new RevocationList(1000L, NOW);
+		assertTrue(list.revoke("jti1", NOW + 60000L));
+		assertFalse(list.revoke("jti1", NOW + 60000L));
+		assertTrue(list.isRevoked("jti1"));
+		assertFalse(list.isRevoked("jti2"));
+		assertFalse(list.isRevoked(null));
+	}
+
+	@Test
+	public void idsExpireWithTheirToken() {
+		RevocationList list = new RevocationList(1000L, NOW);
+		list.revoke("short", NOW + 5000L);
+		list.revoke("long", NOW + 3600 * 1000L);
+
+		assertEquals(0, list.expire(NOW + 4000L));
+		assertEquals(2, list.size());
+
+		assertEquals(1, list.expire(NOW + 6000L));
+		assertFalse(list.isRevoked("short"));
+		assertTrue(list.isRevoked("long"));
+
+		// More than one revolution of the wheel passes between both expiries
+		assertEquals(0, list.expire(NOW + 3599 * 1000L));
+		assertTrue(list.isRevoked("long"));
+		assertEquals(1, list.expire(NOW + 3601 * 1000L));
+		assertEquals(0, list.size());
+	}
+
+	@Test
+	public void expiredIdsAreDroppedOnTheNextTick() {
+		RevocationList list = new RevocationList(1000L, NOW);
+		list.revoke("expired", NOW - 1000L);
+		assertTrue(list.isRevoked("expired"));
+		assertEquals(1, list.expire(NOW + 1000L));
+		assertFalse(list.isRevoked("expired"));
+	}
+}
@@ -0,0 +1,74 @@
+package io.authomator.api.password;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PasswordHasherCalibratorTest {
+
+	private static final long MILLIS = 1000000L;
+
+	/**
+	 * bcrypt with a simulated duration of 2^(cost - 4) ms per hash
+	 */
+	private static long duration(final PasswordHasher hasher) {
+		int cost = Integer.parseInt(hasher.getParameters().substring("cost=".length()));
+		return (1L << (cost - 4)) * MILLIS;
+	}
+
+	@Test
+	public void choosesTheStrongestCostWithinTheTarget() {
+		PasswordHasherCalibrator calibrator = new PasswordHasherCalibrator(100, 20, PasswordHasherCalibratorTest::duration);
+		PasswordHasherCalibrator.Calibration calibration = calibrator.calibrate(new BCryptPasswordHasher(4));
+		// cost 10 takes 64 ms, cost 11 128 ms
+		assertEquals("cost=10", calibration.getHasher().getParameters());
+		assertEquals(64.0, calibration.getP99Millis(), 0.001);
+	}
+
+	@Test
+	public void keepsTheConfiguredCostAsFloor() {
+		PasswordHasherCalibrator calibrator = new PasswordHasherCalibrator(10, 20, PasswordHasherCalibratorTest::duration);
+		BCryptPasswordHasher floor = new BCryptPasswordHasher(10);
+		PasswordHasherCalibrator.Calibration calibration = calibrator.calibrate(floor);
+		assertSame(floor, calibration.getHasher());
+		assertEquals(64.0, calibration.getP99Millis(), 0.001);
+	}
+
+	@Test
+	public void toleratesOutliersBelowTheP99() {
+		AtomicInteger hashes = new AtomicInteger();
+		// Every 150th hash is 10 times slower
+		PasswordHasherCalibrator calibrator = new PasswordHasherCalibrator(100, 300, hasher ->
+			duration(hasher) * (hashes.incrementAndGet() % 150 == 0 ? 10 : 1));
+		assertEquals("cost=10", calibrator.calibrate(new BCryptPasswordHasher(4)).getHasher().getParameters());
+	}
+
+	@Test
+	public void abandonsASlowCostEarly() {
+		AtomicInteger hashes = new AtomicInteger();
+		PasswordHasherCalibrator calibrator = new PasswordHasherCalibrator(100, 20, hasher -> {
+			hashes.incrementAndGet();
+			return duration(hasher);
+		});
+		calibrator.calibrate(new BCryptPasswordHasher(10));
+		// warm up, 20 samples of cost 10 and the first sample of cost 11
+		assertEquals(22, hashes.get());
+	}
+
+	@Test
+	public void calibratesTheCurrentHasher() {
+		PasswordHashers hashers = new PasswordHashers("bcrypt", new BCryptPasswordHasher(4), new Pbkdf2PasswordHasher(1000));
+		hashers.calibrate(new PasswordHasherCalibrator(100, 20, PasswordHasherCalibratorTest::duration));
+		assertEquals("cost=10", hashers.getParameters());
+		assertEquals(64.0, hashers.getCalibratedP99Millis(), 0.001);
+
+		// Hashes of the configured cost keep verifying, and are rehashed
+		String outdated = new BCryptPasswordHasher(4).hash("somepassword");
+		assertTrue(hashers.matches("somepassword", "{bcrypt}" + outdated));
+		assertTrue(hashers.needsRehash("{bcrypt}" + outdated));
+	}
+}
@@ -0,0 +1,135 @@
+package io.authomator.api.password;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+public class PasswordHashersTest {
+
+	private static final String PASSWORD = "somepassword";
+
+	/*
+	 * Low cost parameters, the tests are about the encoding
+	 */
+	private static PasswordHashers hashers(final String algorithm, final int bcryptCost) {
+		return new PasswordHashers(algorithm,
+				new BCryptPasswordHasher(bcryptCost),
+				new Pbkdf2PasswordHasher(1000),
+				new SCryptPasswordHasher(1024, 8, 1),
+				new Argon2PasswordHasher(64, 1, 1));
+	}
+
+	private static void assertRoundTrip(final String algorithm) {
+		PasswordHashers hashers = hashers(algorithm, 4);
+		String hash = hashers.hash(PASSWORD);
+		assertTrue(hash.startsWith("{" + algorithm + "}"));
+		assertTrue(hashers.matches(PASSWORD, hash));
+		assertFalse(hashers.matches("otherpassword", hash));
+		assertFalse(hashers.needsRehash(hash));
+		// Salted
+		assertFalse(hash.equals(hashers.hash(PASSWORD)));
+	}
+
+	@Test
+	public void bcrypt() {
+		assertRoundTrip(BCryptPasswordHasher.ID);
+	}
+
+	@Test
+	public void pbkdf2() {
+		assertRoundTrip(Pbkdf2PasswordHasher.ID);
+	}
+
+	@Test
+	public void scrypt() {
+		assertRoundTrip(SCryptPasswordHasher.ID);
+	}
+
+	@Test
+	public void argon2() {
+		assertRoundTrip(Argon2PasswordHasher.ID);
+		assertTrue(hashers("argon2", 4).hash(PASSWORD).startsWith("{argon2}$argon2id$v=19$m=64,t=1,p=1$"));
+	}
+
+	@Test
+	public void hashesWithoutPrefixAreBcrypt() {
+		PasswordHashers hashers = hashers("bcrypt", 4);
+		String legacy = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(4));
+		assertTrue(hashers.matches(PASSWORD, legacy));
+		assertFalse(hashers.matches("otherpassword", legacy));
+		// Rehashed to gain the prefix
+		assertTrue(hashers.needsRehash(legacy));
+	}
+
+	@Test
+	public void outdatedHashesNeedRehash() {
+		String bcrypt4 = hashers("bcrypt", 4).hash(PASSWORD);
+		String pbkdf2 = hashers("pbkdf2", 4).hash(PASSWORD);
+
+		PasswordHashers bcrypt5 = hashers("bcrypt", 5);
+		assertTrue(bcrypt5.needsRehash(bcrypt4));
+		assertTrue(bcrypt5.needsRehash(pbkdf2));
+		assertTrue(bcrypt5.matches(PASSWORD, bcrypt4));
+		assertTrue(bcrypt5.matches(PASSWORD, pbkdf2));
+
+		PasswordHashers argon2 = hashers("argon2", 5);
+		assertTrue(argon2.needsRehash(bcrypt4));
+		assertTrue(argon2.matches(PASSWORD, pbkdf2));
+
+		PasswordHashers morePbkdf2 = new PasswordHashers("pbkdf2", new BCryptPasswordHasher(4), new Pbkdf2PasswordHasher(2000));
+		assertTrue(morePbkdf2.needsRehash(pbkdf2));
+		assertTrue(morePbkdf2.matches(PASSWORD, pbkdf2));
+	}
+
+	@Test
+	public void strongerHashesDoNotNeedRehash() {
+		assertFalse(hashers("bcrypt", 4).needsRehash(hashers("bcrypt", 5).hash(PASSWORD)));
+
+		String pbkdf2 = new PasswordHashers("pbkdf2", new BCryptPasswordHasher(4), new Pbkdf2PasswordHasher(2000)).hash(PASSWORD);
+		assertFalse(new PasswordHashers("pbkdf2", new BCryptPasswordHasher(4), new Pbkdf2PasswordHasher(1000)).needsRehash(pbkdf2));
+
+		String scrypt = new PasswordHashers("scrypt", new BCryptPasswordHasher(4), new SCryptPasswordHasher(2048, 8, 1)).hash(PASSWORD);
+		PasswordHashers scrypt1024 = new PasswordHashers("scrypt", new BCryptPasswordHasher(4), new SCryptPasswordHasher(1024, 8, 1));
+		assertFalse(scrypt1024.needsRehash(scrypt));
+		assertTrue(scrypt1024.matches(PASSWORD, scrypt));
+		assertTrue(new PasswordHashers("scrypt", new BCryptPasswordHasher(4), new SCryptPasswordHasher(4096, 8, 1)).needsRehash(scrypt));
+
+		String argon2 = new PasswordHashers("argon2", new BCryptPasswordHasher(4), new Argon2PasswordHasher(64, 2, 1)).hash(PASSWORD);
+		assertFalse(new PasswordHashers("argon2", new BCryptPasswordHasher(4), new Argon2PasswordHasher(64, 1, 1)).needsRehash(argon2));
+		assertTrue(new PasswordHashers("argon2", new BCryptPasswordHasher(4), new Argon2PasswordHasher(64, 3, 1)).needsRehash(argon2));
+	}
+
+	@Test
+	public void unknownAlgorithmsDoNotMatch() {
+		assertFalse(hashers("bcrypt", 4).matches(PASSWORD, "{md5}5f4dcc3b5aa765d61d8327deb882cf99"));
+	}
+
+	@Test
+	public void malformedHashesDoNotMatch() {
+		PasswordHashers hashers = hashers("bcrypt", 4);
+		String[] malformed = {
+			"$2a$xx$notahash",
+			"{bcrypt}$2a$04$tooshort",
+			"{pbkdf2}many$c2FsdA==$aGFzaA==",
+			"{pbkdf2}1000$not base64$aGFzaA==",
+			"{pbkdf2}1000$c2FsdA==$",
+			"{scrypt}1024$8$1$c2FsdHNhbHRzYWx0$not base64",
+			"{scrypt}1000$8$1$c2FsdHNhbHRzYWx0$aGFzaA==",
+			"{scrypt}x$8$1$c2FsdHNhbHRzYWx0$aGFzaA==",
+			"{argon2}$argon2id$v=19$m=64,t=x,p=1$c2FsdHNhbHRzYWx0$aGFzaA",
+			"{argon2}$argon2id$v=19$m=64,t=1$c2FsdHNhbHRzYWx0$aGFzaA",
+			"{argon2}$argon2id$v=19$m=1,t=1,p=1$c2FsdHNhbHRzYWx0$aGFzaA",
+			"{argon2}$argon2id$v=19$m=64,t=1,p=1$c2FsdHNhbHRzYWx0$not base64"
+		};
+		for (String hash : malformed) {
+			assertFalse(hash, hashers.matches(PASSWORD, hash));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownCurrentAlgorithm() {
+		hashers("md5", 4);
+	}
+}
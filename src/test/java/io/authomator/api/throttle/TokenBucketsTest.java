@@ -0,0 +1,59 @@
+package io.authomator.api.throttle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketsTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void allowsTheCapacityThenRefills() {
+		// 3 tokens, one per second
+		TokenBuckets buckets = new TokenBuckets(3, 60, 100, 4);
+		assertEquals(0, buckets.tryAcquire("key", 0));
+		assertEquals(0, buckets.tryAcquire("key", 0));
+		assertEquals(0, buckets.tryAcquire("key", 0));
+		assertEquals(SECOND, buckets.tryAcquire("key", 0));
+		assertEquals(SECOND / 2, buckets.tryAcquire("key", SECOND / 2));
+		assertEquals(0, buckets.tryAcquire("key", SECOND));
+		assertTrue(buckets.tryAcquire("key", SECOND) > 0);
+		// Other keys have their own bucket
+		assertEquals(0, buckets.tryAcquire("other", SECOND));
+	}
+
+	@Test
+	public void refillsUpToTheCapacity() {
+		TokenBuckets buckets = new TokenBuckets(2, 60, 100, 4);
+		assertEquals(0, buckets.tryAcquire("key", 0));
+		assertEquals(0, buckets.tryAcquire("key", 100 * SECOND));
+		assertEquals(0, buckets.tryAcquire("key", 100 * SECOND));
+		assertTrue(buckets.tryAcquire("key", 100 * SECOND) > 0);
+	}
+
+	@Test
+	public void evictsIdleBuckets() {
+		TokenBuckets buckets = new TokenBuckets(2, 60, 100, 1);
+		buckets.tryAcquire("a", 0);
+		buckets.tryAcquire("b", SECOND);
+		assertEquals(2, buckets.size());
+		// "a" is full again after 2 seconds, "b" is not yet
+		buckets.tryAcquire("c", 2 * SECOND);
+		assertEquals(2, buckets.size());
+		buckets.tryAcquire("d", 10 * SECOND);
+		assertEquals(1, buckets.size());
+	}
+
+	@Test
+	public void boundsTheNumberOfBuckets() {
+		TokenBuckets buckets = new TokenBuckets(1, 1, 8, 2);
+		for (int i = 0; i < 100; i++) {
+			buckets.tryAcquire("key" + i, 0);
+		}
+		assertTrue(buckets.size() <= 8);
+	}
+}